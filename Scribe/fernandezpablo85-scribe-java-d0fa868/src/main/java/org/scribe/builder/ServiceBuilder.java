@@ -1,10 +1,13 @@
 package org.scribe.builder;
 
 import org.scribe.builder.api.*;
+import org.scribe.cache.*;
 import org.scribe.exceptions.*;
 
 import org.scribe.model.*;
 import org.scribe.oauth.*;
+import org.scribe.services.*;
+import org.scribe.transport.*;
 import org.scribe.utils.*;
 
 /**
@@ -21,6 +24,14 @@ public class ServiceBuilder
   private String callback;
   private Api api;
   private String scope;
+  private SignatureService signatureService;
+  private TimestampService timestampService;
+  private Transport transport;
+  private boolean acceptCompression;
+  private boolean compressRequestBodies;
+  private ResponseCache responseCache;
+  private ExecutionMode executionMode;
+  private int maxConcurrentRequestsPerHost;
   
   /**
    * Default constructor
@@ -109,9 +120,113 @@ public class ServiceBuilder
     return this;
   }
   
+  /**
+   * Configures the {@link SignatureService} used to sign requests, replacing the Api's default (HMAC-SHA1).
+   * Use a {@link RSASha1SignatureService} for providers that expect RSA-SHA1 signatures.
+   * 
+   * @param signatureService the signature service
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder signatureService(SignatureService signatureService)
+  {
+    Preconditions.checkNotNull(signatureService, "Signature service cannot be null");
+    this.signatureService = signatureService;
+    return this;
+  }
+  
+  /**
+   * Configures the {@link TimestampService} that provides timestamps and nonces, replacing the Api's default.
+   * 
+   * @param timestampService the timestamp service
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder timestampService(TimestampService timestampService)
+  {
+    Preconditions.checkNotNull(timestampService, "Timestamp service cannot be null");
+    this.timestampService = timestampService;
+    return this;
+  }
+  
+  /**
+   * Configures the {@link Transport} that sends the requests signed by the service, instead of the default
+   * {@link HttpURLConnectionTransport}. Requests that already have a transport of their own keep it.
+   * 
+   * @param transport the transport
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder transport(Transport transport)
+  {
+    Preconditions.checkNotNull(transport, "Transport cannot be null");
+    this.transport = transport;
+    return this;
+  }
+  
+  /**
+   * Asks for gzip or deflate compressed responses on every request the service signs and sends (see
+   * {@link org.scribe.model.Request#acceptCompression()}). Responses are decompressed as they are read.
+   * 
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder acceptCompression()
+  {
+    this.acceptCompression = true;
+    return this;
+  }
+  
+  /**
+   * Gzips the bodies of the requests the service signs and sends (see
+   * {@link org.scribe.model.Request#compressBody()}). Only for providers that accept compressed requests.
+   * 
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder compressRequestBodies()
+  {
+    this.compressRequestBodies = true;
+    return this;
+  }
+  
+  /**
+   * Answers the GET requests the service signs and sends from a cache when the provider allows it, and revalidates
+   * stale responses with conditional requests (see {@link ResponseCache}). A cache can be shared between services.
+   * 
+   * @param responseCache cache of the responses
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder responseCache(ResponseCache responseCache)
+  {
+    Preconditions.checkNotNull(responseCache, "Response cache cannot be null");
+    this.responseCache = responseCache;
+    return this;
+  }
+  
+  /**
+   * Sends the requests of the service through a {@link ThreadPerRequestTransport}: asynchronous calls run their
+   * blocking sends on threads of the given mode, and no more than maxConcurrentRequestsPerHost sends go to a host at
+   * the same time. Blocking calls keep running on the calling thread.
+   * 
+   * @param executionMode kind of threads, {@link ExecutionMode#VIRTUAL_THREADS} needs Java 21 or later
+   * @param maxConcurrentRequestsPerHost maximum number of concurrent sends to a single host
+   * @return the {@link ServiceBuilder} instance for method chaining
+   */
+  public ServiceBuilder executionMode(ExecutionMode executionMode, int maxConcurrentRequestsPerHost)
+  {
+    Preconditions.checkNotNull(executionMode, "Execution mode cannot be null");
+    if (maxConcurrentRequestsPerHost <= 0)
+    {
+      throw new IllegalArgumentException("Concurrency limit must be greater than zero");
+    }
+    this.executionMode = executionMode;
+    this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+    return this;
+  }
+  
   /**
    * Returns the fully configured {@link OAuthService}
    * 
+   * The services of the bundled Apis are {@link org.scribe.oauth.OAuth10aService}s, which also send requests and work
+   * asynchronously. The optional settings (signature service, transport, cache...) only reach Apis that extend
+   * {@link DefaultApi10a}; other Apis get the key, secret, callback and scope.
+   * 
    * @return fully configured {@link OAuthService}
    */
   public OAuthService build()
@@ -119,6 +234,22 @@ public class ServiceBuilder
     Preconditions.checkNotNull(api, "You must specify a valid api through the provider() method");
     Preconditions.checkEmptyString(apiKey, "You must provide an api key");
     Preconditions.checkEmptyString(apiSecret, "You must provide an api secret");
-    return api.createService(apiKey, apiSecret, callback, scope);
+    if (!(api instanceof DefaultApi10a))
+    {
+      return api.createService(apiKey, apiSecret, callback, scope);
+    }
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey(apiKey);
+    config.setApiSecret(apiSecret);
+    config.setCallback(callback);
+    config.setScope(scope);
+    config.setSignatureService(signatureService);
+    config.setTimestampService(timestampService);
+    config.setAcceptCompression(acceptCompression);
+    config.setCompressRequestBodies(compressRequestBodies);
+    config.setResponseCache(responseCache);
+    config.setTransport(executionMode == null ? transport : new ThreadPerRequestTransport(
+        transport != null ? transport : HttpURLConnectionTransport.getDefault(), executionMode, maxConcurrentRequestsPerHost));
+    return ((DefaultApi10a) api).createService(config);
   }
 }
@@ -40,7 +40,7 @@ public abstract class DefaultApi10a implements Api
 
   protected SignatureService getSignatureService()
   {
-    return new HMACSha1SignatureService(); 
+    return new PooledHMACSha1SignatureService();
   }
 
   protected TimestampService getTimestampService()
@@ -82,32 +82,42 @@ public abstract class DefaultApi10a implements Api
    */
   public OAuthService createService(String apiKey, String apiSecret, String callback, String scope)
   {
-    OAuthService service = createService(apiKey, apiSecret, callback);
-    service.addScope(scope);
-    return service;
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey(apiKey);
+    config.setApiSecret(apiSecret);
+    config.setCallback(callback);
+    config.setScope(scope);
+    return createService(config);
   }
-  
-  private OAuthService createService(String apiKey, String apiSecret, String callback)
+
+  /**
+   * Returns the {@link OAuthService} for this Api
+   * 
+   * @param config Key, secret, callback and optional settings. The service gets a copy of it, with the endpoints and
+   *          verbs of this Api filled in.
+   */
+  public OAuthService createService(OAuthConfig config)
   {
-    return new OAuth10aServiceImpl( getSignatureService(), 
-                                    getTimestampService(), 
-                                    getBaseStringExtractor(), 
-                                    getHeaderExtractor(), 
-                                    getRequestTokenExtractor(), 
-                                    getAccessTokenExtractor(), 
-                                    createConfig(apiKey, apiSecret, callback));
+    SignatureService signatureService = config.getSignatureService();
+    TimestampService timestampService = config.getTimestampService();
+    OAuthService service = new OAuth10aServiceImpl( signatureService != null ? signatureService : getSignatureService(), 
+                                                    timestampService != null ? timestampService : getTimestampService(), 
+                                                    getBaseStringExtractor(), 
+                                                    getHeaderExtractor(), 
+                                                    getRequestTokenExtractor(), 
+                                                    getAccessTokenExtractor(), 
+                                                    completeConfig(config));
+    service.addScope(config.getScope());
+    return service;
   }
   
-  private OAuthConfig createConfig(String apiKey, String apiSecret, String callback)
+  private OAuthConfig completeConfig(OAuthConfig original)
   {
-    OAuthConfig config = new OAuthConfig();
+    OAuthConfig config = new OAuthConfig(original);
     config.setRequestTokenVerb(getRequestTokenVerb());
     config.setRequestTokenEndpoint(getRequestTokenEndpoint());
     config.setAccessTokenVerb(getAccessTokenVerb());
     config.setAccessTokenEndpoint(getAccessTokenEndpoint());
-    config.setApiKey(apiKey);
-    config.setApiSecret(apiSecret);
-    config.setCallback(callback);
     return config;
   }
 
@@ -0,0 +1,908 @@
+package org.scribe.cache;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.apache.commons.codec.digest.*;
+import org.scribe.exceptions.*;
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * Two-tier cache of the responses to signed GET requests
+ *
+ * Responses are keyed by verb, sanitized URL, sorted parameters, consumer key and access token. The oauth_* parameters
+ * change on every signature and are left out of the key; the consumer key and token are kept in it, so the responses of
+ * one user, or of one application sharing the cache with others, are never served to another. This makes it a private
+ * cache: responses marked private are kept too.
+ *
+ * Freshness follows the Cache-Control max-age of the response, or its Expires header. Responses marked no-store are
+ * never kept, and those marked no-cache are revalidated on every use. Stale responses with an ETag or Last-Modified
+ * header are revalidated with a conditional request, signed like any other (so with a fresh nonce); a 304 refreshes
+ * the cached copy, anything else replaces it.
+ *
+ * Entries live in an LRU memory tier bounded by the bytes they hold, and optionally in a directory bounded the same
+ * way. Entries evicted from memory are still found on disk, and move back to memory when they are.
+ */
+public class ResponseCache
+{
+  /**
+   * Larger responses are passed through without being cached
+   */
+  public static final int MAX_ENTRY_BYTES = 4 * 1024 * 1024;
+
+  private static final int OK = 200;
+  private static final int NOT_MODIFIED = 304;
+  private static final String RFC_1123 = "EEE, dd MMM yyyy HH:mm:ss zzz";
+  private static final String OAUTH_PREFIX = "oauth_";
+  private static final Set<String> UNSTORED_HEADERS = new HashSet<String>(Arrays.asList("content-length", "content-encoding",
+      "transfer-encoding", "connection", "keep-alive"));
+
+  private final MemoryTier memory;
+  private final DiskTier disk;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+
+  /**
+   * Creates a memory only cache
+   *
+   * @param maxMemoryBytes maximum number of bytes held by the cached responses
+   */
+  public ResponseCache(long maxMemoryBytes)
+  {
+    this(maxMemoryBytes, null, 0);
+  }
+
+  /**
+   * Creates a cache that also keeps its responses in a directory. Responses already in the directory are used.
+   *
+   * @param maxMemoryBytes maximum number of bytes held in memory by the cached responses
+   * @param directory where responses are kept, created if needed
+   * @param maxDiskBytes maximum size of the files in the directory
+   */
+  public ResponseCache(long maxMemoryBytes, File directory, long maxDiskBytes)
+  {
+    if (maxMemoryBytes <= 0)
+    {
+      throw new IllegalArgumentException("Cache size must be greater than zero");
+    }
+    this.memory = new MemoryTier(maxMemoryBytes);
+    if (directory != null)
+    {
+      if (maxDiskBytes <= 0)
+      {
+        throw new IllegalArgumentException("Cache size must be greater than zero");
+      }
+      if (!directory.isDirectory() && !directory.mkdirs())
+      {
+        throw new IllegalArgumentException("Cannot create cache directory " + directory);
+      }
+      this.disk = new DiskTier(directory, maxDiskBytes);
+    }
+    else
+    {
+      this.disk = null;
+    }
+  }
+
+  /**
+   * Returns the key of a request: its verb, sanitized URL, query and body parameters sorted as for the signature
+   * base string (without the oauth_* ones), the consumer key and the access token
+   *
+   * @param request request, signed or not
+   * @param apiKey consumer key the request is signed with
+   * @param token access token the request is signed with
+   * @return key
+   */
+  public static String keyFor(Request request, String apiKey, Token token)
+  {
+    List<ParamInfo> params = new ArrayList<ParamInfo>(request.getQueryStringParams());
+    params.addAll(request.getBodyParams());
+    StringBuilder key = new StringBuilder(request.getVerb().name()).append(' ').append(request.getSanitizedUrl()).append('?');
+    boolean first = true;
+    for (ParamInfo param : MapUtils.sort(params))
+    {
+      if (param.getKey().startsWith(OAUTH_PREFIX))
+      {
+        continue;
+      }
+      if (!first)
+      {
+        key.append('&');
+      }
+      URLUtils.percentEncode(param.getKey(), key).append('=');
+      URLUtils.percentEncode(param.getValue(), key);
+      first = false;
+    }
+    key.append(' ');
+    if (apiKey != null)
+    {
+      URLUtils.percentEncode(apiKey, key);
+    }
+    key.append(' ');
+    return token != null ? URLUtils.percentEncode(token.getToken(), key).toString() : key.toString();
+  }
+
+  /**
+   * Looks a request up, before it is signed. A fresh cached response is a hit. A stale one is revalidated: its ETag
+   * and Last-Modified are added to the request as If-None-Match and If-Modified-Since.
+   *
+   * @param request request about to be signed and sent
+   * @param apiKey consumer key it is signed with
+   * @param token access token it is signed with
+   * @return the lookup, or null if the request cannot be answered from the cache (like requests other than GET)
+   */
+  public Lookup lookup(Request request, String apiKey, Token token)
+  {
+    List<String> directives = cacheControl(HeaderMap.of(request.getHeaders()).getAll("Cache-Control"));
+    if (request.getVerb() != Verb.GET || hasDirective(directives, "no-store"))
+    {
+      return null;
+    }
+    String key = keyFor(request, apiKey, token);
+    Entry entry = get(key);
+    long now = System.currentTimeMillis();
+    if (entry != null && entry.freshUntil > now)
+    {
+      hits.incrementAndGet();
+      return new Lookup(key, entry, true);
+    }
+    if (entry != null)
+    {
+      String etag = entry.headers.get("ETag");
+      String lastModified = entry.headers.get("Last-Modified");
+      if (etag == null && lastModified == null)
+      {
+        return new Lookup(key, null, false);
+      }
+      if (etag != null)
+      {
+        request.addHeader("If-None-Match", etag);
+      }
+      if (lastModified != null)
+      {
+        request.addHeader("If-Modified-Since", lastModified);
+      }
+    }
+    return new Lookup(key, entry, false);
+  }
+
+  /**
+   * Drops every cached response, in memory and on disk
+   */
+  public void clear()
+  {
+    memory.clear();
+    if (disk != null)
+    {
+      disk.clear();
+    }
+  }
+
+  /**
+   * Returns the number of requests answered with a fresh cached response
+   *
+   * @return hit count
+   */
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of requests sent without a usable cached response
+   *
+   * @return miss count
+   */
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of stale responses the provider confirmed with a 304
+   *
+   * @return revalidation count
+   */
+  public long getRevalidationCount()
+  {
+    return revalidations.get();
+  }
+
+  /**
+   * Returns the share of lookups answered with a fresh cached response: hits / (hits + misses + revalidations), or 0
+   * before any lookup
+   *
+   * @return hit rate, between 0 and 1
+   */
+  public double getHitRate()
+  {
+    return rate(hits.get());
+  }
+
+  /**
+   * Returns the share of lookups sent without a usable cached response: misses / (hits + misses + revalidations), or 0
+   * before any lookup
+   *
+   * @return miss rate, between 0 and 1
+   */
+  public double getMissRate()
+  {
+    return rate(misses.get());
+  }
+
+  /**
+   * Returns the share of lookups answered with a stale response the provider confirmed with a 304: revalidations /
+   * (hits + misses + revalidations), or 0 before any lookup
+   *
+   * @return revalidation rate, between 0 and 1
+   */
+  public double getRevalidationRate()
+  {
+    return rate(revalidations.get());
+  }
+
+  /**
+   * Returns the number of bytes held in memory by the cached responses
+   *
+   * @return memory size
+   */
+  public long getMemorySize()
+  {
+    return memory.size();
+  }
+
+  /**
+   * Returns the size of the files of the cached responses, or 0 without a directory
+   *
+   * @return disk size
+   */
+  public long getDiskSize()
+  {
+    return disk != null ? disk.size() : 0;
+  }
+
+  private double rate(long count)
+  {
+    long total = hits.get() + misses.get() + revalidations.get();
+    return total == 0 ? 0 : (double) count / total;
+  }
+
+  private Entry get(String key)
+  {
+    Entry entry = memory.get(key);
+    if (entry == null && disk != null)
+    {
+      entry = disk.get(key);
+      if (entry != null)
+      {
+        memory.put(entry);
+      }
+    }
+    return entry;
+  }
+
+  private void put(Entry entry)
+  {
+    memory.put(entry);
+    if (disk != null)
+    {
+      disk.put(entry);
+    }
+  }
+
+  private void remove(String key)
+  {
+    memory.remove(key);
+    if (disk != null)
+    {
+      disk.remove(key);
+    }
+  }
+
+  /*
+   * Local time until which a response is fresh, or null if it cannot be stored. Lifetimes are measured against the
+   * provider Date header, so they do not depend on the local clock being right.
+   */
+  private static Long freshUntil(HeaderMap headers, long now)
+  {
+    List<String> directives = cacheControl(headers.getAll("Cache-Control"));
+    if (hasDirective(directives, "no-store") || !isVaryStorable(headers.get("Vary")))
+    {
+      return null;
+    }
+    long lifetime = 0;
+    String maxAge = getDirective(directives, "max-age");
+    if (hasDirective(directives, "no-cache"))
+    {
+      lifetime = 0;
+    }
+    else if (maxAge != null)
+    {
+      lifetime = seconds(maxAge) * 1000;
+    }
+    else if (headers.contains("Expires"))
+    {
+      Long expires = parseDate(headers.get("Expires"));
+      Long date = parseDate(headers.get("Date"));
+      lifetime = expires == null ? 0 : expires - (date != null ? date : now);
+    }
+    String age = headers.get("Age");
+    if (age != null)
+    {
+      lifetime -= seconds(age) * 1000;
+    }
+    if (lifetime <= 0 && !headers.contains("ETag") && !headers.contains("Last-Modified"))
+    {
+      return null;
+    }
+    return now + Math.max(lifetime, 0);
+  }
+
+  /*
+   * Bodies are cached decompressed, so only responses that vary on Accept-Encoding alone can be served to any request
+   */
+  private static boolean isVaryStorable(String vary)
+  {
+    if (vary == null)
+    {
+      return true;
+    }
+    for (String name : vary.split(","))
+    {
+      String trimmed = name.trim();
+      if (trimmed.length() > 0 && !trimmed.equalsIgnoreCase("Accept-Encoding"))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<String> cacheControl(List<String> values)
+  {
+    List<String> directives = new ArrayList<String>();
+    for (String value : values)
+    {
+      if (value != null)
+      {
+        for (String directive : value.split(","))
+        {
+          directives.add(directive.trim().toLowerCase(Locale.US));
+        }
+      }
+    }
+    return directives;
+  }
+
+  private static boolean hasDirective(List<String> directives, String name)
+  {
+    return directives.contains(name);
+  }
+
+  private static String getDirective(List<String> directives, String name)
+  {
+    for (String directive : directives)
+    {
+      if (directive.startsWith(name) && directive.length() > name.length() && directive.charAt(name.length()) == '=')
+      {
+        return directive.substring(name.length() + 1).replace("\"", "");
+      }
+    }
+    return null;
+  }
+
+  private static long seconds(String value)
+  {
+    try
+    {
+      return Math.max(Long.parseLong(value.trim()), 0);
+    }
+    catch (NumberFormatException e)
+    {
+      return 0;
+    }
+  }
+
+  private static Long parseDate(String date)
+  {
+    if (date == null)
+    {
+      return null;
+    }
+    try
+    {
+      SimpleDateFormat format = new SimpleDateFormat(RFC_1123, Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+      return format.parse(date.trim()).getTime();
+    }
+    catch (ParseException e)
+    {
+      return null;
+    }
+  }
+
+  /*
+   * Headers of a response as cached: the body is kept decompressed, and the connection headers mean nothing later on
+   */
+  private static List<ParamInfo> storedHeaders(HeaderMap headers)
+  {
+    List<ParamInfo> stored = new ArrayList<ParamInfo>(headers.size());
+    for (ParamInfo header : headers.toList())
+    {
+      if (header.getValue() != null && !UNSTORED_HEADERS.contains(header.getKey().toLowerCase(Locale.US)))
+      {
+        stored.add(header);
+      }
+    }
+    return stored;
+  }
+
+  /*
+   * Cached headers updated with those of a 304: headers it sends replace the cached values of the same name
+   */
+  private static HeaderMap revalidatedHeaders(HeaderMap cached, HeaderMap update)
+  {
+    List<ParamInfo> merged = new ArrayList<ParamInfo>(cached.size());
+    for (ParamInfo header : cached.toList())
+    {
+      if (!update.contains(header.getKey()))
+      {
+        merged.add(header);
+      }
+    }
+    merged.addAll(storedHeaders(update));
+    return HeaderMap.of(merged);
+  }
+
+  /**
+   * Outcome of looking up a request: either a hit, or a request to send and then hand to {@link #complete(Response)}
+   */
+  public final class Lookup
+  {
+    private final String key;
+    private final Entry cached;
+    private final boolean hit;
+
+    private Lookup(String key, Entry cached, boolean hit)
+    {
+      this.key = key;
+      this.cached = cached;
+      this.hit = hit;
+    }
+
+    /**
+     * Returns true if the cached response is fresh, and the request need not be sent
+     *
+     * @return true on a hit
+     */
+    public boolean isHit()
+    {
+      return hit;
+    }
+
+    /**
+     * Returns the cached response of a hit, as a new response reading from the cached body
+     *
+     * @return cached response
+     */
+    public Response getResponse()
+    {
+      if (!hit)
+      {
+        throw new IllegalStateException("Only hits have a cached response");
+      }
+      return cached.toResponse();
+    }
+
+    /**
+     * Completes a lookup that was not a hit with the provider response. A 304 to a revalidation gives the cached
+     * response back; a cacheable 200 is read, cached and given back as a new response reading from the cached body.
+     * Other responses are given back as they are.
+     *
+     * @param response response to the request
+     * @return response for the caller
+     * @throws OAuthException if the body of a cacheable response cannot be read
+     */
+    public Response complete(Response response)
+    {
+      long now = System.currentTimeMillis();
+      if (response.getCode() == NOT_MODIFIED && cached != null)
+      {
+        revalidations.incrementAndGet();
+        HeaderMap headers = revalidatedHeaders(cached.headers, response.getHeaderMap());
+        response.close();
+        Long freshUntil = freshUntil(headers, now);
+        Entry refreshed = new Entry(key, cached.code, headers, cached.body, freshUntil != null ? freshUntil : now);
+        if (freshUntil != null)
+        {
+          put(refreshed);
+        }
+        else
+        {
+          remove(key);
+        }
+        return refreshed.toResponse();
+      }
+      misses.incrementAndGet();
+      if (response.getCode() != OK)
+      {
+        return response;
+      }
+      Long freshUntil = freshUntil(response.getHeaderMap(), now);
+      if (freshUntil == null)
+      {
+        if (cached != null)
+        {
+          remove(key);
+        }
+        return response;
+      }
+      return store(response, freshUntil);
+    }
+
+    private Response store(Response response, long freshUntil)
+    {
+      List<ParamInfo> headers = storedHeaders(response.getHeaderMap());
+      InputStream in = response.getStream();
+      if (in == null)
+      {
+        in = new ByteArrayInputStream(new byte[0]);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BufferPool pool = BufferPool.getShared();
+      byte[] buffer = pool.acquire();
+      try
+      {
+        int read;
+        while ((read = in.read(buffer)) >= 0)
+        {
+          out.write(buffer, 0, read);
+          if (out.size() > MAX_ENTRY_BYTES)
+          {
+            // too large to cache: hand over what was read followed by the rest of the body
+            return new Response(response.getCode(), headers, new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), in));
+          }
+        }
+        in.close();
+      }
+      catch (IOException ioe)
+      {
+        response.close();
+        throw new OAuthException("Error while reading response body", ioe);
+      }
+      finally
+      {
+        pool.release(buffer);
+      }
+      Entry entry = new Entry(key, response.getCode(), HeaderMap.of(headers), out.toByteArray(), freshUntil);
+      put(entry);
+      return entry.toResponse();
+    }
+  }
+
+  /**
+   * Cached response. Immutable: a revalidation replaces it.
+   */
+  private static final class Entry
+  {
+    // rough per-entry overhead of the objects around the body and headers
+    private static final int OVERHEAD = 256;
+
+    final String key;
+    final int code;
+    final HeaderMap headers;
+    final byte[] body;
+    final long freshUntil;
+
+    Entry(String key, int code, HeaderMap headers, byte[] body, long freshUntil)
+    {
+      this.key = key;
+      this.code = code;
+      this.headers = headers;
+      this.body = body;
+      this.freshUntil = freshUntil;
+    }
+
+    Response toResponse()
+    {
+      List<ParamInfo> list = headers.toList();
+      ParamInfo length = new ParamInfo();
+      length.setKey("Content-Length");
+      length.setValue(String.valueOf(body.length));
+      list.add(length);
+      return new Response(code, list, new ByteArrayInputStream(body));
+    }
+
+    long size()
+    {
+      long size = OVERHEAD + body.length + 2L * key.length();
+      for (ParamInfo header : headers.toList())
+      {
+        size += 2L * (header.getKey().length() + header.getValue().length());
+      }
+      return size;
+    }
+  }
+
+  /**
+   * Entries in access order, bounded by their total size
+   */
+  private static final class MemoryTier
+  {
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+
+    MemoryTier(long maxBytes)
+    {
+      this.maxBytes = maxBytes;
+    }
+
+    synchronized Entry get(String key)
+    {
+      return entries.get(key);
+    }
+
+    synchronized void put(Entry entry)
+    {
+      remove(entry.key);
+      long size = entry.size();
+      if (size > maxBytes)
+      {
+        return;
+      }
+      entries.put(entry.key, entry);
+      bytes += size;
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (bytes > maxBytes)
+      {
+        bytes -= eldest.next().size();
+        eldest.remove();
+      }
+    }
+
+    synchronized void remove(String key)
+    {
+      Entry removed = entries.remove(key);
+      if (removed != null)
+      {
+        bytes -= removed.size();
+      }
+    }
+
+    synchronized void clear()
+    {
+      entries.clear();
+      bytes = 0;
+    }
+
+    synchronized long size()
+    {
+      return bytes;
+    }
+  }
+
+  /**
+   * One file per entry, named after the SHA-1 of its key. The files are read and written outside the lock; only the
+   * index of their names and sizes, in access order, is guarded by it. Files are written under a temporary name and
+   * renamed, so readers never see half an entry, and a file that cannot be read is dropped as a miss.
+   */
+  private static final class DiskTier
+  {
+    private static final int MAGIC = 0x53524331;
+    private static final String SUFFIX = ".entry";
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long bytes;
+
+    DiskTier(File directory, long maxBytes)
+    {
+      this.directory = directory;
+      this.maxBytes = maxBytes;
+      File[] files = directory.listFiles();
+      if (files != null)
+      {
+        Arrays.sort(files, new Comparator<File>()
+        {
+          public int compare(File a, File b)
+          {
+            return a.lastModified() < b.lastModified() ? -1 : a.lastModified() == b.lastModified() ? 0 : 1;
+          }
+        });
+        for (File file : files)
+        {
+          if (file.getName().endsWith(SUFFIX))
+          {
+            index.put(file.getName(), file.length());
+            bytes += file.length();
+          }
+        }
+      }
+      synchronized (this)
+      {
+        evict();
+      }
+    }
+
+    Entry get(String key)
+    {
+      String name = fileName(key);
+      synchronized (this)
+      {
+        if (index.get(name) == null)
+        {
+          return null;
+        }
+      }
+      try
+      {
+        File file = new File(directory, name);
+        long size = file.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+          if (in.readInt() != MAGIC || !key.equals(readString(in, size)))
+          {
+            return null;
+          }
+          int code = in.readInt();
+          long freshUntil = in.readLong();
+          List<ParamInfo> headers = new ArrayList<ParamInfo>();
+          for (int i = in.readInt(); i > 0; i--)
+          {
+            ParamInfo header = new ParamInfo();
+            header.setKey(readString(in, size));
+            header.setValue(readString(in, size));
+            headers.add(header);
+          }
+          byte[] body = new byte[readLength(in, Math.min(size, MAX_ENTRY_BYTES))];
+          in.readFully(body);
+          return new Entry(key, code, HeaderMap.of(headers), body, freshUntil);
+        }
+        finally
+        {
+          in.close();
+        }
+      }
+      catch (IOException ioe)
+      {
+        remove(key);
+        return null;
+      }
+    }
+
+    void put(Entry entry)
+    {
+      String name = fileName(entry.key);
+      File file = new File(directory, name);
+      File temporary = null;
+      try
+      {
+        temporary = File.createTempFile(name, ".tmp", directory);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try
+        {
+          out.writeInt(MAGIC);
+          writeString(out, entry.key);
+          out.writeInt(entry.code);
+          out.writeLong(entry.freshUntil);
+          List<ParamInfo> headers = entry.headers.toList();
+          out.writeInt(headers.size());
+          for (ParamInfo header : headers)
+          {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+          }
+          out.writeInt(entry.body.length);
+          out.write(entry.body);
+        }
+        finally
+        {
+          out.close();
+        }
+        long length = temporary.length();
+        synchronized (this)
+        {
+          if (length > maxBytes || !(temporary.renameTo(file) || (file.delete() && temporary.renameTo(file))))
+          {
+            temporary.delete();
+            dropIndex(name);
+            return;
+          }
+          Long previous = index.put(name, length);
+          bytes += length - (previous != null ? previous : 0);
+          evict();
+        }
+      }
+      catch (IOException ioe)
+      {
+        // the entry is still in memory
+        if (temporary != null)
+        {
+          temporary.delete();
+        }
+      }
+    }
+
+    synchronized void remove(String key)
+    {
+      String name = fileName(key);
+      dropIndex(name);
+      new File(directory, name).delete();
+    }
+
+    synchronized void clear()
+    {
+      for (String name : index.keySet())
+      {
+        new File(directory, name).delete();
+      }
+      index.clear();
+      bytes = 0;
+    }
+
+    synchronized long size()
+    {
+      return bytes;
+    }
+
+    private void dropIndex(String name)
+    {
+      Long removed = index.remove(name);
+      if (removed != null)
+      {
+        bytes -= removed;
+      }
+    }
+
+    private void evict()
+    {
+      Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+      while (bytes > maxBytes && eldest.hasNext())
+      {
+        Map.Entry<String, Long> entry = eldest.next();
+        new File(directory, entry.getKey()).delete();
+        bytes -= entry.getValue();
+        eldest.remove();
+      }
+    }
+
+    private static String fileName(String key)
+    {
+      return DigestUtils.shaHex(key) + SUFFIX;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+      byte[] bytes = value.getBytes("UTF-8");
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, long max) throws IOException
+    {
+      byte[] bytes = new byte[readLength(in, max)];
+      in.readFully(bytes);
+      return new String(bytes, "UTF-8");
+    }
+
+    /*
+     * A corrupt length would otherwise end up as a negative or huge array size, which is not an IOException
+     */
+    private static int readLength(DataInputStream in, long max) throws IOException
+    {
+      int length = in.readInt();
+      if (length < 0 || length > max)
+      {
+        throw new IOException("Invalid length in cache file: " + length);
+      }
+      return length;
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package org.scribe.extractors;
 
+import java.io.*;
+import java.nio.*;
 import java.util.*;
 
 import org.scribe.exceptions.*;
@@ -12,9 +14,23 @@ import org.scribe.utils.*;
  * @author Pablo Fernandez
  * 
  */
-public class BaseStringExtractorImpl implements BaseStringExtractor {
+public class BaseStringExtractorImpl implements StreamingBaseStringExtractor {
 
-    private static final String AMPERSAND_SEPARATED_STRING = "%s&%s&%s";
+    private static final String                        AMPERSAND_SEPARATED_STRING = "%s&%s&%s";
+
+    private static final String                        ENCODED_AMPERSAND          = "%26";
+
+    private static final String                        ENCODED_EQUALS             = "%3D";
+
+    private static final int                           BUFFER_SIZE                = 4096;
+
+    private static final ThreadLocal<BaseStringOutput> OUTPUTS                    = new ThreadLocal<BaseStringOutput>() {
+
+        @Override
+        protected BaseStringOutput initialValue() {
+            return new BaseStringOutput();
+        }
+    };
 
     /**
      * {@inheritDoc}
@@ -24,21 +40,47 @@ public class BaseStringExtractorImpl implements BaseStringExtractor {
         String verb = URLUtils.percentEncode(request.getVerb().name());
         String url = URLUtils.percentEncode(request.getSanitizedUrl());
         String params = getSortedAndEncodedParams(request);
-        System.out.println("FORMATED " + String.format(AMPERSAND_SEPARATED_STRING, verb, url, params));
         return String.format(AMPERSAND_SEPARATED_STRING, verb, url, params);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void extract(OAuthRequest request, OutputStream out) throws IOException {
+        checkPreconditions(request);
+        BaseStringOutput output = OUTPUTS.get();
+        output.open(out);
+        try {
+            output.writeEncoded(request.getVerb().name());
+            output.write('&');
+            output.writeEncoded(request.getSanitizedUrl());
+            output.write('&');
+            boolean first = true;
+            for (ParamInfo paramInfo : getSortedParams(request)) {
+                if (!first) {
+                    output.writeAscii(ENCODED_AMPERSAND);
+                }
+                output.writeDoubleEncoded(paramInfo.getKey());
+                output.writeAscii(ENCODED_EQUALS);
+                output.writeDoubleEncoded(paramInfo.getValue());
+                first = false;
+            }
+            output.flush();
+        } finally {
+            output.close();
+        }
+    }
+
     private String getSortedAndEncodedParams(OAuthRequest request) {
-        List<ParamInfo> params = new ArrayList<ParamInfo>();
+        return URLUtils.percentEncode(URLUtils.formURLEncodeMap(getSortedParams(request)));
+    }
 
+    private List<ParamInfo> getSortedParams(OAuthRequest request) {
+        List<ParamInfo> params = new ArrayList<ParamInfo>();
         params.addAll(request.getQueryStringParams());
         params.addAll(request.getBodyParams());
         params.addAll(request.getOauthParameters());
-        //        params.putAll(request.getQueryStringParams());
-        //        params.putAll(request.getBodyParams());
-        //        params.putAll(request.getOauthParameters());
-        params = MapUtils.sort(params);
-        return URLUtils.percentEncode(URLUtils.formURLEncodeMap(params));
+        return MapUtils.sort(params);
     }
 
     private void checkPreconditions(OAuthRequest request) {
@@ -48,4 +90,53 @@ public class BaseStringExtractorImpl implements BaseStringExtractor {
             throw new OAuthParametersMissingException(request);
         }
     }
+
+    /**
+     * Reusable byte buffer that percent-encodes into an {@link OutputStream}. Encoded output is always plain ASCII.
+     */
+    private static final class BaseStringOutput {
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private OutputStream     out;
+
+        void open(OutputStream out) {
+            this.out = out;
+            this.buffer.clear();
+        }
+
+        void close() {
+            this.out = null;
+        }
+
+        void write(char c) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) c);
+        }
+
+        void writeAscii(String ascii) throws IOException {
+            for (int i = 0; i < ascii.length(); i++) {
+                write(ascii.charAt(i));
+            }
+        }
+
+        void writeEncoded(String plain) throws IOException {
+            int next = URLUtils.percentEncode(plain, 0, buffer);
+            while (next < plain.length()) {
+                flush();
+                next = URLUtils.percentEncode(plain, next, buffer);
+            }
+        }
+
+        void writeDoubleEncoded(String plain) throws IOException {
+            writeEncoded(URLUtils.percentEncode(plain));
+        }
+
+        void flush() throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+    }
 }
@@ -24,13 +24,14 @@ public class HeaderExtractorImpl implements HeaderExtractor {
     public String extract(OAuthRequest request) {
         checkPreconditions(request);
         List<ParamInfo> parameters = request.getOauthParameters();
-        StringBuffer header = new StringBuffer(parameters.size() * 20);
+        StringBuilder header = new StringBuilder(parameters.size() * 20);
         header.append(PREAMBLE);
         for (ParamInfo paramInfo : parameters) {
             if (header.length() > PREAMBLE.length()) {
                 header.append(PARAM_SEPARATOR);
             }
-            header.append(String.format("%s=\"%s\"", paramInfo.getKey(), URLUtils.percentEncode(paramInfo.getValue())));
+            header.append(paramInfo.getKey()).append("=\"");
+            URLUtils.percentEncode(paramInfo.getValue(), header).append('"');
         }
         return header.toString();
     }
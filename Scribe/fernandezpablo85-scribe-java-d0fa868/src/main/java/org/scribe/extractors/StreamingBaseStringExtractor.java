@@ -0,0 +1,23 @@
+package org.scribe.extractors;
+
+import java.io.*;
+
+import org.scribe.model.*;
+
+/**
+ * {@link BaseStringExtractor} that can also write the base string straight to a stream, without ever building it as a
+ * {@link String}.
+ */
+public interface StreamingBaseStringExtractor extends BaseStringExtractor
+{
+  /**
+   * Writes the url-encoded base string of the {@link OAuthRequest}, as UTF-8 bytes, to the given stream.
+   * 
+   * The bytes written are exactly those of {@link #extract(OAuthRequest)}. The stream is not closed.
+   * 
+   * @param request the OAuthRequest
+   * @param out destination of the base string bytes
+   * @throws IOException if the stream fails
+   */
+  void extract(OAuthRequest request, OutputStream out) throws IOException;
+}
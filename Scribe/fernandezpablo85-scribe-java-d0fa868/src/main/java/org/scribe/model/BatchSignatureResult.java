@@ -0,0 +1,104 @@
+package org.scribe.model;
+
+import java.util.*;
+
+/**
+ * Outcome of signing a batch of {@link OAuthRequest}s.
+ * 
+ * Results are reported by position: index i always refers to the i-th request of the batch, no matter in which order
+ * the requests were actually signed.
+ */
+public class BatchSignatureResult
+{
+  private final RuntimeException[] failures;
+  private final int failureCount;
+
+  /**
+   * Default constructor
+   * 
+   * @param failures one slot per request of the batch, holding the error that request failed with or null if it was signed
+   */
+  public BatchSignatureResult(RuntimeException[] failures)
+  {
+    this.failures = failures.clone();
+    int count = 0;
+    for (RuntimeException failure : failures)
+    {
+      if (failure != null) count++;
+    }
+    this.failureCount = count;
+  }
+
+  /**
+   * Returns the number of requests in the batch
+   * 
+   * @return batch size
+   */
+  public int size()
+  {
+    return failures.length;
+  }
+
+  /**
+   * Returns true if the request at the given position was signed
+   * 
+   * @param index position of the request in the batch
+   * @return true if signed
+   */
+  public boolean isSigned(int index)
+  {
+    return failures[index] == null;
+  }
+
+  /**
+   * Returns the error the request at the given position failed with, or null if it was signed
+   * 
+   * @param index position of the request in the batch
+   * @return failure or null
+   */
+  public RuntimeException getFailure(int index)
+  {
+    return failures[index];
+  }
+
+  /**
+   * Returns the errors of every request that failed, keyed by position and in batch order
+   * 
+   * @return failures by position
+   */
+  public Map<Integer, RuntimeException> getFailures()
+  {
+    Map<Integer, RuntimeException> byIndex = new LinkedHashMap<Integer, RuntimeException>();
+    for (int i = 0; i < failures.length; i++)
+    {
+      if (failures[i] != null) byIndex.put(i, failures[i]);
+    }
+    return byIndex;
+  }
+
+  /**
+   * Returns how many requests could not be signed
+   * 
+   * @return failure count
+   */
+  public int getFailureCount()
+  {
+    return failureCount;
+  }
+
+  /**
+   * Returns true if every request of the batch was signed
+   * 
+   * @return true if there were no failures
+   */
+  public boolean isAllSigned()
+  {
+    return failureCount == 0;
+  }
+
+  @Override
+  public String toString()
+  {
+    return String.format("@BatchSignatureResult(%d signed, %d failed)", size() - failureCount, failureCount);
+  }
+}
@@ -0,0 +1,21 @@
+package org.scribe.model;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * Receives the body of a {@link Response} a chunk at a time
+ *
+ * @see Response#consume(ChunkConsumer)
+ */
+public interface ChunkConsumer
+{
+  /**
+   * Called for every chunk of the body, in order. The buffer is reused for the next chunk once this method returns.
+   *
+   * @param chunk bytes of the chunk, from position to limit
+   * @return true to get the next chunk, false to stop reading and release the response
+   * @throws IOException to stop reading; the response is released and the exception rethrown
+   */
+  boolean onChunk(ByteBuffer chunk) throws IOException;
+}
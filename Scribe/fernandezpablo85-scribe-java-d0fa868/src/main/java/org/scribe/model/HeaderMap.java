@@ -0,0 +1,254 @@
+package org.scribe.model;
+
+import java.util.*;
+
+/**
+ * Immutable, case-insensitive multimap of HTTP headers
+ *
+ * Keeps every value of every header in the order received. Values are stored in two flat arrays; lookups hash the name
+ * without lower-casing it into an open-addressing table of the first value of every name, and the other values of a
+ * name are chained from it. No lookup allocates.
+ */
+public final class HeaderMap
+{
+  private static final HeaderMap EMPTY = new HeaderMap(new String[0], new String[0], 0);
+
+  private final String[] names;
+  private final String[] values;
+  private final int size;
+  // index of the next value with the same name, or -1
+  private final int[] next;
+  // index + 1 of the first value of a name, or 0 for free slots
+  private final int[] table;
+  private final int distinct;
+
+  private HeaderMap(String[] names, String[] values, int size)
+  {
+    this.names = names;
+    this.values = values;
+    this.size = size;
+    this.next = new int[size];
+    this.table = new int[tableSize(size)];
+    int[] last = new int[size];
+    int count = 0;
+    for (int i = 0; i < size; i++)
+    {
+      next[i] = -1;
+      int slot = slot(names[i]);
+      if (table[slot] == 0)
+      {
+        table[slot] = i + 1;
+        last[i] = i;
+        count++;
+      }
+      else
+      {
+        int first = table[slot] - 1;
+        next[last[first]] = i;
+        last[first] = i;
+      }
+    }
+    this.distinct = count;
+  }
+
+  /**
+   * Creates a header map
+   *
+   * @param headers headers in the order received; entries without a name (like status lines) are left out
+   * @return headers
+   */
+  public static HeaderMap of(List<ParamInfo> headers)
+  {
+    if (headers == null || headers.isEmpty())
+    {
+      return EMPTY;
+    }
+    String[] names = new String[headers.size()];
+    String[] values = new String[headers.size()];
+    int size = 0;
+    for (ParamInfo header : headers)
+    {
+      if (header.getKey() != null)
+      {
+        names[size] = header.getKey();
+        values[size++] = header.getValue();
+      }
+    }
+    return new HeaderMap(names, values, size);
+  }
+
+  /**
+   * Creates a header map from header fields like {@link java.net.URLConnection#getHeaderFields()}
+   *
+   * @param fields values of every header name; the null name (status line) is left out
+   * @return headers
+   */
+  public static HeaderMap of(Map<String, List<String>> fields)
+  {
+    if (fields == null || fields.isEmpty())
+    {
+      return EMPTY;
+    }
+    int count = 0;
+    for (List<String> fieldValues : fields.values())
+    {
+      count += fieldValues.size();
+    }
+    String[] names = new String[count];
+    String[] values = new String[count];
+    int size = 0;
+    for (Map.Entry<String, List<String>> field : fields.entrySet())
+    {
+      if (field.getKey() != null)
+      {
+        for (String value : field.getValue())
+        {
+          names[size] = field.getKey();
+          values[size++] = value;
+        }
+      }
+    }
+    return new HeaderMap(names, values, size);
+  }
+
+  /**
+   * Returns the first value of a header
+   *
+   * @param name header name, in any case
+   * @return value or null
+   */
+  public String get(String name)
+  {
+    int first = table[slot(name)] - 1;
+    return first >= 0 ? values[first] : null;
+  }
+
+  /**
+   * Returns every value of a header, in the order received
+   *
+   * @param name header name, in any case
+   * @return values, empty if there are none
+   */
+  public List<String> getAll(String name)
+  {
+    int index = table[slot(name)] - 1;
+    if (index < 0)
+    {
+      return Collections.emptyList();
+    }
+    List<String> all = new ArrayList<String>(2);
+    for (; index >= 0; index = next[index])
+    {
+      all.add(values[index]);
+    }
+    return all;
+  }
+
+  /**
+   * Returns true if the header has at least one value
+   *
+   * @param name header name, in any case
+   * @return true if present
+   */
+  public boolean contains(String name)
+  {
+    return table[slot(name)] != 0;
+  }
+
+  /**
+   * Returns the distinct header names, as first received
+   *
+   * @return names
+   */
+  public Set<String> getNames()
+  {
+    Set<String> distinctNames = new LinkedHashSet<String>();
+    for (int i = 0; i < size; i++)
+    {
+      if (table[slot(names[i])] == i + 1)
+      {
+        distinctNames.add(names[i]);
+      }
+    }
+    return distinctNames;
+  }
+
+  /**
+   * Returns the number of distinct header names
+   *
+   * @return name count
+   */
+  public int getNameCount()
+  {
+    return distinct;
+  }
+
+  /**
+   * Returns the number of values of all headers
+   *
+   * @return value count
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns every header value as a name-value pair, in the order received
+   *
+   * @return headers
+   */
+  public List<ParamInfo> toList()
+  {
+    List<ParamInfo> list = new ArrayList<ParamInfo>(size);
+    for (int i = 0; i < size; i++)
+    {
+      ParamInfo header = new ParamInfo();
+      header.setKey(names[i]);
+      header.setValue(values[i]);
+      list.add(header);
+    }
+    return list;
+  }
+
+  @Override
+  public String toString()
+  {
+    return toList().toString();
+  }
+
+  /*
+   * Slot holding the name, or the free slot where it would go
+   */
+  private int slot(String name)
+  {
+    int mask = table.length - 1;
+    int slot = hash(name) & mask;
+    while (table[slot] != 0 && !names[table[slot] - 1].equalsIgnoreCase(name))
+    {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(String name)
+  {
+    int hash = 0;
+    for (int i = 0; i < name.length(); i++)
+    {
+      char c = name.charAt(i);
+      hash = 31 * hash + (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : Character.toLowerCase(c));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int tableSize(int size)
+  {
+    int tableSize = 4;
+    while (tableSize < 2 * size)
+    {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+}
@@ -1,5 +1,9 @@
 package org.scribe.model;
 
+import org.scribe.cache.*;
+import org.scribe.services.*;
+import org.scribe.transport.*;
+
 /**
  * Parameter object that groups OAuth config values
  * 
@@ -14,6 +18,40 @@ public class OAuthConfig
   private String accessTokenEndpoint;
   private Verb requestTokenVerb;
   private Verb accessTokenVerb;
+  private String scope;
+  private SignatureService signatureService;
+  private TimestampService timestampService;
+  private Transport transport;
+  private boolean acceptCompression;
+  private boolean compressRequestBodies;
+  private ResponseCache responseCache;
+
+  public OAuthConfig()
+  {
+  }
+
+  /**
+   * Creates a copy of a config, so that it can be completed without changing the original
+   *
+   * @param other config to copy
+   */
+  public OAuthConfig(OAuthConfig other)
+  {
+    this.apiKey = other.apiKey;
+    this.apiSecret = other.apiSecret;
+    this.callback = other.callback;
+    this.requestTokenEndpoint = other.requestTokenEndpoint;
+    this.accessTokenEndpoint = other.accessTokenEndpoint;
+    this.requestTokenVerb = other.requestTokenVerb;
+    this.accessTokenVerb = other.accessTokenVerb;
+    this.scope = other.scope;
+    this.signatureService = other.signatureService;
+    this.timestampService = other.timestampService;
+    this.transport = other.transport;
+    this.acceptCompression = other.acceptCompression;
+    this.compressRequestBodies = other.compressRequestBodies;
+    this.responseCache = other.responseCache;
+  }
 
   public String getApiKey()
   {
@@ -85,4 +123,104 @@ public class OAuthConfig
     this.accessTokenVerb = accessTokenVerb;
   }
 
+  public String getScope()
+  {
+    return scope;
+  }
+
+  public void setScope(String scope)
+  {
+    this.scope = scope;
+  }
+
+  /**
+   * Returns the {@link SignatureService} chosen through the builder, or null to use the Api's default
+   *
+   * @return signature service override or null
+   */
+  public SignatureService getSignatureService()
+  {
+    return signatureService;
+  }
+
+  public void setSignatureService(SignatureService signatureService)
+  {
+    this.signatureService = signatureService;
+  }
+
+  /**
+   * Returns the {@link TimestampService} chosen through the builder, or null to use the Api's default
+   *
+   * @return timestamp service override or null
+   */
+  public TimestampService getTimestampService()
+  {
+    return timestampService;
+  }
+
+  public void setTimestampService(TimestampService timestampService)
+  {
+    this.timestampService = timestampService;
+  }
+
+  /**
+   * Returns the {@link Transport} chosen through the builder, or null to send requests with the default one
+   *
+   * @return transport or null
+   */
+  public Transport getTransport()
+  {
+    return transport;
+  }
+
+  public void setTransport(Transport transport)
+  {
+    this.transport = transport;
+  }
+
+  /**
+   * Returns true if the requests of the service ask for compressed responses
+   *
+   * @return true to send Accept-Encoding
+   */
+  public boolean isAcceptCompression()
+  {
+    return acceptCompression;
+  }
+
+  public void setAcceptCompression(boolean acceptCompression)
+  {
+    this.acceptCompression = acceptCompression;
+  }
+
+  /**
+   * Returns true if the requests of the service gzip their bodies
+   *
+   * @return true to compress request bodies
+   */
+  public boolean isCompressRequestBodies()
+  {
+    return compressRequestBodies;
+  }
+
+  public void setCompressRequestBodies(boolean compressRequestBodies)
+  {
+    this.compressRequestBodies = compressRequestBodies;
+  }
+
+  /**
+   * Returns the cache of the responses to the GET requests the service signs and sends, or null to send them all
+   *
+   * @return response cache or null
+   */
+  public ResponseCache getResponseCache()
+  {
+    return responseCache;
+  }
+
+  public void setResponseCache(ResponseCache responseCache)
+  {
+    this.responseCache = responseCache;
+  }
+
 }
\ No newline at end of file
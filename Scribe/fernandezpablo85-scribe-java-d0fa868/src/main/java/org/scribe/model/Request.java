@@ -2,20 +2,27 @@ package org.scribe.model;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import org.scribe.exceptions.*;
+import org.scribe.transport.*;
 import org.scribe.utils.*;
 
 /**
  * Represents an HTTP Request object
  * 
+ * Nothing is opened until the request is sent: the {@link Transport} creates the connection at that point.
+ * 
  * @author Pablo Fernandez
  */
-class Request {
+public class Request {
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
 
-    private static final String CONTENT_LENGTH = "Content-Length";
+    // smaller bodies do not gain enough to pay for the gzip header and the CPU
+    private static final long   MIN_COMPRESSED_LENGTH = 1024;
 
     private String              url;
 
@@ -30,7 +37,15 @@ class Request {
 
     private String              payload        = null;
 
-    private HttpURLConnection   connection;
+    private RequestBody         body           = null;
+
+    private boolean             compressBody   = false;
+
+    private Transport           transport;
+
+    private Integer             connectTimeout = null;
+
+    private Integer             readTimeout    = null;
 
     /**
      * Creates a new Http Request
@@ -43,11 +58,6 @@ class Request {
         this.url = url;
         this.bodyParams = new ArrayList<ParamInfo>();
         this.headers = new ArrayList<ParamInfo>();
-        try {
-            connection = (HttpURLConnection) new URL(url).openConnection();
-        } catch (IOException ioe) {
-            throw new OAuthException("Could not open connection to: " + url, ioe);
-        }
     }
 
     /**
@@ -58,39 +68,46 @@ class Request {
      */
     public Response send() {
         try {
-            return doSend();
+            return getEffectiveTransport().send(this);
         } catch (IOException ioe) {
             throw new OAuthException("Problems while creating connection", ioe);
         }
     }
 
-    Response doSend() throws IOException {
-        connection.setRequestMethod(this.verb.name());
-        addHeaders(connection);
-        if (verb.equals(Verb.PUT) || verb.equals(Verb.POST)) {
-            addBody(connection, getBodyContents());
-        }
-        return new Response(connection);
+    /**
+     * Starts sending the request without blocking the calling thread
+     *
+     * The future completes with the {@link Response} as soon as its headers have arrived; failures are reported as
+     * the cause of an {@link java.util.concurrent.ExecutionException}. Requests with an {@link AsyncTransport} are
+     * sent by it, requests without a transport by the shared {@link NioTransport}, and the others by their transport
+     * on a background thread.
+     *
+     * @return future Http Response
+     */
+    public SettableFuture<Response> sendAsync() {
+        return Transports.sendAsync(transport != null ? transport : NioTransport.getDefault(), this);
     }
 
-    void addHeaders(HttpURLConnection conn) {
-        //        for (String key : headers.keySet())
-        //            conn.setRequestProperty(key, headers.get(key));
-        for (ParamInfo paramInfo : this.headers) {
-            // System.out.println("adding header " + paramInfo.getKey() + ":" + paramInfo.getValue());
-            conn.setRequestProperty(paramInfo.getKey(), paramInfo.getValue());
-        }
+    private Transport getEffectiveTransport() {
+        return transport != null ? transport : HttpURLConnectionTransport.getDefault();
+    }
 
-        //        for (int i = 0; i < count; i++) {
-        //            System.out.println("key :: " + this.keyHeaders[i] + "  value :: " + this.valueHeaders[i]);
-        //            conn.setRequestProperty(this.keyHeaders[i], this.valueHeaders[i]);
-        //        }
+    /**
+     * Sets the {@link Transport} that sends this request
+     * 
+     * @param transport the transport, or null for the default {@link HttpURLConnectionTransport}
+     */
+    public void setTransport(Transport transport) {
+        this.transport = transport;
     }
 
-    void addBody(HttpURLConnection conn, String content) throws IOException {
-        conn.setRequestProperty(CONTENT_LENGTH, String.valueOf(content.getBytes().length));
-        conn.setDoOutput(true);
-        conn.getOutputStream().write(content.getBytes());
+    /**
+     * Returns the {@link Transport} set on this request
+     * 
+     * @return the transport, or null if the request is sent with the default one
+     */
+    public Transport getTransport() {
+        return transport;
     }
 
     /**
@@ -130,6 +147,80 @@ class Request {
      */
     public void addPayload(String payload) {
         this.payload = payload;
+        this.body = null;
+    }
+
+    /**
+     * Add a body payload that is streamed to the connection when the request is sent, never held as a String.
+     * 
+     * Note: The contents are not part of the OAuth signature
+     * 
+     * @param body the body of the request
+     */
+    public void addPayload(RequestBody body) {
+        Preconditions.checkNotNull(body, "Body cannot be null");
+        this.body = body;
+        this.payload = null;
+    }
+
+    /**
+     * Add a body payload of exactly length bytes read from a stream, which is closed once sent.
+     * 
+     * @param stream the body of the request
+     * @param length number of bytes, or {@link RequestBody#UNKNOWN_LENGTH} to send the whole stream chunked
+     */
+    public void addPayload(InputStream stream, long length) {
+        addPayload(RequestBody.of(stream, length));
+    }
+
+    /**
+     * Add a body payload read from a stream and sent chunked. The stream is closed once sent.
+     * 
+     * @param stream the body of the request
+     */
+    public void addPayload(InputStream stream) {
+        addPayload(RequestBody.of(stream));
+    }
+
+    /**
+     * Add the remaining bytes of a buffer as body payload. The buffer is not copied.
+     * 
+     * @param buffer the body of the request
+     */
+    public void addPayload(ByteBuffer buffer) {
+        addPayload(RequestBody.of(buffer));
+    }
+
+    /**
+     * Add the contents of a file as body payload, read when the request is sent.
+     * 
+     * @param file the body of the request
+     */
+    public void addPayload(File file) {
+        addPayload(RequestBody.of(file));
+    }
+
+    /**
+     * Asks the server to compress the response body, by adding an "Accept-Encoding: gzip, deflate" header unless the
+     * request already has an Accept-Encoding header. The {@link Response} decompresses the body as it is read.
+     */
+    public void acceptCompression() {
+        for (ParamInfo header : headers) {
+            if (ACCEPT_ENCODING.equalsIgnoreCase(header.getKey())) {
+                return;
+            }
+        }
+        addHeader(ACCEPT_ENCODING, "gzip, deflate");
+    }
+
+    /**
+     * Gzips the body as it is sent, with a "Content-Encoding: gzip" header. Only for servers known to accept
+     * compressed requests. Bodies shorter than 1KB are sent as is.
+     * 
+     * The OAuth signature is computed over the uncompressed body parameters, as usual.
+     */
+    public void compressBody() {
+        this.compressBody = true;
     }
 
     /**
@@ -187,12 +278,31 @@ class Request {
     /**
      * Returns the body of the request
      * 
-     * @return form encoded string
+     * @return form encoded string, or null if the payload is a streamed {@link RequestBody}
      */
     public String getBodyContents() {
+        if (body != null) {
+            return null;
+        }
         return (payload != null) ? payload : URLUtils.formURLEncodeMap(bodyParams);
     }
 
+    /**
+     * Returns the body of the request as it is sent
+     * 
+     * @return the streamed payload, or the bytes of the String payload or form encoded body parameters, gzipped if
+     *         {@link #compressBody()} was called
+     */
+    public RequestBody getBody() {
+        RequestBody contents = body != null ? body : RequestBody.of(getBodyContents().getBytes());
+        long length = contents.getContentLength();
+        if (compressBody && contents.getContentEncoding() == null
+                && (length == RequestBody.UNKNOWN_LENGTH || length >= MIN_COMPRESSED_LENGTH)) {
+            return RequestBody.gzip(contents);
+        }
+        return contents;
+    }
+
     /**
      * Returns the HTTP Verb
      * 
@@ -212,32 +322,56 @@ class Request {
     }
 
     /**
-     * Sets the connect timeout for the underlying {@link HttpURLConnection}
+     * Sets the connect timeout of the connection
      * 
      * @param duration duration of the timeout
      * 
      * @param unit unit of time (milliseconds, seconds, etc)
      */
     public void setConnectTimeout(int duration, TimeUnit unit) {
-        this.connection.setConnectTimeout((int) unit.toMillis(duration));
+        this.connectTimeout = (int) unit.toMillis(duration);
     }
 
     /**
-     * Sets the read timeout for the underlying {@link HttpURLConnection}
+     * Sets the read timeout of the connection
      * 
      * @param duration duration of the timeout
      * 
      * @param unit unit of time (milliseconds, seconds, etc)
      */
     public void setReadTimeout(int duration, TimeUnit unit) {
-        this.connection.setReadTimeout((int) unit.toMillis(duration));
+        this.readTimeout = (int) unit.toMillis(duration);
+    }
+
+    /**
+     * Returns the connect timeout in milliseconds
+     * 
+     * @return connect timeout, or null for the transport default
+     */
+    public Integer getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Returns the read timeout in milliseconds
+     * 
+     * @return read timeout, or null for the transport default
+     */
+    public Integer getReadTimeout() {
+        return readTimeout;
     }
 
     /*
      * We need this in order to stub the connection object for test cases
      */
-    void setConnection(HttpURLConnection connection) {
-        this.connection = connection;
+    void setConnection(final HttpURLConnection connection) {
+        this.transport = new HttpURLConnectionTransport() {
+
+            @Override
+            protected HttpURLConnection openConnection(Request request) {
+                return connection;
+            }
+        };
     }
 
     @Override
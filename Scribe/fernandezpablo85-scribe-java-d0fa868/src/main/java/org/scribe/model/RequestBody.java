@@ -0,0 +1,508 @@
+package org.scribe.model;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.zip.*;
+
+import org.scribe.utils.*;
+
+/**
+ * Body of a {@link Request}, written to the connection as it is sent instead of being held as a String
+ *
+ * Bodies of a known length are sent with a Content-Length header; the others with chunked transfer encoding.
+ * Bodies backed by bytes, a {@link ByteBuffer} or a {@link File} can be sent again (when a request is retried);
+ * bodies read from an {@link InputStream} only once.
+ *
+ * {@link #gzip(RequestBody)} compresses a body as it is sent; transports add the matching Content-Encoding header.
+ */
+public abstract class RequestBody
+{
+  /**
+   * Content length of bodies sent with chunked transfer encoding
+   */
+  public static final long UNKNOWN_LENGTH = -1;
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * Returns the length of the body
+   *
+   * @return length in bytes, or {@link #UNKNOWN_LENGTH}
+   */
+  public abstract long getContentLength();
+
+  /**
+   * Opens a channel over the contents of the body. Channels of bytes and buffers share their memory; file bodies open
+   * a {@link FileChannel} positioned at the start of the file, which transports may hand to the kernel as is.
+   *
+   * @return channel over the body
+   * @throws IOException if the body cannot be read (anymore)
+   */
+  public abstract ReadableByteChannel openChannel() throws IOException;
+
+  /**
+   * Returns the Content-Encoding of the body
+   *
+   * @return encoding, or null if the body is sent as is
+   */
+  public String getContentEncoding()
+  {
+    return null;
+  }
+
+  /**
+   * Returns true if the body can be sent more than once
+   *
+   * @return true if repeatable
+   */
+  public boolean isRepeatable()
+  {
+    return true;
+  }
+
+  /**
+   * Writes the whole body
+   *
+   * @param out destination
+   * @throws IOException if the body cannot be read or written
+   */
+  public void writeTo(OutputStream out) throws IOException
+  {
+    ReadableByteChannel channel = openChannel();
+    try
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      while (channel.read(buffer) >= 0)
+      {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+      }
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  /**
+   * Creates a body of bytes. The array is not copied.
+   *
+   * @param bytes contents
+   * @return body
+   */
+  public static RequestBody of(byte[] bytes)
+  {
+    Preconditions.checkNotNull(bytes, "Body bytes cannot be null");
+    return of(ByteBuffer.wrap(bytes));
+  }
+
+  /**
+   * Creates a body of the remaining bytes of a buffer. The contents are not copied and the buffer position is left
+   * untouched.
+   *
+   * @param buffer contents
+   * @return body
+   */
+  public static RequestBody of(ByteBuffer buffer)
+  {
+    Preconditions.checkNotNull(buffer, "Body buffer cannot be null");
+    return new BufferBody(buffer.slice());
+  }
+
+  /**
+   * Creates a body with the contents of a file, read when the request is sent
+   *
+   * @param file contents
+   * @return body
+   */
+  public static RequestBody of(File file)
+  {
+    Preconditions.checkNotNull(file, "Body file cannot be null");
+    return new FileBody(file);
+  }
+
+  /**
+   * Creates a body of exactly length bytes read from a stream. The stream is closed once read.
+   *
+   * @param in contents
+   * @param length number of bytes to send, or {@link #UNKNOWN_LENGTH} to send the whole stream chunked
+   * @return body
+   */
+  public static RequestBody of(InputStream in, long length)
+  {
+    Preconditions.checkNotNull(in, "Body stream cannot be null");
+    if (length < UNKNOWN_LENGTH)
+    {
+      throw new IllegalArgumentException("Body length cannot be negative");
+    }
+    return new StreamBody(in, length);
+  }
+
+  /**
+   * Creates a body of the whole contents of a stream, sent chunked. The stream is closed once read.
+   *
+   * @param in contents
+   * @return body
+   */
+  public static RequestBody of(InputStream in)
+  {
+    return of(in, UNKNOWN_LENGTH);
+  }
+
+  /**
+   * Creates a body that gzips another one as it is sent. Compressed bodies have an unknown length, so they are sent
+   * chunked.
+   *
+   * @param body body to compress
+   * @return compressed body
+   */
+  public static RequestBody gzip(RequestBody body)
+  {
+    return gzip(body, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates a body that gzips another one as it is sent, with the given compression level
+   *
+   * @param body body to compress
+   * @param level {@link Deflater} compression level, from 1 (fastest) to 9 (smallest)
+   * @return compressed body
+   */
+  public static RequestBody gzip(RequestBody body, int level)
+  {
+    Preconditions.checkNotNull(body, "Body cannot be null");
+    if (body.getContentEncoding() != null)
+    {
+      throw new IllegalArgumentException("Body is already encoded with " + body.getContentEncoding());
+    }
+    return new GzipBody(body, level);
+  }
+
+  private static final class BufferBody extends RequestBody
+  {
+    private final ByteBuffer buffer;
+
+    BufferBody(ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+      return buffer.remaining();
+    }
+
+    @Override
+    public ReadableByteChannel openChannel()
+    {
+      final ByteBuffer contents = buffer.duplicate();
+      return new ReadableByteChannel()
+      {
+        private boolean open = true;
+
+        public int read(ByteBuffer target)
+        {
+          if (!contents.hasRemaining())
+          {
+            return -1;
+          }
+          int length = Math.min(contents.remaining(), target.remaining());
+          ByteBuffer slice = contents.duplicate();
+          slice.limit(slice.position() + length);
+          target.put(slice);
+          contents.position(contents.position() + length);
+          return length;
+        }
+
+        public boolean isOpen()
+        {
+          return open;
+        }
+
+        public void close()
+        {
+          open = false;
+        }
+      };
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException
+    {
+      if (buffer.hasArray())
+      {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+      }
+      else
+      {
+        super.writeTo(out);
+      }
+    }
+  }
+
+  private static final class FileBody extends RequestBody
+  {
+    private final File file;
+
+    FileBody(File file)
+    {
+      this.file = file;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+      return file.length();
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException
+    {
+      return new FileInputStream(file).getChannel();
+    }
+  }
+
+  private static final class StreamBody extends RequestBody
+  {
+    private final InputStream in;
+    private final long length;
+    private boolean opened;
+
+    StreamBody(InputStream in, long length)
+    {
+      this.in = in;
+      this.length = length;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+      return length;
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+      return false;
+    }
+
+    @Override
+    public synchronized ReadableByteChannel openChannel() throws IOException
+    {
+      if (opened)
+      {
+        throw new IOException("Stream bodies can only be sent once");
+      }
+      opened = true;
+      final ReadableByteChannel channel = Channels.newChannel(in);
+      if (length == UNKNOWN_LENGTH)
+      {
+        return channel;
+      }
+      return new ReadableByteChannel()
+      {
+        private long remaining = length;
+
+        public int read(ByteBuffer target) throws IOException
+        {
+          if (remaining == 0)
+          {
+            return -1;
+          }
+          int limit = target.limit();
+          if (target.remaining() > remaining)
+          {
+            target.limit(target.position() + (int) remaining);
+          }
+          try
+          {
+            int read = channel.read(target);
+            if (read < 0)
+            {
+              throw new EOFException("Body stream ended " + remaining + " bytes before its declared length");
+            }
+            remaining -= read;
+            return read;
+          }
+          finally
+          {
+            target.limit(limit);
+          }
+        }
+
+        public boolean isOpen()
+        {
+          return channel.isOpen();
+        }
+
+        public void close() throws IOException
+        {
+          channel.close();
+        }
+      };
+    }
+  }
+
+  private static final class GzipBody extends RequestBody
+  {
+    private final RequestBody source;
+    private final int level;
+
+    GzipBody(RequestBody source, int level)
+    {
+      this.source = source;
+      this.level = level;
+    }
+
+    @Override
+    public long getContentLength()
+    {
+      return UNKNOWN_LENGTH;
+    }
+
+    @Override
+    public String getContentEncoding()
+    {
+      return "gzip";
+    }
+
+    @Override
+    public boolean isRepeatable()
+    {
+      return source.isRepeatable();
+    }
+
+    @Override
+    public ReadableByteChannel openChannel() throws IOException
+    {
+      return new GzipChannel(source.openChannel(), level);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException
+    {
+      final Deflater deflater = new Deflater(level, true);
+      try
+      {
+        // the trailer is written by finish(); the target stays open
+        DeflaterOutputStream gzip = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        out.write(GzipChannel.HEADER);
+        ReadableByteChannel channel = source.openChannel();
+        try
+        {
+          ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+          while (channel.read(buffer) >= 0)
+          {
+            crc.update(buffer.array(), 0, buffer.position());
+            gzip.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+          }
+        }
+        finally
+        {
+          channel.close();
+        }
+        gzip.finish();
+        out.write(GzipChannel.trailer(crc, deflater));
+      }
+      finally
+      {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * Gzips the bytes of another channel as they are read
+   */
+  private static final class GzipChannel implements ReadableByteChannel
+  {
+    static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private final ReadableByteChannel source;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private ByteBuffer pending = ByteBuffer.wrap(HEADER);
+    private boolean inputDone;
+    private boolean done;
+
+    GzipChannel(ReadableByteChannel source, int level)
+    {
+      this.source = source;
+      this.deflater = new Deflater(level, true);
+    }
+
+    public int read(ByteBuffer target) throws IOException
+    {
+      int written = 0;
+      while (target.hasRemaining())
+      {
+        if (pending.hasRemaining())
+        {
+          int length = Math.min(pending.remaining(), target.remaining());
+          target.put(pending.array(), pending.arrayOffset() + pending.position(), length);
+          pending.position(pending.position() + length);
+          written += length;
+        }
+        else if (done)
+        {
+          break;
+        }
+        else if (deflater.finished())
+        {
+          pending = ByteBuffer.wrap(trailer(crc, deflater));
+          done = true;
+        }
+        else if (deflater.needsInput() && !inputDone)
+        {
+          input.clear();
+          int read = source.read(input);
+          if (read < 0)
+          {
+            inputDone = true;
+            deflater.finish();
+          }
+          else
+          {
+            crc.update(input.array(), 0, read);
+            deflater.setInput(input.array(), 0, read);
+          }
+        }
+        else
+        {
+          pending = ByteBuffer.wrap(output, 0, deflater.deflate(output, 0, output.length));
+        }
+      }
+      return written == 0 && done ? -1 : written;
+    }
+
+    public boolean isOpen()
+    {
+      return source.isOpen();
+    }
+
+    public void close() throws IOException
+    {
+      deflater.end();
+      source.close();
+    }
+
+    static byte[] trailer(CRC32 crc, Deflater deflater)
+    {
+      long value = crc.getValue();
+      long size = deflater.getBytesRead();
+      byte[] trailer = new byte[8];
+      for (int i = 0; i < 4; i++)
+      {
+        trailer[i] = (byte) (value >>> (8 * i));
+        trailer[4 + i] = (byte) (size >>> (8 * i));
+      }
+      return trailer;
+    }
+  }
+}
@@ -2,34 +2,60 @@ package org.scribe.model;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
 import java.util.*;
+import java.util.zip.*;
 
+import org.scribe.exceptions.*;
 import org.scribe.utils.*;
 
 /**
  * Represents an HTTP Response.
  * 
+ * The body is read from the connection once: as a String ({@link #getBody()}), as bytes ({@link #getBodyBytes()}),
+ * or chunk by chunk ({@link #consume(ChunkConsumer)}). The first two keep the body, so they can be called again.
+ * 
+ * Bodies with a gzip or deflate Content-Encoding are decompressed as they are read, by all of these methods and
+ * {@link #getStream()}. The headers are left as received.
+ * 
  * @author Pablo Fernandez
  */
-public class Response {
+public class Response implements Closeable {
 
     private static final String EMPTY = "";
 
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     private int                 code;
 
     private String              body;
 
+    private byte[]              bodyBytes;
+
     private InputStream         stream;
 
+    private CountingInputStream received;
+
+    private CountingInputStream decoded;
+
+    private HttpURLConnection   connection;
+
     private List<ParamInfo>     headers;
 
-    Response(HttpURLConnection connection) throws IOException {
+    private HeaderMap           headerMap;
+
+    /**
+     * Reads the status and headers of a connection. The body is read lazily from the connection stream.
+     * 
+     * @param connection connection of a sent request
+     * @throws IOException if the response cannot be read
+     */
+    public Response(HttpURLConnection connection) throws IOException {
         try {
-            System.out.println("SB   - " + connection.getURL().getQuery());
             connection.connect();
-           // System.out.println("url ::" + connection.getURL());
             code = connection.getResponseCode();
-            headers = parseHeaders(connection);
+            this.connection = connection;
             stream = wasSuccessful() ? connection.getInputStream() : connection.getErrorStream();
         } catch (UnknownHostException e) {
             code = 404;
@@ -37,22 +63,56 @@ public class Response {
         }
     }
 
+    /**
+     * Creates a response received by a {@link org.scribe.transport.Transport}
+     * 
+     * @param code HTTP status code
+     * @param headers response headers
+     * @param stream response body, read lazily
+     */
+    public Response(int code, List<ParamInfo> headers, InputStream stream) {
+        this.code = code;
+        this.headers = headers;
+        this.stream = stream;
+    }
+
     private String parseBodyContents() {
-        body = StreamUtils.getStreamContents(getStream());
+        if (bodyBytes != null) {
+            body = decode(bodyBytes);
+        } else {
+            body = StreamUtils.getStreamContents(getStream(), getContentLength());
+        }
         return body;
     }
 
-    private List<ParamInfo> parseHeaders(HttpURLConnection conn) {
+    /*
+     * Reads the headers in the order received. getHeaderFields() lists the values of a repeated header in reverse order
+     * on some JDKs, so it is only used for connections that do not index their header fields.
+     */
+    private static HeaderMap parseHeaders(HttpURLConnection conn) {
         List<ParamInfo> headers = new ArrayList<ParamInfo>();
+        for (int i = 0;; i++) {
+            String key = conn.getHeaderFieldKey(i);
+            String value = conn.getHeaderField(i);
+            if (key == null && value == null) {
+                break;
+            }
+            if (key != null) {
+                ParamInfo paramInfo = new ParamInfo();
+                paramInfo.setKey(key);
+                paramInfo.setValue(value);
+                headers.add(paramInfo);
+            }
+        }
+        return headers.isEmpty() ? HeaderMap.of(conn.getHeaderFields()) : HeaderMap.of(headers);
+    }
 
-        for (String key : conn.getHeaderFields().keySet()) {
-            ParamInfo paramInfo = new ParamInfo();
-            paramInfo.setKey(key);
-            paramInfo.setValue(conn.getHeaderFields().get(key).get(0));
-            //headers.put(key, conn.getHeaderFields().get(key).get(0));
-            headers.add(paramInfo);
+    private HeaderMap headerMap() {
+        if (headerMap == null) {
+            headerMap = connection != null ? parseHeaders(connection) : HeaderMap.of(headers);
+            connection = null;
         }
-        return headers;
+        return headerMap;
     }
 
     private boolean wasSuccessful() {
@@ -68,13 +128,166 @@ public class Response {
         return body != null ? body : parseBodyContents();
     }
 
+    /**
+     * Obtains the HTTP Response body, refusing to read more than maxBytes from the connection. A body that has
+     * already been read is returned as is.
+     * 
+     * @param maxBytes maximum number of bytes of the body
+     * @return response body decoded as UTF-8
+     * @throws OAuthException if the body is larger than maxBytes, or cannot be read
+     */
+    public String getBody(int maxBytes) {
+        if (body == null) {
+            body = decode(bodyBytes != null ? bodyBytes : readBytes(maxBytes));
+        }
+        return body;
+    }
+
+    /**
+     * Obtains the HTTP Response body as it was received, without decoding it
+     * 
+     * @return response body bytes
+     */
+    public byte[] getBodyBytes() {
+        if (bodyBytes == null) {
+            if (body != null) {
+                bodyBytes = body.getBytes(UTF8);
+            } else {
+                bodyBytes = stream != null ? StreamUtils.getStreamBytes(getStream(), getContentLength()) : new byte[0];
+            }
+        }
+        return bodyBytes;
+    }
+
+    /**
+     * Reads the body chunk by chunk, without keeping it. Reading stops early when the consumer returns false, and the
+     * response is closed once reading stops.
+     * 
+     * If the body has already been read by {@link #getBody()} or {@link #getBodyBytes()}, the consumer gets it as a
+     * single chunk.
+     * 
+     * @param consumer receives the chunks
+     * @return number of bytes handed to the consumer
+     * @throws IOException if the body cannot be read, or the consumer fails
+     */
+    public long consume(ChunkConsumer consumer) throws IOException {
+        Preconditions.checkNotNull(consumer, "Consumer cannot be null");
+        if (body != null || bodyBytes != null) {
+            byte[] bytes = getBodyBytes();
+            consumer.onChunk(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+            return bytes.length;
+        }
+        if (stream == null) {
+            return 0;
+        }
+        BufferPool pool = BufferPool.getShared();
+        byte[] buffer = pool.acquire();
+        ByteBuffer chunk = ByteBuffer.wrap(buffer);
+        long total = 0;
+        try {
+            int read;
+            InputStream in = getStream();
+            while ((read = in.read(buffer)) >= 0) {
+                if (read == 0) {
+                    continue;
+                }
+                total += read;
+                chunk.clear();
+                chunk.limit(read);
+                if (!consumer.onChunk(chunk)) {
+                    break;
+                }
+            }
+        } finally {
+            pool.release(buffer);
+            close();
+        }
+        return total;
+    }
+
+    private byte[] readBytes(final int maxBytes) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            consume(new ChunkConsumer() {
+
+                public boolean onChunk(ByteBuffer chunk) throws IOException {
+                    if (out.size() + chunk.remaining() > maxBytes) {
+                        throw new IOException("Response body is larger than " + maxBytes + " bytes");
+                    }
+                    out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                    return true;
+                }
+            });
+        } catch (IOException ioe) {
+            throw new OAuthException("Error while reading response body", ioe);
+        }
+        return out.toByteArray();
+    }
+
+    private static String decode(byte[] bytes) {
+        return new String(bytes, UTF8);
+    }
+
+    /*
+     * Content-Length of the body, used to size the buffer it is read into
+     */
+    private long getContentLength() {
+        String length = getHeader("Content-Length");
+        if (length != null && !isCompressed()) {
+            try {
+                return Long.parseLong(length.trim());
+            } catch (NumberFormatException e) {
+                // not usable to size anything
+            }
+        }
+        return StreamUtils.UNKNOWN_LENGTH;
+    }
+
     /**
      * Obtains the meaningful stream of the HttpUrlConnection, either inputStream or errorInputStream, depending on the status code
      * 
-     * @return input stream / error stream
+     * @return input stream / error stream, decompressed if the body is
      */
     public InputStream getStream() {
-        return stream;
+        if (decoded == null && stream != null) {
+            received = new CountingInputStream(stream);
+            String encoding = getHeader("Content-Encoding");
+            InputStream in = received;
+            if (encoding != null) {
+                encoding = encoding.trim().toLowerCase(Locale.US);
+                if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+                    in = new InflatingStream(received, true);
+                } else if (encoding.equals("deflate")) {
+                    in = new InflatingStream(received, false);
+                }
+            }
+            decoded = new CountingInputStream(in);
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the number of body bytes read from the connection so far, compressed if the body is
+     * 
+     * @return compressed byte count
+     */
+    public long getCompressedByteCount() {
+        return received != null ? received.getCount() : 0;
+    }
+
+    /**
+     * Returns the number of body bytes read after decompression so far. Equals {@link #getCompressedByteCount()} for
+     * bodies that are not compressed.
+     * 
+     * @return decompressed byte count
+     */
+    public long getDecompressedByteCount() {
+        return decoded != null ? decoded.getCount() : 0;
+    }
+
+    private boolean isCompressed() {
+        String encoding = getHeader("Content-Encoding");
+        return encoding != null && !encoding.trim().equalsIgnoreCase("identity");
     }
 
     /**
@@ -87,23 +300,127 @@ public class Response {
     }
 
     /**
-     * Obtains a {@link Map} containing the HTTP Response Headers
+     * Obtains the HTTP Response Headers, with one entry per value in the order received
      * 
      * @return headers
      */
     public List<ParamInfo> getHeaders() {
+        if (headers == null) {
+            headers = headerMap().toList();
+        }
         return headers;
     }
 
+    /**
+     * Obtains the HTTP Response Headers, indexed by case-insensitive name. Parsed on first use.
+     * 
+     * @return headers
+     */
+    public HeaderMap getHeaderMap() {
+        return headerMap();
+    }
+
     /**
      * Obtains a single HTTP Header value, or null if undefined
      * 
-     * @param header name
+     * @param name header name, in any case
+     * 
+     * @return first header value or null
+     */
+    public String getHeader(String name) {
+        return headerMap().get(name);
+    }
+
+    /**
+     * Obtains every value of an HTTP Header, like Set-Cookie or Link
+     * 
+     * @param name header name, in any case
      * 
-     * @return header value or null
+     * @return header values in the order received, empty if undefined
      */
-//    public String getHeader(String name) {
-//        return headers.get(name);
-//    }
+    public List<String> getHeaderValues(String name) {
+        return headerMap().getAll(name);
+    }
+
+    /**
+     * Releases the response stream, if it has not been read to the end. Pooled transports drain it so the connection
+     * can be reused.
+     */
+    public void close() {
+        InputStream open = decoded != null ? decoded : stream;
+        if (open != null) {
+            try {
+                open.close();
+            } catch (IOException ioe) {
+                // the connection is discarded anyway
+            }
+        }
+    }
+
+    /**
+     * Inflates a gzip or deflate body. Starts on the first read, so that empty bodies (like those of HEAD requests) need
+     * no header. Deflate bodies are accepted with or without their zlib wrapper, as servers send both.
+     */
+    private static final class InflatingStream extends InputStream {
+
+        private static final int BUFFER_SIZE = 8 * 1024;
+
+        private final PushbackInputStream in;
 
-}
\ No newline at end of file
+        private final boolean gzip;
+
+        private InputStream inflating;
+
+        InflatingStream(InputStream in, boolean gzip) {
+            this.in = new PushbackInputStream(in, 2);
+            this.gzip = gzip;
+        }
+
+        private InputStream inflating() throws IOException {
+            if (inflating == null) {
+                int first = in.read();
+                int second = first < 0 ? -1 : in.read();
+                if (second >= 0) {
+                    in.unread(second);
+                }
+                if (first < 0) {
+                    inflating = in;
+                } else if (gzip) {
+                    in.unread(first);
+                    inflating = new GZIPInputStream(in, BUFFER_SIZE);
+                } else {
+                    in.unread(first);
+                    boolean zlib = second >= 0 && (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+                    final Inflater inflater = new Inflater(!zlib);
+                    inflating = new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                inflater.end();
+                            }
+                        }
+                    };
+                }
+            }
+            return inflating;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return inflating().read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            return inflating().read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            (inflating != null ? inflating : in).close();
+        }
+    }
+}
@@ -36,6 +36,26 @@ public class Token implements Serializable
     return secret;
   }
 
+  @Override
+  public boolean equals(Object other)
+  {
+    if (this == other) return true;
+    if (!(other instanceof Token)) return false;
+    Token that = (Token) other;
+    return equal(token, that.token) && equal(secret, that.secret);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return 31 * (token == null ? 0 : token.hashCode()) + (secret == null ? 0 : secret.hashCode());
+  }
+
+  private static boolean equal(String one, String other)
+  {
+    return one == null ? other == null : one.equals(other);
+  }
+
   @Override
   public String toString()
   {
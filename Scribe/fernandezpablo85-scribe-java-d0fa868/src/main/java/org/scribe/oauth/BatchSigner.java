@@ -0,0 +1,128 @@
+package org.scribe.oauth;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.scribe.exceptions.*;
+import org.scribe.model.*;
+
+/**
+ * Signs batches of requests in parallel, one slice of the batch per task.
+ * 
+ * Signing is CPU-bound and every request is independent, so the batch is cut into a few slices per core. The caller
+ * thread signs the first slice itself while a shared pool of daemon threads takes the rest.
+ */
+class BatchSigner
+{
+  private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+  private static final int SLICES_PER_THREAD = 4;
+  private static final int MIN_SLICE_SIZE = 8;
+
+  private static volatile ExecutorService pool;
+
+  private final OAuthService service;
+
+  BatchSigner(OAuthService service)
+  {
+    this.service = service;
+  }
+
+  BatchSignatureResult sign(List<Token> tokens, List<OAuthRequest> requests)
+  {
+    if (tokens.size() != requests.size())
+    {
+      throw new IllegalArgumentException("There must be exactly one token per request");
+    }
+    final Token[] tokenArray = tokens.toArray(new Token[tokens.size()]);
+    final OAuthRequest[] requestArray = requests.toArray(new OAuthRequest[requests.size()]);
+    final RuntimeException[] failures = new RuntimeException[requestArray.length];
+
+    int slices = Math.min(PARALLELISM * SLICES_PER_THREAD, (requestArray.length + MIN_SLICE_SIZE - 1) / MIN_SLICE_SIZE);
+    if (PARALLELISM == 1 || slices <= 1)
+    {
+      signSlice(tokenArray, requestArray, failures, 0, requestArray.length);
+      return new BatchSignatureResult(failures);
+    }
+
+    int sliceSize = (requestArray.length + slices - 1) / slices;
+    List<Future<?>> pending = new ArrayList<Future<?>>(slices);
+    for (int from = sliceSize; from < requestArray.length; from += sliceSize)
+    {
+      final int start = from;
+      final int end = Math.min(from + sliceSize, requestArray.length);
+      pending.add(getPool().submit(new Runnable()
+      {
+        public void run()
+        {
+          signSlice(tokenArray, requestArray, failures, start, end);
+        }
+      }));
+    }
+    signSlice(tokenArray, requestArray, failures, 0, sliceSize);
+    awaitAll(pending);
+    return new BatchSignatureResult(failures);
+  }
+
+  private void signSlice(Token[] tokens, OAuthRequest[] requests, RuntimeException[] failures, int from, int to)
+  {
+    for (int i = from; i < to; i++)
+    {
+      try
+      {
+        service.signRequest(tokens[i], requests[i]);
+      }
+      catch (RuntimeException e)
+      {
+        failures[i] = e;
+      }
+    }
+  }
+
+  private void awaitAll(List<Future<?>> pending)
+  {
+    try
+    {
+      for (Future<?> slice : pending)
+      {
+        slice.get();
+      }
+    }
+    catch (InterruptedException ie)
+    {
+      Thread.currentThread().interrupt();
+      throw new OAuthException("Interrupted while signing batch", ie);
+    }
+    catch (ExecutionException ee)
+    {
+      throw new OAuthException("Error while signing batch", ee);
+    }
+  }
+
+  private static ExecutorService getPool()
+  {
+    if (pool == null)
+    {
+      synchronized (BatchSigner.class)
+      {
+        if (pool == null)
+        {
+          pool = Executors.newFixedThreadPool(PARALLELISM, new SignerThreadFactory());
+        }
+      }
+    }
+    return pool;
+  }
+
+  private static final class SignerThreadFactory implements ThreadFactory
+  {
+    private final AtomicInteger count = new AtomicInteger();
+
+    public Thread newThread(Runnable runnable)
+    {
+      Thread thread = new Thread(runnable, "scribe-signer-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.scribe.oauth;
+
+import java.text.*;
+import java.util.*;
+
+import org.scribe.model.*;
+import org.scribe.services.*;
+
+/**
+ * Learns how far the provider clock is from the local one, from the Date header of its responses, and shifts the
+ * timestamps of an {@link AdjustableTimestampService} to match.
+ *
+ * Date headers have a one second resolution and arrive after some network latency, so differences within
+ * {@link #TOLERANCE_SECONDS} of the current offset are ignored.
+ */
+class ClockSkewCorrector
+{
+  static final long TOLERANCE_SECONDS = 2;
+
+  private static final String DATE = "Date";
+  private static final String RFC_1123 = "EEE, dd MMM yyyy HH:mm:ss zzz";
+  private static final String TIMESTAMP = "timestamp";
+  private static final int BAD_REQUEST = 400;
+  private static final int UNAUTHORIZED = 401;
+
+  private final AdjustableTimestampService timestampService;
+
+  ClockSkewCorrector(AdjustableTimestampService timestampService)
+  {
+    this.timestampService = timestampService;
+  }
+
+  /**
+   * Updates the clock offset from the Date header of a response
+   *
+   * @return true if the offset changed
+   */
+  boolean learn(Response response)
+  {
+    Long providerMillis = getDate(response);
+    if (providerMillis == null)
+    {
+      return false;
+    }
+    long skew = Math.round((providerMillis - System.currentTimeMillis()) / 1000.0);
+    if (Math.abs(skew - timestampService.getClockOffset()) <= TOLERANCE_SECONDS)
+    {
+      return false;
+    }
+    timestampService.setClockOffset(Math.abs(skew) <= TOLERANCE_SECONDS ? 0 : skew);
+    return true;
+  }
+
+  long getClockOffset()
+  {
+    return timestampService.getClockOffset();
+  }
+
+  /**
+   * Providers answer requests with a refused oauth_timestamp with a 400 or 401 that mentions the timestamp
+   * (oauth_problem=timestamp_refused, or a plain message)
+   */
+  static boolean isTimestampRejection(Response response)
+  {
+    int code = response.getCode();
+    if (code != BAD_REQUEST && code != UNAUTHORIZED)
+    {
+      return false;
+    }
+    String body = response.getBody();
+    return body != null && body.toLowerCase(Locale.US).contains(TIMESTAMP);
+  }
+
+  private static Long getDate(Response response)
+  {
+    String date = response.getHeader(DATE);
+    if (date == null)
+    {
+      return null;
+    }
+    try
+    {
+      SimpleDateFormat format = new SimpleDateFormat(RFC_1123, Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+      return format.parse(date).getTime();
+    }
+    catch (ParseException e)
+    {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.scribe.oauth;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.scribe.utils.*;
+
+/**
+ * Chains the steps of asynchronous OAuth exchanges
+ *
+ * Cancelling a chained future cancels the step it is waiting on, which aborts the connection behind it. A result that
+ * is ready but no longer wanted, like a response that arrived just as the chain was cancelled, is closed.
+ */
+final class Futures
+{
+  private Futures()
+  {
+  }
+
+  /**
+   * Next step of a chain, started with the result of the previous one
+   */
+  interface Step<A, B>
+  {
+    SettableFuture<B> apply(A value) throws Exception;
+  }
+
+  static <V> SettableFuture<V> done(V value)
+  {
+    SettableFuture<V> future = new SettableFuture<V>();
+    future.set(value);
+    return future;
+  }
+
+  static <V> SettableFuture<V> failed(Throwable failure)
+  {
+    SettableFuture<V> future = new SettableFuture<V>();
+    future.setException(failure);
+    return future;
+  }
+
+  /**
+   * Runs a step on the executor once source completes. Failures and cancellations skip the step.
+   */
+  static <A, B> SettableFuture<B> then(final SettableFuture<A> source, final Step<A, B> step, Executor executor)
+  {
+    final SettableFuture<B> result = new SettableFuture<B>();
+    final AtomicReference<Future<?>> current = new AtomicReference<Future<?>>(source);
+    result.setCancelHandler(new Runnable()
+    {
+      public void run()
+      {
+        current.get().cancel(true);
+      }
+    });
+    source.addListener(new Runnable()
+    {
+      public void run()
+      {
+        if (result.isDone())
+        {
+          discard(source);
+          return;
+        }
+        try
+        {
+          final SettableFuture<B> next = step.apply(source.get());
+          current.set(next);
+          if (result.isCancelled())
+          {
+            if (!next.cancel(true))
+            {
+              discard(next);
+            }
+            return;
+          }
+          next.addListener(new Runnable()
+          {
+            public void run()
+            {
+              forward(next, result);
+            }
+          }, SettableFuture.directExecutor());
+        }
+        catch (ExecutionException e)
+        {
+          result.setException(e.getCause());
+        }
+        catch (CancellationException e)
+        {
+          result.cancel(false);
+        }
+        catch (Throwable e)
+        {
+          result.setException(e);
+        }
+      }
+    }, executor);
+    return result;
+  }
+
+  private static <V> void forward(SettableFuture<V> from, SettableFuture<V> to)
+  {
+    try
+    {
+      V value = from.get();
+      if (!to.set(value))
+      {
+        close(value);
+      }
+    }
+    catch (ExecutionException e)
+    {
+      to.setException(e.getCause());
+    }
+    catch (CancellationException e)
+    {
+      to.cancel(false);
+    }
+    catch (InterruptedException e)
+    {
+      to.setException(e);
+    }
+  }
+
+  /**
+   * Closes the result of a completed future nobody waits for anymore
+   */
+  private static void discard(Future<?> future)
+  {
+    try
+    {
+      close(future.get());
+    }
+    catch (ExecutionException e)
+    {
+      // nothing to close
+    }
+    catch (CancellationException e)
+    {
+      // nothing to close
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void close(Object value)
+  {
+    if (value instanceof Closeable)
+    {
+      try
+      {
+        ((Closeable) value).close();
+      }
+      catch (IOException e)
+      {
+        // the value is dropped anyway
+      }
+    }
+  }
+}
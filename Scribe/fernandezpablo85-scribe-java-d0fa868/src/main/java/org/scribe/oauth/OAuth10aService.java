@@ -0,0 +1,96 @@
+package org.scribe.oauth;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * {@link OAuthService} that also signs requests in batches, sends signed requests and works asynchronously.
+ * 
+ * These operations live apart from {@link OAuthService} so that existing implementations of it keep compiling. The
+ * services built by {@link org.scribe.builder.ServiceBuilder} for the bundled Apis implement this interface.
+ */
+public interface OAuth10aService extends OAuthService
+{
+  /**
+   * Retrieve the request token without blocking the calling thread.
+   * 
+   * Cancelling the future aborts the connection to the provider.
+   * 
+   * @param executor where the token is extracted from the provider response, and so where the future completes
+   * @return future request token
+   */
+  public SettableFuture<Token> getRequestTokenAsync(Executor executor);
+
+  /**
+   * Retrieve the access token without blocking the calling thread.
+   * 
+   * Cancelling the future aborts the connection to the provider.
+   * 
+   * @param requestToken request token (obtained previously)
+   * @param verifier verifier code
+   * @param executor where the token is extracted from the provider response, and so where the future completes
+   * @return future access token
+   */
+  public SettableFuture<Token> getAccessTokenAsync(Token requestToken, Verifier verifier, Executor executor);
+
+  /**
+   * Signs many OAuth requests with the same access token, in parallel.
+   * 
+   * A request that cannot be signed does not stop the others: its error is reported in the result instead.
+   * 
+   * @param accessToken access token (obtained previously)
+   * @param requests requests to sign
+   * @return per-request outcome, in the same order as the requests
+   */
+  public BatchSignatureResult signRequests(Token accessToken, List<OAuthRequest> requests);
+
+  /**
+   * Signs many OAuth requests, each one with its own access token, in parallel.
+   * 
+   * A request that cannot be signed does not stop the others: its error is reported in the result instead.
+   * 
+   * @param accessTokens access tokens, the i-th one is used to sign the i-th request
+   * @param requests requests to sign
+   * @return per-request outcome, in the same order as the requests
+   */
+  public BatchSignatureResult signRequests(List<Token> accessTokens, List<OAuthRequest> requests);
+
+  /**
+   * Signs an OAuth request and sends it.
+   * 
+   * The provider clock is learnt from the Date header of the response. If the provider refused the oauth_timestamp
+   * and the clock offset changed, the request is signed again with the corrected time and sent once more.
+   * 
+   * With a {@link org.scribe.cache.ResponseCache}, GET requests are answered from the cache while the cached response
+   * is fresh, and stale ones are sent as conditional requests.
+   * 
+   * @param accessToken access token (obtained previously)
+   * @param request request to sign and send
+   * @return the provider response
+   */
+  public Response signAndSend(Token accessToken, OAuthRequest request);
+
+  /**
+   * Signs an OAuth request and sends it without blocking the calling thread.
+   * 
+   * Retries a refused oauth_timestamp like {@link #signAndSend(Token, OAuthRequest)}. The future completes as soon
+   * as the response headers have arrived, or once the body has been read for responses that go into the response
+   * cache; cancelling it aborts the connection.
+   * 
+   * @param accessToken access token (obtained previously)
+   * @param request request to sign and send
+   * @param executor where the response is checked for a refused timestamp, and so where the future completes
+   * @return future provider response
+   */
+  public SettableFuture<Response> signAndSendAsync(Token accessToken, OAuthRequest request, Executor executor);
+
+  /**
+   * Returns how many seconds are added to the local time to match the provider clock.
+   * 
+   * @return clock offset in seconds, 0 if the clocks agree or the timestamp service cannot be adjusted
+   */
+  public long getClockOffset();
+}
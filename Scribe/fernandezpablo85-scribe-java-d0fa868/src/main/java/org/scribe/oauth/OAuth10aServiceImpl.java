@@ -1,15 +1,20 @@
 package org.scribe.oauth;
 
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.scribe.cache.*;
 import org.scribe.extractors.*;
 import org.scribe.model.*;
 import org.scribe.services.*;
+import org.scribe.utils.*;
 
 /**
- * OAuth 1.0a implementation of {@link OAuthService}
+ * OAuth 1.0a implementation of {@link OAuth10aService}
  * 
  * @author Pablo Fernandez
  */
-public class OAuth10aServiceImpl implements OAuthService {
+public class OAuth10aServiceImpl implements OAuth10aService {
 
     private static final String   NO_SCOPE = null;
 
@@ -31,6 +36,10 @@ public class OAuth10aServiceImpl implements OAuthService {
 
     private String                scope;
 
+    private BatchSigner           batchSigner;
+
+    private ClockSkewCorrector    clockSkewCorrector;
+
     /**
      * Default constructor
      * 
@@ -52,20 +61,42 @@ public class OAuth10aServiceImpl implements OAuthService {
         this.atExtractor = atExtractor;
         this.config = config;
         this.scope = NO_SCOPE;
+        this.batchSigner = new BatchSigner(this);
+        if (timestampService instanceof AdjustableTimestampService) {
+            this.clockSkewCorrector = new ClockSkewCorrector((AdjustableTimestampService) timestampService);
+        }
     }
 
     /**
      * {@inheritDoc}
      */
     public Token getRequestToken() {
+        Response response = sendSigned(OAuthConstants.EMPTY_TOKEN, newRequestTokenRequest());
+        return rtExtractor.extract(response.getBody());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SettableFuture<Token> getRequestTokenAsync(Executor executor) {
+        try {
+            SettableFuture<Response> sent = sendSignedAsync(OAuthConstants.EMPTY_TOKEN, newRequestTokenRequest(), executor);
+            return Futures.then(sent, new Futures.Step<Response, Token>() {
+                public SettableFuture<Token> apply(Response response) {
+                    return Futures.done(rtExtractor.extract(response.getBody()));
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    private OAuthRequest newRequestTokenRequest() {
         OAuthRequest request = new OAuthRequest(config.getRequestTokenVerb(), config.getRequestTokenEndpoint());
         request.addOAuthParameter(OAuthConstants.CALLBACK, config.getCallback());
         if (scope != NO_SCOPE)
             request.addOAuthParameter(OAuthConstants.SCOPE, scope);
-        addOAuthParams(request, OAuthConstants.EMPTY_TOKEN);
-        addOAuthHeader(request);
-        Response response = request.send();
-        return rtExtractor.extract(response.getBody());
+        return request;
     }
 
     private void addOAuthParams(OAuthRequest request, Token token) {
@@ -81,22 +112,191 @@ public class OAuth10aServiceImpl implements OAuthService {
      * {@inheritDoc}
      */
     public Token getAccessToken(Token requestToken, Verifier verifier) {
+        Response response = sendSigned(requestToken, newAccessTokenRequest(requestToken, verifier));
+        return atExtractor.extract(response.getBody());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SettableFuture<Token> getAccessTokenAsync(Token requestToken, Verifier verifier, Executor executor) {
+        try {
+            SettableFuture<Response> sent = sendSignedAsync(requestToken, newAccessTokenRequest(requestToken, verifier), executor);
+            return Futures.then(sent, new Futures.Step<Response, Token>() {
+                public SettableFuture<Token> apply(Response response) {
+                    return Futures.done(atExtractor.extract(response.getBody()));
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    private OAuthRequest newAccessTokenRequest(Token requestToken, Verifier verifier) {
         OAuthRequest request = new OAuthRequest(config.getAccessTokenVerb(), config.getAccessTokenEndpoint());
         request.addOAuthParameter(OAuthConstants.TOKEN, requestToken.getToken());
         request.addOAuthParameter(OAuthConstants.VERIFIER, verifier.getValue());
-        addOAuthParams(request, requestToken);
-        addOAuthHeader(request);
-        Response response = request.send();
-        return atExtractor.extract(response.getBody());
+        return request;
     }
 
     /**
      * {@inheritDoc}
      */
     public void signRequest(Token token, OAuthRequest request) {
+        applyConfig(request);
+        request.addOAuthParameter(OAuthConstants.TOKEN, token.getToken());
+        addOAuthParams(request, token);
+        addOAuthHeader(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BatchSignatureResult signRequests(Token token, List<OAuthRequest> requests) {
+        return batchSigner.sign(Collections.nCopies(requests.size(), token), requests);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public BatchSignatureResult signRequests(List<Token> tokens, List<OAuthRequest> requests) {
+        return batchSigner.sign(tokens, requests);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Response signAndSend(Token token, OAuthRequest request) {
         request.addOAuthParameter(OAuthConstants.TOKEN, token.getToken());
+        ResponseCache.Lookup cached = lookup(token, request);
+        if (cached == null) {
+            return sendSigned(token, request);
+        }
+        return cached.isHit() ? cached.getResponse() : cached.complete(sendSigned(token, request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public SettableFuture<Response> signAndSendAsync(Token token, OAuthRequest request, Executor executor) {
+        try {
+            request.addOAuthParameter(OAuthConstants.TOKEN, token.getToken());
+            final ResponseCache.Lookup cached = lookup(token, request);
+            if (cached == null) {
+                return sendSignedAsync(token, request, executor);
+            }
+            if (cached.isHit()) {
+                return Futures.done(cached.getResponse());
+            }
+            return Futures.then(sendSignedAsync(token, request, executor), new Futures.Step<Response, Response>() {
+                public SettableFuture<Response> apply(Response response) {
+                    return Futures.done(cached.complete(response));
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            return Futures.failed(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getClockOffset() {
+        return clockSkewCorrector != null ? clockSkewCorrector.getClockOffset() : 0;
+    }
+
+    /*
+     * Signs and sends the request. If the provider refuses the timestamp and its Date header shows our clock is off,
+     * the signature is dropped and the request is signed and sent once more with the corrected time. Bodies that can
+     * only be read once are never sent twice.
+     */
+    private Response sendSigned(Token token, OAuthRequest request) {
+        applyConfig(request);
+        int oauthParams = request.getOauthParameters().size();
+        int headers = request.getHeaders().size();
+        long signedOffset = getClockOffset();
         addOAuthParams(request, token);
         addOAuthHeader(request);
+        Response response = request.send();
+        if (shouldResign(response, signedOffset, request)) {
+            response.close();
+            truncate(request.getOauthParameters(), oauthParams);
+            truncate(request.getHeaders(), headers);
+            addOAuthParams(request, token);
+            addOAuthHeader(request);
+            response = request.send();
+            clockSkewCorrector.learn(response);
+        }
+        return response;
+    }
+
+    /*
+     * Asynchronous sendSigned: the response is checked for a refused timestamp on the executor, and the second attempt
+     * is chained to the first one.
+     */
+    private SettableFuture<Response> sendSignedAsync(final Token token, final OAuthRequest request, Executor executor) {
+        applyConfig(request);
+        final int oauthParams = request.getOauthParameters().size();
+        final int headers = request.getHeaders().size();
+        final long signedOffset = getClockOffset();
+        addOAuthParams(request, token);
+        addOAuthHeader(request);
+        return Futures.then(request.sendAsync(), new Futures.Step<Response, Response>() {
+            public SettableFuture<Response> apply(Response response) {
+                if (!shouldResign(response, signedOffset, request)) {
+                    return Futures.done(response);
+                }
+                response.close();
+                truncate(request.getOauthParameters(), oauthParams);
+                truncate(request.getHeaders(), headers);
+                addOAuthParams(request, token);
+                addOAuthHeader(request);
+                return Futures.then(request.sendAsync(), new Futures.Step<Response, Response>() {
+                    public SettableFuture<Response> apply(Response retried) {
+                        clockSkewCorrector.learn(retried);
+                        return Futures.done(retried);
+                    }
+                }, SettableFuture.directExecutor());
+            }
+        }, executor);
+    }
+
+    /*
+     * Learns the provider clock from the response. A refused timestamp is worth another try if the offset now differs
+     * from the one the request was signed with, whether this response or a concurrent one changed it.
+     */
+    private boolean shouldResign(Response response, long signedOffset, OAuthRequest request) {
+        if (clockSkewCorrector == null) {
+            return false;
+        }
+        clockSkewCorrector.learn(response);
+        return clockSkewCorrector.getClockOffset() != signedOffset && ClockSkewCorrector.isTimestampRejection(response)
+                && request.getBody().isRepeatable();
+    }
+
+    private void applyConfig(OAuthRequest request) {
+        if (request.getTransport() == null && config.getTransport() != null) {
+            request.setTransport(config.getTransport());
+        }
+        if (config.isAcceptCompression()) {
+            request.acceptCompression();
+        }
+        if (config.isCompressRequestBodies()) {
+            request.compressBody();
+        }
+    }
+
+    /*
+     * Looks the request up in the response cache before it is signed, so that a revalidation carries its conditional
+     * headers. Null if there is no cache or the request is not cacheable.
+     */
+    private ResponseCache.Lookup lookup(Token token, OAuthRequest request) {
+        ResponseCache cache = config.getResponseCache();
+        return cache != null ? cache.lookup(request, config.getApiKey(), token) : null;
+    }
+
+    private static void truncate(List<ParamInfo> params, int size) {
+        params.subList(size, params.size()).clear();
     }
 
     /**
@@ -114,14 +314,11 @@ public class OAuth10aServiceImpl implements OAuthService {
     }
 
     private String getSignature(OAuthRequest request, Token token) {
-        String baseString = baseStringExtractor.extract(request);
-        System.out.println("oauth10 impl signature   " + signatureService.getSignature(baseString, config.getApiSecret(), token.getSecret()));
-        return signatureService.getSignature(baseString, config.getApiSecret(), token.getSecret());
+        return Signatures.compute(signatureService, baseStringExtractor, request, config.getApiSecret(), token);
     }
 
     private void addOAuthHeader(OAuthRequest request) {
         String oauthHeader = headerExtractor.extract(request);
-        System.out.println("aouth impl header" + oauthHeader);
         request.addHeader(OAuthConstants.HEADER, oauthHeader);
     }
 }
@@ -0,0 +1,422 @@
+package org.scribe.oauth;
+
+import java.nio.charset.*;
+import java.util.*;
+
+import org.scribe.exceptions.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.services.*;
+import org.scribe.utils.*;
+
+/**
+ * Verifies the signature of incoming OAuth 1.0a signed requests
+ *
+ * The request is rebuilt as an {@link OAuthRequest} from its method, URL, form body and "Authorization: OAuth ..."
+ * header, and its signature is computed again with the same {@link BaseStringExtractor} and {@link SignatureService}
+ * used to sign outgoing requests. Signatures are compared in constant time.
+ *
+ * With a {@link NonceStore}, the nonce of every correctly signed request is recorded and replayed requests are
+ * rejected. Nonces are only recorded once the signature checks out, so forged requests cannot fill the store.
+ *
+ * Verifiers keep no per-request state and can be shared by any number of threads. Only signature methods that can be
+ * recomputed from the secrets (like HMAC-SHA1) can be verified.
+ */
+public class OAuthSignatureVerifier
+{
+  private static final String OAUTH_SCHEME = "OAuth";
+  private static final String REALM = "realm";
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final SignatureService signatureService;
+  private final BaseStringExtractor baseStringExtractor;
+  private final SecretProvider secrets;
+  private final NonceStore nonceStore;
+
+  /**
+   * Creates an HMAC-SHA1 verifier
+   *
+   * @param secrets consumer and token secret lookup
+   */
+  public OAuthSignatureVerifier(SecretProvider secrets)
+  {
+    this(new PooledHMACSha1SignatureService(), new BaseStringExtractorImpl(), secrets);
+  }
+
+  /**
+   * Default constructor
+   *
+   * @param signatureService recomputes signatures. Requests signed with other methods are rejected.
+   * @param baseStringExtractor builds the base string of the incoming requests
+   * @param secrets consumer and token secret lookup
+   */
+  public OAuthSignatureVerifier(SignatureService signatureService, BaseStringExtractor baseStringExtractor, SecretProvider secrets)
+  {
+    this(signatureService, baseStringExtractor, secrets, null);
+  }
+
+  /**
+   * Creates a verifier that also rejects replayed requests
+   *
+   * @param signatureService recomputes signatures. Requests signed with other methods are rejected.
+   * @param baseStringExtractor builds the base string of the incoming requests
+   * @param secrets consumer and token secret lookup
+   * @param nonceStore remembers the nonces of verified requests, or null to skip replay checks
+   */
+  public OAuthSignatureVerifier(SignatureService signatureService, BaseStringExtractor baseStringExtractor, SecretProvider secrets,
+      NonceStore nonceStore)
+  {
+    Preconditions.checkNotNull(signatureService, "Signature service cannot be null");
+    Preconditions.checkNotNull(baseStringExtractor, "Base string extractor cannot be null");
+    Preconditions.checkNotNull(secrets, "Secret provider cannot be null");
+    this.signatureService = signatureService;
+    this.baseStringExtractor = baseStringExtractor;
+    this.secrets = secrets;
+    this.nonceStore = nonceStore;
+  }
+
+  /**
+   * Verifies an incoming request
+   *
+   * @param verb request method
+   * @param url full request URL, including the query string, as the client sent it
+   * @param authorizationHeader value of the Authorization header
+   * @param formBody application/x-www-form-urlencoded body, or null if the request has no form body
+   * @return true if the request carries a valid signature
+   *
+   * @throws OAuthException if the Authorization header is not a well formed OAuth header, or a parameter is not
+   *           properly percent-encoded
+   */
+  public boolean verify(Verb verb, String url, String authorizationHeader, String formBody)
+  {
+    return verify(parse(verb, url, authorizationHeader, formBody));
+  }
+
+  /**
+   * Verifies a request whose OAuth parameters (including oauth_signature) are already in place
+   *
+   * oauth_signature is taken out of the request while its signature is computed again, and put back afterwards.
+   *
+   * @param request incoming request
+   * @return true if the request carries a valid signature
+   */
+  public boolean verify(OAuthRequest request)
+  {
+    List<ParamInfo> params = request.getOauthParameters();
+    int signatureIndex = -1;
+    for (int i = 0; i < params.size(); i++)
+    {
+      if (OAuthConstants.SIGNATURE.equals(params.get(i).getKey()))
+      {
+        if (signatureIndex >= 0) return false;
+        signatureIndex = i;
+      }
+    }
+    if (signatureIndex < 0)
+    {
+      return false;
+    }
+    ParamInfo signature = params.remove(signatureIndex);
+    try
+    {
+      return verify(request, signature.getValue());
+    }
+    finally
+    {
+      params.add(signatureIndex, signature);
+    }
+  }
+
+  private boolean verify(OAuthRequest request, String signature)
+  {
+    String consumerKey = null;
+    String token = null;
+    String signatureMethod = null;
+    String timestamp = null;
+    String nonce = null;
+    for (ParamInfo param : request.getOauthParameters())
+    {
+      String key = param.getKey();
+      String value = param.getValue();
+      if (OAuthConstants.CONSUMER_KEY.equals(key))
+      {
+        if (consumerKey != null) return false;
+        consumerKey = value;
+      }
+      else if (OAuthConstants.TOKEN.equals(key))
+      {
+        if (token != null) return false;
+        token = value;
+      }
+      else if (OAuthConstants.SIGN_METHOD.equals(key))
+      {
+        if (signatureMethod != null) return false;
+        signatureMethod = value;
+      }
+      else if (OAuthConstants.TIMESTAMP.equals(key))
+      {
+        if (timestamp != null) return false;
+        timestamp = value;
+      }
+      else if (OAuthConstants.NONCE.equals(key))
+      {
+        if (nonce != null) return false;
+        nonce = value;
+      }
+    }
+    if (consumerKey == null || !signatureService.getSignatureMethod().equals(signatureMethod))
+    {
+      return false;
+    }
+    String consumerSecret = secrets.getConsumerSecret(consumerKey);
+    if (consumerSecret == null)
+    {
+      return false;
+    }
+    Token accessToken = OAuthConstants.EMPTY_TOKEN;
+    if (token != null && token.length() > 0)
+    {
+      String tokenSecret = secrets.getTokenSecret(consumerKey, token);
+      if (tokenSecret == null)
+      {
+        return false;
+      }
+      accessToken = new Token(token, tokenSecret);
+    }
+    String expected = Signatures.compute(signatureService, baseStringExtractor, request, consumerSecret, accessToken);
+    if (!constantTimeEquals(expected, signature))
+    {
+      return false;
+    }
+    if (nonceStore == null)
+    {
+      return true;
+    }
+    return timestamp != null && nonce != null && nonceStore.checkAndStore(consumerKey, timestamp, nonce);
+  }
+
+  /**
+   * Rebuilds an incoming request. Parameters are percent-decoded; the header realm is dropped. Query and form
+   * parameters are decoded as application/x-www-form-urlencoded ('+' is a space), header parameters strictly as
+   * RFC 3986 ('+' is a plus sign).
+   *
+   * @param verb request method
+   * @param url full request URL, including the query string, as the client sent it
+   * @param authorizationHeader value of the Authorization header
+   * @param formBody application/x-www-form-urlencoded body, or null if the request has no form body
+   * @return the request, with its OAuth and body parameters
+   *
+   * @throws OAuthException if the Authorization header is not a well formed OAuth header, or a parameter is not
+   *           properly percent-encoded
+   */
+  public OAuthRequest parse(Verb verb, String url, String authorizationHeader, String formBody)
+  {
+    Preconditions.checkNotNull(verb, "Verb cannot be null");
+    Preconditions.checkEmptyString(url, "Url cannot be null or empty string");
+    OAuthRequest request = new IncomingRequest(verb, url, parseQuery(url));
+    parseHeader(authorizationHeader, request);
+    if (formBody != null)
+    {
+      parseFormBody(formBody, request);
+    }
+    return request;
+  }
+
+  private static void parseHeader(String header, OAuthRequest request)
+  {
+    int length = header == null ? 0 : header.length();
+    int schemeLength = OAUTH_SCHEME.length();
+    if (length < schemeLength || !header.regionMatches(true, 0, OAUTH_SCHEME, 0, schemeLength)
+        || (length > schemeLength && !isSeparator(header.charAt(schemeLength))))
+    {
+      throw new OAuthException("Not an OAuth Authorization header: " + header);
+    }
+    int position = schemeLength;
+    while (position < length)
+    {
+      if (isSeparator(header.charAt(position)))
+      {
+        position++;
+        continue;
+      }
+      int equals = header.indexOf('=', position);
+      if (equals < 0)
+      {
+        throw new OAuthException("Malformed OAuth Authorization header: " + header);
+      }
+      String key = header.substring(position, equals).trim();
+      String value;
+      position = equals + 1;
+      if (position < length && header.charAt(position) == '"')
+      {
+        int closingQuote = header.indexOf('"', position + 1);
+        if (closingQuote < 0)
+        {
+          throw new OAuthException("Malformed OAuth Authorization header: " + header);
+        }
+        value = header.substring(position + 1, closingQuote);
+        position = closingQuote + 1;
+      }
+      else
+      {
+        int comma = header.indexOf(',', position);
+        int end = comma < 0 ? length : comma;
+        value = header.substring(position, end).trim();
+        position = end;
+      }
+      if (REALM.equals(key))
+      {
+        continue;
+      }
+      key = decode(key, false);
+      if (!key.startsWith(OAuthConstants.PARAM_PREFIX))
+      {
+        throw new OAuthException("Unexpected parameter in OAuth Authorization header: " + key);
+      }
+      request.addOAuthParameter(key, decode(value, false));
+    }
+  }
+
+  private static void parseFormBody(String body, OAuthRequest request)
+  {
+    for (ParamInfo param : parseForm(body))
+    {
+      request.addBodyParameter(param.getKey(), param.getValue());
+    }
+  }
+
+  /*
+   * Query parameters as sent, decoded. Request.getQueryStringParams() leaves them encoded, and the base string would
+   * encode them a second time.
+   */
+  private static List<ParamInfo> parseQuery(String url)
+  {
+    int question = url.indexOf('?');
+    if (question < 0)
+    {
+      return Collections.emptyList();
+    }
+    int hash = url.indexOf('#', question);
+    return parseForm(url.substring(question + 1, hash < 0 ? url.length() : hash));
+  }
+
+  /*
+   * Splits every name=value pair on its first '='. Names without a value get an empty one.
+   */
+  private static List<ParamInfo> parseForm(String form)
+  {
+    List<ParamInfo> params = new ArrayList<ParamInfo>();
+    int length = form.length();
+    int position = 0;
+    while (position < length)
+    {
+      int ampersand = form.indexOf('&', position);
+      int end = ampersand < 0 ? length : ampersand;
+      if (end > position)
+      {
+        int equals = form.indexOf('=', position);
+        ParamInfo param = new ParamInfo();
+        if (equals < 0 || equals > end)
+        {
+          param.setKey(decode(form.substring(position, end), true));
+          param.setValue("");
+        }
+        else
+        {
+          param.setKey(decode(form.substring(position, equals), true));
+          param.setValue(decode(form.substring(equals + 1, end), true));
+        }
+        params.add(param);
+      }
+      position = end + 1;
+    }
+    return params;
+  }
+
+  private static boolean isSeparator(char c)
+  {
+    return c == ' ' || c == ',' || c == '\t';
+  }
+
+  /*
+   * Strict percent decoding: every '%' must start a two digit hex escape, and the escaped bytes are UTF-8. '+' only
+   * means a space in form encoded values.
+   */
+  private static String decode(String string, boolean form)
+  {
+    if (string.indexOf('%') < 0 && (!form || string.indexOf('+') < 0))
+    {
+      return string;
+    }
+    int length = string.length();
+    StringBuilder decoded = new StringBuilder(length);
+    byte[] bytes = null;
+    int position = 0;
+    while (position < length)
+    {
+      char c = string.charAt(position);
+      if (c != '%')
+      {
+        decoded.append(form && c == '+' ? ' ' : c);
+        position++;
+        continue;
+      }
+      if (bytes == null)
+      {
+        bytes = new byte[length / 3];
+      }
+      int count = 0;
+      while (position < length && string.charAt(position) == '%')
+      {
+        int high = position + 2 < length ? Character.digit(string.charAt(position + 1), 16) : -1;
+        int low = position + 2 < length ? Character.digit(string.charAt(position + 2), 16) : -1;
+        if (high < 0 || low < 0)
+        {
+          throw new OAuthException("Malformed percent-encoding: " + string);
+        }
+        bytes[count++] = (byte) ((high << 4) | low);
+        position += 3;
+      }
+      decoded.append(new String(bytes, 0, count, UTF8));
+    }
+    return decoded.toString();
+  }
+
+  /*
+   * Takes the same time for every pair of strings of the same length, so timing does not leak how much of a forged
+   * signature is right. Signature lengths are public anyway.
+   */
+  static boolean constantTimeEquals(String expected, String actual)
+  {
+    if (expected.length() != actual.length())
+    {
+      return false;
+    }
+    int difference = 0;
+    for (int i = 0; i < expected.length(); i++)
+    {
+      difference |= expected.charAt(i) ^ actual.charAt(i);
+    }
+    return difference == 0;
+  }
+
+  /**
+   * Incoming request whose query parameters have been decoded
+   */
+  private static final class IncomingRequest extends OAuthRequest
+  {
+    private final List<ParamInfo> queryParams;
+
+    IncomingRequest(Verb verb, String url, List<ParamInfo> queryParams)
+    {
+      super(verb, url);
+      this.queryParams = queryParams;
+    }
+
+    @Override
+    public List<ParamInfo> getQueryStringParams()
+    {
+      return new ArrayList<ParamInfo>(queryParams);
+    }
+  }
+}
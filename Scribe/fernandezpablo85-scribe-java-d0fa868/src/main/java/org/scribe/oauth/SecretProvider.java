@@ -0,0 +1,26 @@
+package org.scribe.oauth;
+
+/**
+ * Looks up the secrets needed to verify incoming signed requests
+ * 
+ * Implementations are called concurrently from every verifying thread, so they must be thread-safe.
+ */
+public interface SecretProvider
+{
+  /**
+   * Returns the secret of a consumer (the api secret of the application that signed the request)
+   * 
+   * @param consumerKey the oauth_consumer_key of the request
+   * @return consumer secret, or null if the consumer is unknown
+   */
+  String getConsumerSecret(String consumerKey);
+
+  /**
+   * Returns the secret of a token issued to a consumer
+   * 
+   * @param consumerKey the oauth_consumer_key of the request
+   * @param token the oauth_token of the request
+   * @return token secret, or null if the token is unknown
+   */
+  String getTokenSecret(String consumerKey, String token);
+}
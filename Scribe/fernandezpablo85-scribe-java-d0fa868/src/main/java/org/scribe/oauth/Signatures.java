@@ -0,0 +1,33 @@
+package org.scribe.oauth;
+
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.services.*;
+
+/**
+ * Computes request signatures through the fastest path the configured services support.
+ * 
+ * Shared by the signing and the verifying side, so both always produce the same signature for the same request.
+ */
+final class Signatures
+{
+  private Signatures()
+  {
+  }
+
+  static String compute(SignatureService signatureService, BaseStringExtractor baseStringExtractor, OAuthRequest request,
+      String apiSecret, Token token)
+  {
+    if (signatureService instanceof StreamingSignatureService && baseStringExtractor instanceof StreamingBaseStringExtractor)
+    {
+      return ((StreamingSignatureService) signatureService).getSignature(request,
+          (StreamingBaseStringExtractor) baseStringExtractor, apiSecret, token);
+    }
+    String baseString = baseStringExtractor.extract(request);
+    if (signatureService instanceof TokenSignatureService)
+    {
+      return ((TokenSignatureService) signatureService).getSignature(baseString, apiSecret, token);
+    }
+    return signatureService.getSignature(baseString, apiSecret, token.getSecret());
+  }
+}
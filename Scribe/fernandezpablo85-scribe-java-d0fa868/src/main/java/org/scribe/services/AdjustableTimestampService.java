@@ -0,0 +1,21 @@
+package org.scribe.services;
+
+/**
+ * {@link TimestampService} whose timestamps can be shifted to match the clock of the provider
+ */
+public interface AdjustableTimestampService extends TimestampService
+{
+  /**
+   * Sets the number of seconds added to the local time when generating timestamps
+   *
+   * @param seconds provider time minus local time
+   */
+  public void setClockOffset(long seconds);
+
+  /**
+   * Returns the number of seconds added to the local time when generating timestamps
+   *
+   * @return clock offset in seconds
+   */
+  public long getClockOffset();
+}
@@ -0,0 +1,18 @@
+package org.scribe.services;
+
+/**
+ * Remembers the nonces of verified requests, to reject replayed requests
+ */
+public interface NonceStore
+{
+  /**
+   * Records a nonce, unless it was already seen with the same consumer key and timestamp
+   *
+   * @param consumerKey the oauth_consumer_key of the request
+   * @param timestamp the oauth_timestamp of the request
+   * @param nonce the oauth_nonce of the request
+   * @return true if the nonce is new and was recorded, false if the request must be rejected (replayed or out of the
+   *         allowed time window)
+   */
+  boolean checkAndStore(String consumerKey, String timestamp, String nonce);
+}
@@ -0,0 +1,234 @@
+package org.scribe.services;
+
+import java.io.*;
+import java.security.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+import org.apache.commons.codec.binary.*;
+import org.scribe.exceptions.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * HMAC-SHA1 implementation of {@link SignatureService} tuned for high signing rates.
+ *
+ * Every thread keeps its own {@link Mac}, so there is no provider lookup after the first signature on a thread.
+ * Signing keys are cached per (api secret, token secret) pair, and a thread that signs with the same key
+ * twice in a row skips the key setup too. Base strings can also be streamed straight into the thread's {@link Mac}.
+ *
+ * Produces exactly the same signatures as {@link HMACSha1SignatureService}.
+ */
+public class PooledHMACSha1SignatureService implements StreamingSignatureService
+{
+  private static final int DEFAULT_CACHE_SIZE = 1024;
+  private static final String EMPTY_STRING = "";
+  private static final String CARRIAGE_RETURN = "\r\n";
+  private static final String UTF8 = "UTF-8";
+  private static final String HMAC_SHA1 = "HmacSHA1";
+  private static final String METHOD = "HMAC-SHA1";
+
+  private static final ThreadLocal<ThreadMac> MACS = new ThreadLocal<ThreadMac>()
+  {
+    @Override
+    protected ThreadMac initialValue()
+    {
+      return new ThreadMac();
+    }
+  };
+
+  private final LruCache<SecretPair, SecretKeySpec> keys;
+
+  /**
+   * Default constructor. Caches up to 1024 signing keys.
+   */
+  public PooledHMACSha1SignatureService()
+  {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates a signature service that caches up to maxCachedKeys signing keys
+   *
+   * @param maxCachedKeys maximum number of (api secret, token secret) pairs to keep
+   */
+  public PooledHMACSha1SignatureService(int maxCachedKeys)
+  {
+    this.keys = new LruCache<SecretPair, SecretKeySpec>(maxCachedKeys);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String getSignature(String baseString, String apiSecret, String tokenSecret)
+  {
+    try
+    {
+      Preconditions.checkEmptyString(baseString, "Base string cant be null or empty string");
+      Preconditions.checkEmptyString(apiSecret, "Api secret cant be null or empty string");
+      return doSign(baseString, getKey(apiSecret, tokenSecret));
+    }
+    catch (Exception e)
+    {
+      throw new OAuthSignatureException(baseString, e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String getSignature(OAuthRequest request, StreamingBaseStringExtractor extractor, String apiSecret, Token token)
+  {
+    try
+    {
+      Preconditions.checkEmptyString(apiSecret, "Api secret cant be null or empty string");
+      Preconditions.checkNotNull(token, "Token cant be null");
+      ThreadMac threadMac = MACS.get();
+      Mac mac = threadMac.forKey(getKey(apiSecret, token.getSecret()));
+      try
+      {
+        extractor.extract(request, threadMac.stream());
+        return encode(mac.doFinal());
+      }
+      catch (Exception e)
+      {
+        mac.reset();
+        throw e;
+      }
+    }
+    catch (Exception e)
+    {
+      throw new OAuthSignatureException(String.valueOf(request), e);
+    }
+  }
+
+  private String doSign(String toSign, SecretKeySpec key) throws Exception
+  {
+    Mac mac = MACS.get().forKey(key);
+    return encode(mac.doFinal(toSign.getBytes(UTF8)));
+  }
+
+  private String encode(byte[] bytes)
+  {
+    return new String(Base64.encodeBase64(bytes)).replace(CARRIAGE_RETURN, EMPTY_STRING);
+  }
+
+  private SecretKeySpec getKey(String apiSecret, String tokenSecret) throws Exception
+  {
+    SecretPair pair = new SecretPair(apiSecret, tokenSecret);
+    SecretKeySpec key = keys.get(pair);
+    if (key == null)
+    {
+      String keyString = URLUtils.percentEncode(apiSecret) + '&' + URLUtils.percentEncode(tokenSecret);
+      key = new SecretKeySpec(keyString.getBytes(UTF8), HMAC_SHA1);
+      keys.put(pair, key);
+    }
+    return key;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public String getSignatureMethod()
+  {
+    return METHOD;
+  }
+
+  /**
+   * Returns the signing key cache, mostly useful to look at its hit/miss/eviction counters
+   *
+   * @return key cache
+   */
+  public LruCache<?, ?> getKeyCache()
+  {
+    return keys;
+  }
+
+  /**
+   * Reusable {@link Mac} bound to a single thread. Remembers the last key it was initialized with.
+   */
+  private static final class ThreadMac
+  {
+    private Mac mac;
+    private SecretKeySpec key;
+    private MacOutputStream stream;
+
+    Mac forKey(SecretKeySpec key) throws GeneralSecurityException
+    {
+      if (mac == null)
+      {
+        mac = Mac.getInstance(HMAC_SHA1);
+      }
+      if (this.key != key)
+      {
+        this.key = null;
+        mac.init(key);
+        this.key = key;
+      }
+      return mac;
+    }
+
+    OutputStream stream()
+    {
+      if (stream == null)
+      {
+        stream = new MacOutputStream(mac);
+      }
+      return stream;
+    }
+  }
+
+  private static final class MacOutputStream extends OutputStream
+  {
+    private final Mac mac;
+
+    MacOutputStream(Mac mac)
+    {
+      this.mac = mac;
+    }
+
+    @Override
+    public void write(int b)
+    {
+      mac.update((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+      mac.update(bytes, offset, length);
+    }
+  }
+
+  private static final class SecretPair
+  {
+    private final String apiSecret;
+    private final String tokenSecret;
+    private final int hash;
+
+    SecretPair(String apiSecret, String tokenSecret)
+    {
+      this.apiSecret = apiSecret;
+      this.tokenSecret = tokenSecret;
+      this.hash = 31 * apiSecret.hashCode() + (tokenSecret == null ? 0 : tokenSecret.hashCode());
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      if (this == other) return true;
+      if (!(other instanceof SecretPair)) return false;
+      SecretPair that = (SecretPair) other;
+      return apiSecret.equals(that.apiSecret)
+          && (tokenSecret == null ? that.tokenSecret == null : tokenSecret.equals(that.tokenSecret));
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.scribe.services;
+
+import java.security.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.apache.commons.codec.binary.*;
+
+/**
+ * {@link TimestampService} whose nonces are 128 random bits from a {@link SecureRandom}, as 22 URL-safe Base64 chars.
+ *
+ * Nonces are generated ahead of time, in batches, by a shared background thread and handed out from a lock-free ring.
+ * Each slot of the ring is taken with a single atomic swap, so every nonce is handed out once, and requests never wait
+ * for the random generator. When the ring runs low a refill is scheduled; if a request finds its slot empty, it
+ * generates its nonce inline.
+ */
+public class RingBufferNonceTimestampService extends TimestampServiceImpl
+{
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final int NONCE_BYTES = 16;
+
+  private static volatile ExecutorService refiller;
+
+  private final AtomicReferenceArray<String> ring;
+  private final int mask;
+  private final AtomicLong readIndex = new AtomicLong();
+  private final AtomicInteger available = new AtomicInteger();
+  private final AtomicBoolean refillPending = new AtomicBoolean();
+  private final AtomicLong inlineNonces = new AtomicLong();
+  private final SecureRandom random = new SecureRandom();
+
+  /**
+   * Default constructor. Keeps 1024 nonces ready.
+   */
+  public RingBufferNonceTimestampService()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a service that keeps up to capacity nonces ready (rounded up to a power of two)
+   *
+   * @param capacity ring size
+   */
+  public RingBufferNonceTimestampService(int capacity)
+  {
+    if (capacity <= 0)
+    {
+      throw new IllegalArgumentException("Capacity must be greater than zero");
+    }
+    int size = Integer.highestOneBit(capacity);
+    size = size < capacity ? size << 1 : size;
+    this.ring = new AtomicReferenceArray<String>(size);
+    this.mask = size - 1;
+    refill();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getNonce()
+  {
+    String nonce = ring.getAndSet((int) (readIndex.getAndIncrement() & mask), null);
+    if (nonce == null)
+    {
+      inlineNonces.incrementAndGet();
+      nonce = newNonce();
+    }
+    else if (available.decrementAndGet() < ring.length() / 4)
+    {
+      scheduleRefill();
+    }
+    return nonce;
+  }
+
+  /**
+   * Returns how many nonces had to be generated on the request path because the ring was empty
+   *
+   * @return inline nonce count
+   */
+  public long getInlineNonceCount()
+  {
+    return inlineNonces.get();
+  }
+
+  private String newNonce()
+  {
+    byte[] bytes = new byte[NONCE_BYTES];
+    random.nextBytes(bytes);
+    return Base64.encodeBase64URLSafeString(bytes);
+  }
+
+  private void scheduleRefill()
+  {
+    if (refillPending.compareAndSet(false, true))
+    {
+      getRefiller().execute(new Runnable()
+      {
+        public void run()
+        {
+          try
+          {
+            refill();
+          }
+          finally
+          {
+            refillPending.set(false);
+          }
+        }
+      });
+    }
+  }
+
+  /*
+   * Fills every empty slot, drawing the random bytes for the whole batch at once
+   */
+  private void refill()
+  {
+    int missing = ring.length() - available.get();
+    if (missing <= 0)
+    {
+      return;
+    }
+    byte[] entropy = new byte[missing * NONCE_BYTES];
+    random.nextBytes(entropy);
+    byte[] bytes = new byte[NONCE_BYTES];
+    int used = 0;
+    for (int i = 0; i < ring.length() && used < missing; i++)
+    {
+      if (ring.get(i) == null)
+      {
+        System.arraycopy(entropy, used * NONCE_BYTES, bytes, 0, NONCE_BYTES);
+        if (ring.compareAndSet(i, null, Base64.encodeBase64URLSafeString(bytes)))
+        {
+          available.incrementAndGet();
+          used++;
+        }
+      }
+    }
+  }
+
+  private static ExecutorService getRefiller()
+  {
+    if (refiller == null)
+    {
+      synchronized (RingBufferNonceTimestampService.class)
+      {
+        if (refiller == null)
+        {
+          refiller = Executors.newSingleThreadExecutor(new ThreadFactory()
+          {
+            public Thread newThread(Runnable runnable)
+            {
+              Thread thread = new Thread(runnable, "scribe-nonce-refill");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+        }
+      }
+    }
+    return refiller;
+  }
+}
@@ -0,0 +1,23 @@
+package org.scribe.services;
+
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+
+/**
+ * {@link SignatureService} that consumes the base string as it is being extracted, instead of waiting for the
+ * whole string.
+ */
+public interface StreamingSignatureService extends SignatureService
+{
+  /**
+   * Returns the signature of the request's base string
+   * 
+   * @param request request to sign
+   * @param extractor extractor that streams the request's base string
+   * @param apiSecret api secret for your app
+   * @param token token being used (the empty token for the request token step)
+   * 
+   * @return signature
+   */
+  public String getSignature(OAuthRequest request, StreamingBaseStringExtractor extractor, String apiSecret, Token token);
+}
@@ -0,0 +1,315 @@
+package org.scribe.services;
+
+import java.nio.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.scribe.utils.*;
+
+/**
+ * Bounded, lock-free {@link NonceStore}
+ *
+ * Only timestamps within windowSeconds of the current time are accepted, so only nonces inside that window need to be
+ * remembered. They are kept in one bucket per second, in a ring that covers the window: when a second falls out of
+ * the window its whole bucket is dropped (or, off-heap, overwritten) without any cleanup pass.
+ *
+ * Memory is capped by maxEntries, shared equally by the seconds of the window. When a second runs out of room,
+ * further nonces for that second are rejected, just like replays.
+ *
+ * Heap buckets are {@link ConcurrentHashMap}s, swapped atomically in an {@link AtomicReferenceArray}. Off-heap
+ * buckets are open-addressing tables of 64-bit fingerprints in direct buffers, guarded by striped locks. They hold
+ * millions of nonces without adding to the garbage collector's work.
+ */
+public class TimeBucketedNonceStore implements NonceStore
+{
+  private static final int ADDED = 0;
+  private static final int SEEN = 1;
+  private static final int FULL = 2;
+  private static final int EXPIRED = 3;
+
+  private static final char SEPARATOR = '&';
+  private static final int STRIPES = 16;
+
+  private final int windowSeconds;
+  private final int ringSize;
+  private final Buckets buckets;
+  private final AtomicLong replays = new AtomicLong();
+  private final AtomicLong overflows = new AtomicLong();
+  private TimestampServiceImpl.Timer timer;
+
+  /**
+   * Creates a store kept on the heap
+   *
+   * @param windowSeconds maximum difference, in seconds, between a request timestamp and the current time
+   * @param maxEntries maximum number of nonces kept
+   */
+  public TimeBucketedNonceStore(int windowSeconds, int maxEntries)
+  {
+    this(windowSeconds, maxEntries, false);
+  }
+
+  /**
+   * Default constructor
+   *
+   * @param windowSeconds maximum difference, in seconds, between a request timestamp and the current time
+   * @param maxEntries maximum number of nonces kept
+   * @param offHeap keep the nonces in direct memory, as 16 bytes per entry (plus load factor)
+   */
+  public TimeBucketedNonceStore(int windowSeconds, int maxEntries, boolean offHeap)
+  {
+    if (windowSeconds < 0 || maxEntries <= 0)
+    {
+      throw new IllegalArgumentException("Window cannot be negative and the store must have room for at least one nonce");
+    }
+    this.windowSeconds = windowSeconds;
+    // one extra bucket so the current second never shares its slot while the clock ticks
+    this.ringSize = 2 * windowSeconds + 2;
+    int perSecond = (maxEntries + ringSize - 1) / ringSize;
+    this.buckets = offHeap ? new OffHeapBuckets(ringSize, perSecond) : new HeapBuckets(ringSize, perSecond);
+    this.timer = new TimestampServiceImpl.CachedTimer();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean checkAndStore(String consumerKey, String timestamp, String nonce)
+  {
+    Preconditions.checkNotNull(consumerKey, "Consumer key cannot be null");
+    Preconditions.checkNotNull(nonce, "Nonce cannot be null");
+    long second;
+    try
+    {
+      second = Long.parseLong(timestamp);
+    }
+    catch (NumberFormatException e)
+    {
+      return false;
+    }
+    long now = timer.getSeconds();
+    if (second < now - windowSeconds || second > now + windowSeconds)
+    {
+      return false;
+    }
+    switch (buckets.add(second, (int) (second % ringSize), consumerKey, nonce))
+    {
+      case ADDED:
+        return true;
+      case SEEN:
+        replays.incrementAndGet();
+        return false;
+      case FULL:
+        overflows.incrementAndGet();
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the number of replayed nonces rejected so far
+   *
+   * @return replay count
+   */
+  public long getReplayCount()
+  {
+    return replays.get();
+  }
+
+  /**
+   * Returns the number of nonces rejected because their second had no room left
+   *
+   * @return overflow count
+   */
+  public long getOverflowCount()
+  {
+    return overflows.get();
+  }
+
+  void setTimer(TimestampServiceImpl.Timer timer)
+  {
+    this.timer = timer;
+  }
+
+  private static abstract class Buckets
+  {
+    abstract int add(long second, int index, String consumerKey, String nonce);
+  }
+
+  private static final class HeapBuckets extends Buckets
+  {
+    private final AtomicReferenceArray<HeapBucket> ring;
+    private final int capacity;
+
+    HeapBuckets(int ringSize, int capacity)
+    {
+      this.ring = new AtomicReferenceArray<HeapBucket>(ringSize);
+      this.capacity = capacity;
+    }
+
+    @Override
+    int add(long second, int index, String consumerKey, String nonce)
+    {
+      HeapBucket bucket = bucketFor(second, index);
+      if (bucket == null)
+      {
+        return EXPIRED;
+      }
+      String key = consumerKey + SEPARATOR + nonce;
+      if (bucket.keys.containsKey(key))
+      {
+        return SEEN;
+      }
+      if (bucket.size.incrementAndGet() > capacity)
+      {
+        bucket.size.decrementAndGet();
+        return FULL;
+      }
+      if (bucket.keys.putIfAbsent(key, Boolean.TRUE) != null)
+      {
+        bucket.size.decrementAndGet();
+        return SEEN;
+      }
+      return ADDED;
+    }
+
+    private HeapBucket bucketFor(long second, int index)
+    {
+      while (true)
+      {
+        HeapBucket bucket = ring.get(index);
+        if (bucket != null && bucket.second == second)
+        {
+          return bucket;
+        }
+        if (bucket != null && bucket.second > second)
+        {
+          return null;
+        }
+        HeapBucket fresh = new HeapBucket(second);
+        if (ring.compareAndSet(index, bucket, fresh))
+        {
+          return fresh;
+        }
+      }
+    }
+  }
+
+  private static final class HeapBucket
+  {
+    final long second;
+    final ConcurrentHashMap<String, Boolean> keys = new ConcurrentHashMap<String, Boolean>();
+    final AtomicInteger size = new AtomicInteger();
+
+    HeapBucket(long second)
+    {
+      this.second = second;
+    }
+  }
+
+  /**
+   * Each ring slot owns a direct buffer split in STRIPES open-addressing tables of (second, fingerprint) pairs. A pair
+   * tagged with an older second is free, so a new second takes over the slot without clearing it. A lookup can stop at
+   * the first free pair: every pair of the current second sits before it in the probe sequence.
+   */
+  private static final class OffHeapBuckets extends Buckets
+  {
+    private final LongBuffer[] tables;
+    private final Object[] locks;
+    private final long[] stripeSeconds;
+    private final int[] stripeSizes;
+    private final int stripeSlots;
+    private final int stripeCapacity;
+
+    OffHeapBuckets(int ringSize, int capacity)
+    {
+      this.stripeCapacity = (capacity + STRIPES - 1) / STRIPES;
+      int slots = 1;
+      while (slots < stripeCapacity + stripeCapacity / 3 + 1)
+      {
+        slots <<= 1;
+      }
+      this.stripeSlots = slots;
+      this.tables = new LongBuffer[ringSize];
+      this.locks = new Object[ringSize * STRIPES];
+      this.stripeSeconds = new long[ringSize * STRIPES];
+      this.stripeSizes = new int[ringSize * STRIPES];
+      for (int i = 0; i < ringSize; i++)
+      {
+        tables[i] = ByteBuffer.allocateDirect(STRIPES * stripeSlots * 16).order(ByteOrder.nativeOrder()).asLongBuffer();
+      }
+      for (int i = 0; i < locks.length; i++)
+      {
+        locks[i] = new Object();
+        stripeSeconds[i] = -1;
+      }
+    }
+
+    @Override
+    int add(long second, int index, String consumerKey, String nonce)
+    {
+      long fingerprint = fingerprint(consumerKey, nonce);
+      int stripe = (int) (fingerprint >>> 60);
+      int lock = index * STRIPES + stripe;
+      LongBuffer table = tables[index];
+      int base = stripe * stripeSlots;
+      synchronized (locks[lock])
+      {
+        if (stripeSeconds[lock] != second)
+        {
+          if (stripeSeconds[lock] > second)
+          {
+            return EXPIRED;
+          }
+          stripeSeconds[lock] = second;
+          stripeSizes[lock] = 0;
+        }
+        int slot = (int) fingerprint & (stripeSlots - 1);
+        for (int probes = 0; probes < stripeSlots; probes++)
+        {
+          int position = (base + slot) * 2;
+          if (table.get(position) != second)
+          {
+            if (stripeSizes[lock] >= stripeCapacity)
+            {
+              return FULL;
+            }
+            table.put(position, second);
+            table.put(position + 1, fingerprint);
+            stripeSizes[lock]++;
+            return ADDED;
+          }
+          if (table.get(position + 1) == fingerprint)
+          {
+            return SEEN;
+          }
+          slot = (slot + 1) & (stripeSlots - 1);
+        }
+        return FULL;
+      }
+    }
+
+    /*
+     * 64-bit FNV-1a over both strings, followed by a final mix so every bit depends on the whole key
+     */
+    private static long fingerprint(String consumerKey, String nonce)
+    {
+      long hash = 0xcbf29ce484222325L;
+      hash = fnv(hash, consumerKey);
+      hash = (hash ^ SEPARATOR) * 0x100000001b3L;
+      hash = fnv(hash, nonce);
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+
+    private static long fnv(long hash, String string)
+    {
+      for (int i = 0; i < string.length(); i++)
+      {
+        hash = (hash ^ string.charAt(i)) * 0x100000001b3L;
+      }
+      return hash;
+    }
+  }
+}
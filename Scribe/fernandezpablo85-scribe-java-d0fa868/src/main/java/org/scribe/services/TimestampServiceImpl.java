@@ -5,18 +5,22 @@ import java.util.*;
 /**
  * Implementation of {@link TimestampService} using plain java classes.
  * 
+ * The current second is read from a clock shared by every instance: a single daemon thread renders it once per
+ * second, so getting a timestamp costs one volatile read.
+ * 
  * @author Pablo Fernandez
  */
-public class TimestampServiceImpl implements TimestampService
+public class TimestampServiceImpl implements AdjustableTimestampService
 {
   private Timer timer;
+  private volatile long offset;
 
   /**
    * Default constructor. 
    */
   public TimestampServiceImpl()
   {
-    timer = new Timer();
+    timer = new CachedTimer();
   }
 
   /**
@@ -24,8 +28,7 @@ public class TimestampServiceImpl implements TimestampService
    */
   public String getNonce()
   {
-    Long ts = getTs();
-    return String.valueOf(ts + timer.getRandomInteger());
+    return String.valueOf(timer.getSeconds() + timer.getRandomInteger());
   }
 
   /**
@@ -33,12 +36,24 @@ public class TimestampServiceImpl implements TimestampService
    */
   public String getTimestampInSeconds()
   {
-    return String.valueOf(getTs());
+    long offset = this.offset;
+    return offset == 0 ? timer.getRenderedSeconds() : String.valueOf(timer.getSeconds() + offset);
   }
 
-  private Long getTs()
+  /**
+   * {@inheritDoc}
+   */
+  public void setClockOffset(long seconds)
   {
-    return timer.getMilis() / 1000;
+    this.offset = seconds;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public long getClockOffset()
+  {
+    return offset;
   }
 
   void setTimer(Timer timer)
@@ -62,6 +77,98 @@ public class TimestampServiceImpl implements TimestampService
     {
       return new Random().nextInt();
     }
+
+    long getSeconds()
+    {
+      return getMilis() / 1000;
+    }
+
+    String getRenderedSeconds()
+    {
+      return String.valueOf(getSeconds());
+    }
+  }
+
+  /**
+   * {@link Timer} that reads the current second from the shared {@link Clock} instead of computing it.
+   */
+  static class CachedTimer extends Timer
+  {
+    CachedTimer()
+    {
+      Clock.start();
+    }
+
+    @Override
+    long getSeconds()
+    {
+      return Clock.current.seconds;
+    }
+
+    @Override
+    String getRenderedSeconds()
+    {
+      return Clock.current.rendered;
+    }
+  }
+
+  /**
+   * The current epoch second, updated by one daemon thread right after every second boundary.
+   */
+  static final class Clock implements Runnable
+  {
+    static volatile Tick current = new Tick(System.currentTimeMillis() / 1000);
+    private static Thread thread;
+
+    private Clock()
+    {
+    }
+
+    static synchronized Thread start()
+    {
+      if (thread == null)
+      {
+        thread = new Thread(new Clock(), "scribe-clock");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      return thread;
+    }
+
+    public void run()
+    {
+      while (true)
+      {
+        long millis = System.currentTimeMillis();
+        current = advance(current, millis);
+        try
+        {
+          // wake up just after the next second starts
+          Thread.sleep(1001 - millis % 1000);
+        }
+        catch (InterruptedException e)
+        {
+          // nobody owns this thread but the clock, and every timestamp would freeze if it stopped
+        }
+      }
+    }
+
+    static Tick advance(Tick tick, long millis)
+    {
+      return millis / 1000 == tick.seconds ? tick : new Tick(millis / 1000);
+    }
+  }
+
+  static final class Tick
+  {
+    final long seconds;
+    final String rendered;
+
+    Tick(long seconds)
+    {
+      this.seconds = seconds;
+      this.rendered = String.valueOf(seconds);
+    }
   }
 
 }
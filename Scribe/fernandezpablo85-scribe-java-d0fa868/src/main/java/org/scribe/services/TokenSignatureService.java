@@ -0,0 +1,22 @@
+package org.scribe.services;
+
+import org.scribe.model.*;
+
+/**
+ * {@link SignatureService} that wants to see the whole {@link Token} it signs for, not just its secret.
+ *
+ * Useful for implementations that keep per-token state between signatures.
+ */
+public interface TokenSignatureService extends SignatureService
+{
+  /**
+   * Returns the signature
+   *
+   * @param baseString url-encoded string to sign
+   * @param apiSecret api secret for your app
+   * @param token token being used (the empty token for the request token step)
+   *
+   * @return signature
+   */
+  public String getSignature(String baseString, String apiSecret, Token token);
+}
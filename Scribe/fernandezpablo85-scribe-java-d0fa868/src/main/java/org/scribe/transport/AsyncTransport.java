@@ -0,0 +1,22 @@
+package org.scribe.transport;
+
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * {@link Transport} that can send requests without blocking the calling thread
+ */
+public interface AsyncTransport extends Transport
+{
+  /**
+   * Starts sending a request
+   *
+   * The future completes with the {@link Response} as soon as its status line and headers have been read; the body
+   * streams afterwards. Failures are reported as the cause of an {@link java.util.concurrent.ExecutionException}.
+   * Cancelling the future aborts the request.
+   *
+   * @param request the request
+   * @return future response
+   */
+  SettableFuture<Response> sendAsync(Request request);
+}
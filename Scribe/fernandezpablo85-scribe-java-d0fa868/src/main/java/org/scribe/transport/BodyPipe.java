@@ -0,0 +1,167 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * Bounded buffer between the selector thread, which fills it from the network, and the thread reading a response
+ * body.
+ *
+ * The selector thread never blocks: when the pipe is full it stops reading from the connection until the reader has
+ * freed half of the buffer, and is told so through the resume callback.
+ */
+final class BodyPipe extends InputStream
+{
+  private final byte[] buffer;
+  private final Thread producer;
+  private final Runnable resume;
+  private final Runnable onClose;
+  private int start;
+  private int count;
+  private boolean finished;
+  private boolean closed;
+  private boolean producerWaiting;
+  private IOException failure;
+
+  /**
+   * @param capacity buffer size
+   * @param producer the selector thread, which must never wait for its own data
+   * @param resume called (outside the lock) when a full pipe has room again
+   * @param onClose called (outside the lock) when the reader closes the pipe
+   */
+  BodyPipe(int capacity, Thread producer, Runnable resume, Runnable onClose)
+  {
+    this.buffer = new byte[capacity];
+    this.producer = producer;
+    this.resume = resume;
+    this.onClose = onClose;
+  }
+
+  /**
+   * Copies as many bytes as fit. Remembers that the producer is waiting if some are left.
+   *
+   * @return false if the reader has closed the pipe and nothing more should be offered
+   */
+  synchronized boolean offer(ByteBuffer source)
+  {
+    if (closed)
+    {
+      source.position(source.limit());
+      return false;
+    }
+    while (source.hasRemaining() && count < buffer.length)
+    {
+      int end = (start + count) % buffer.length;
+      int length = Math.min(source.remaining(), Math.min(buffer.length - count, buffer.length - end));
+      source.get(buffer, end, length);
+      count += length;
+    }
+    producerWaiting = source.hasRemaining();
+    notifyAll();
+    return true;
+  }
+
+  synchronized void finish()
+  {
+    finished = true;
+    notifyAll();
+  }
+
+  synchronized void fail(IOException failure)
+  {
+    if (!finished && this.failure == null)
+    {
+      this.failure = failure;
+      notifyAll();
+    }
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    byte[] single = new byte[1];
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] target, int offset, int length) throws IOException
+  {
+    if (length == 0)
+    {
+      return 0;
+    }
+    int read = 0;
+    boolean wakeProducer = false;
+    synchronized (this)
+    {
+      if (count == 0 && !finished && failure == null && !closed && Thread.currentThread() == producer)
+      {
+        throw new IOException("Response body read on the selector thread; use a callback executor with its own threads");
+      }
+      while (count == 0 && !finished && failure == null && !closed)
+      {
+        try
+        {
+          wait();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for the response body");
+        }
+      }
+      if (closed)
+      {
+        throw new IOException("Stream closed");
+      }
+      if (count == 0)
+      {
+        if (failure != null)
+        {
+          throw failure;
+        }
+        return -1;
+      }
+      while (read < length && count > 0)
+      {
+        int chunk = Math.min(length - read, Math.min(count, buffer.length - start));
+        System.arraycopy(buffer, start, target, offset + read, chunk);
+        start = (start + chunk) % buffer.length;
+        count -= chunk;
+        read += chunk;
+      }
+      if (producerWaiting && count <= buffer.length / 2)
+      {
+        producerWaiting = false;
+        wakeProducer = true;
+      }
+    }
+    if (wakeProducer)
+    {
+      resume.run();
+    }
+    return read;
+  }
+
+  @Override
+  public synchronized int available()
+  {
+    return count;
+  }
+
+  @Override
+  public void close()
+  {
+    synchronized (this)
+    {
+      if (closed)
+      {
+        return;
+      }
+      closed = true;
+      count = 0;
+      notifyAll();
+    }
+    onClose.run();
+  }
+}
@@ -0,0 +1,14 @@
+package org.scribe.transport;
+
+/**
+ * Owner of the connection a response body is read from
+ */
+interface ConnectionReleaser
+{
+  /**
+   * Called once, when the body has been read to the end, drained, or abandoned
+   *
+   * @param reusable true if the connection can carry another request
+   */
+  void release(boolean reusable);
+}
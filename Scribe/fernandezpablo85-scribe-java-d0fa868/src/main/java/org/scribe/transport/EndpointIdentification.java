@@ -0,0 +1,204 @@
+package org.scribe.transport;
+
+import java.lang.reflect.*;
+import java.security.cert.*;
+import java.util.*;
+
+import javax.naming.*;
+import javax.naming.ldap.*;
+import javax.net.ssl.*;
+import javax.security.auth.x500.*;
+
+/**
+ * Standard HTTPS check of the certificate of a host against its name
+ *
+ * Java 7 and later TLS providers do it themselves during the handshake once their endpoint identification algorithm
+ * is set to HTTPS. Java 6 has no such setting, so there the certificate is checked after the handshake by
+ * {@link #VERIFIER}, following the rules of RFC 2818: DNS (or IP address) subject alternative names if the
+ * certificate has any, its most specific common name otherwise, and a wildcard only as the whole leftmost label.
+ */
+final class EndpointIdentification
+{
+  private static final String HTTPS = "HTTPS";
+  private static final int DNS_NAME = 2;
+  private static final int IP_ADDRESS = 7;
+  private static final Method SET_ALGORITHM = findSetAlgorithm();
+
+  /**
+   * Checks the certificate of the session against the host name
+   */
+  static final HostnameVerifier VERIFIER = new HostnameVerifier()
+  {
+    public boolean verify(String host, SSLSession session)
+    {
+      try
+      {
+        Certificate[] certificates = session.getPeerCertificates();
+        return certificates.length > 0 && certificates[0] instanceof X509Certificate
+            && matches(host, (X509Certificate) certificates[0]);
+      }
+      catch (SSLPeerUnverifiedException e)
+      {
+        return false;
+      }
+    }
+  };
+
+  private EndpointIdentification()
+  {
+  }
+
+  /**
+   * Turns on the HTTPS check of the TLS provider
+   *
+   * @return the verifier to run after the handshake, or null if the provider checks the host itself
+   */
+  static HostnameVerifier enable(SSLSocket socket)
+  {
+    SSLParameters parameters = socket.getSSLParameters();
+    if (!setAlgorithm(parameters))
+    {
+      return VERIFIER;
+    }
+    socket.setSSLParameters(parameters);
+    return null;
+  }
+
+  /**
+   * Turns on the HTTPS check of the TLS provider
+   *
+   * @return the verifier to run after the handshake, or null if the provider checks the host itself
+   */
+  static HostnameVerifier enable(SSLEngine engine)
+  {
+    SSLParameters parameters = engine.getSSLParameters();
+    if (!setAlgorithm(parameters))
+    {
+      return VERIFIER;
+    }
+    engine.setSSLParameters(parameters);
+    return null;
+  }
+
+  static boolean matches(String host, X509Certificate certificate)
+  {
+    boolean ip = isIpAddress(host);
+    boolean hasDnsNames = false;
+    try
+    {
+      Collection<List<?>> names = certificate.getSubjectAlternativeNames();
+      if (names != null)
+      {
+        for (List<?> name : names)
+        {
+          int type = ((Integer) name.get(0)).intValue();
+          if (type == DNS_NAME)
+          {
+            hasDnsNames = true;
+            if (!ip && matches(host, (String) name.get(1)))
+            {
+              return true;
+            }
+          }
+          else if (type == IP_ADDRESS && ip && host.equalsIgnoreCase((String) name.get(1)))
+          {
+            return true;
+          }
+        }
+      }
+    }
+    catch (CertificateParsingException e)
+    {
+      return false;
+    }
+    if (ip || hasDnsNames)
+    {
+      return false;
+    }
+    String commonName = commonName(certificate.getSubjectX500Principal());
+    return commonName != null && matches(host, commonName);
+  }
+
+  /**
+   * Matches a host name against a certificate name, which may start with a "*." wildcard standing for one label
+   */
+  static boolean matches(String host, String pattern)
+  {
+    String name = host.toLowerCase(Locale.US);
+    String expected = pattern.toLowerCase(Locale.US);
+    if (name.endsWith("."))
+    {
+      name = name.substring(0, name.length() - 1);
+    }
+    if (!expected.startsWith("*."))
+    {
+      return name.equals(expected);
+    }
+    String suffix = expected.substring(1);
+    // the wildcard covers exactly one label, and never a whole public suffix like "*.com"
+    return suffix.indexOf('.', 1) > 0 && name.endsWith(suffix) && name.length() > suffix.length()
+        && name.lastIndexOf('.', name.length() - suffix.length() - 1) < 0;
+  }
+
+  private static String commonName(X500Principal principal)
+  {
+    try
+    {
+      String commonName = null;
+      // RDNs are listed from the least to the most specific
+      for (Rdn rdn : new LdapName(principal.getName()).getRdns())
+      {
+        if ("CN".equalsIgnoreCase(rdn.getType()))
+        {
+          commonName = rdn.getValue().toString();
+        }
+      }
+      return commonName;
+    }
+    catch (InvalidNameException e)
+    {
+      return null;
+    }
+  }
+
+  private static boolean isIpAddress(String host)
+  {
+    return host.indexOf(':') >= 0 || host.matches("[0-9.]+");
+  }
+
+  private static boolean setAlgorithm(SSLParameters parameters)
+  {
+    if (SET_ALGORITHM == null)
+    {
+      return false;
+    }
+    try
+    {
+      SET_ALGORITHM.invoke(parameters, HTTPS);
+      return true;
+    }
+    catch (IllegalAccessException e)
+    {
+      return false;
+    }
+    catch (InvocationTargetException e)
+    {
+      return false;
+    }
+  }
+
+  /*
+   * SSLParameters.setEndpointIdentificationAlgorithm(String) appeared in Java 7
+   */
+  private static Method findSetAlgorithm()
+  {
+    try
+    {
+      return SSLParameters.class.getMethod("setEndpointIdentificationAlgorithm", String.class);
+    }
+    catch (NoSuchMethodException e)
+    {
+      return null;
+    }
+  }
+}
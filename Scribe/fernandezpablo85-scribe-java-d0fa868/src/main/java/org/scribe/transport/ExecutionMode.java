@@ -0,0 +1,93 @@
+package org.scribe.transport;
+
+import java.lang.reflect.*;
+import java.util.concurrent.*;
+
+/**
+ * Kind of threads that run blocking sends in the background, see {@link ThreadPerRequestTransport}
+ */
+public enum ExecutionMode
+{
+  /**
+   * A cached pool of daemon platform threads
+   */
+  PLATFORM_THREADS
+  {
+    @Override
+    ExecutorService newExecutor()
+    {
+      return Executors.newCachedThreadPool(new Transports.DaemonThreadFactory("scribe-sender"));
+    }
+  },
+
+  /**
+   * A new virtual thread per task. Needs Java 21 or later.
+   */
+  VIRTUAL_THREADS
+  {
+    @Override
+    ExecutorService newExecutor()
+    {
+      try
+      {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "scribe-virtual-", 0L);
+        ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        Method executor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        return (ExecutorService) executor.invoke(null, factory);
+      }
+      catch (Exception e)
+      {
+        throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+      }
+    }
+  };
+
+  private volatile ExecutorService executor;
+
+  abstract ExecutorService newExecutor();
+
+  /**
+   * Returns true if this mode can run on the current JVM
+   *
+   * @return availability
+   */
+  public boolean isAvailable()
+  {
+    try
+    {
+      getExecutor();
+      return true;
+    }
+    catch (UnsupportedOperationException e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the shared executor of this mode. Pass it to the asynchronous {@link org.scribe.oauth.OAuth10aService}
+   * methods to run token exchanges on the same kind of threads.
+   *
+   * @return shared executor
+   * @throws UnsupportedOperationException if the mode is not available on this JVM
+   */
+  public ExecutorService getExecutor()
+  {
+    ExecutorService current = executor;
+    if (current == null)
+    {
+      synchronized (this)
+      {
+        current = executor;
+        if (current == null)
+        {
+          current = newExecutor();
+          executor = current;
+        }
+      }
+    }
+    return current;
+  }
+}
@@ -0,0 +1,254 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.scribe.model.*;
+
+/**
+ * HTTP/1.1 message rendering and parsing shared by the socket based transports
+ */
+final class Http1
+{
+  static final String CRLF = "\r\n";
+
+  private static final String CHARSET = "ISO-8859-1";
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final int MAX_LINE = 64 * 1024;
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  private Http1()
+  {
+  }
+
+  static boolean hasBody(Request request)
+  {
+    return request.getVerb() == Verb.PUT || request.getVerb() == Verb.POST;
+  }
+
+  /**
+   * Returns the body to send, or null for verbs without one
+   */
+  static RequestBody bodyOf(Request request)
+  {
+    return hasBody(request) ? request.getBody() : null;
+  }
+
+  /**
+   * Renders the request line and headers. Adds Host, the Content-Encoding of the body, Content-Length (or
+   * Transfer-Encoding: chunked for bodies of unknown length), and "Connection: close" if asked to.
+   */
+  static byte[] renderHead(Request request, URL url, int port, RequestBody body, boolean close) throws IOException
+  {
+    String file = url.getFile();
+    StringBuilder head = new StringBuilder();
+    head.append(request.getVerb().name()).append(' ').append(file.length() == 0 ? "/" : file).append(" HTTP/1.1").append(CRLF);
+    boolean hasHost = false;
+    for (ParamInfo header : request.getHeaders())
+    {
+      if ("Content-Length".equalsIgnoreCase(header.getKey()) || "Transfer-Encoding".equalsIgnoreCase(header.getKey())
+          || (close && "Connection".equalsIgnoreCase(header.getKey()))
+          || (body != null && body.getContentEncoding() != null && CONTENT_ENCODING.equalsIgnoreCase(header.getKey())))
+      {
+        continue;
+      }
+      hasHost |= "Host".equalsIgnoreCase(header.getKey());
+      head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+    }
+    if (!hasHost)
+    {
+      head.append("Host: ").append(url.getHost());
+      if (port != url.getDefaultPort())
+      {
+        head.append(':').append(port);
+      }
+      head.append(CRLF);
+    }
+    if (body != null && body.getContentEncoding() != null)
+    {
+      head.append(CONTENT_ENCODING).append(": ").append(body.getContentEncoding()).append(CRLF);
+    }
+    if (body != null && body.getContentLength() == RequestBody.UNKNOWN_LENGTH)
+    {
+      head.append("Transfer-Encoding: chunked").append(CRLF);
+    }
+    else if (body != null)
+    {
+      head.append("Content-Length: ").append(body.getContentLength()).append(CRLF);
+    }
+    if (close)
+    {
+      head.append("Connection: close").append(CRLF);
+    }
+    head.append(CRLF);
+    return head.toString().getBytes(CHARSET);
+  }
+
+  /**
+   * Writes a body as announced by {@link #renderHead}: as is, or in chunks if its length is unknown
+   */
+  static void writeBody(RequestBody body, OutputStream out) throws IOException
+  {
+    if (body.getContentLength() != RequestBody.UNKNOWN_LENGTH)
+    {
+      body.writeTo(out);
+      return;
+    }
+    ReadableByteChannel channel = body.openChannel();
+    try
+    {
+      ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+      int read;
+      while ((read = channel.read(chunk)) >= 0)
+      {
+        if (read > 0)
+        {
+          out.write((Integer.toHexString(chunk.position()) + CRLF).getBytes(CHARSET));
+          out.write(chunk.array(), 0, chunk.position());
+          out.write(CRLF.getBytes(CHARSET));
+          chunk.clear();
+        }
+      }
+      out.write(("0" + CRLF + CRLF).getBytes(CHARSET));
+    }
+    finally
+    {
+      channel.close();
+    }
+  }
+
+  static int parseCode(String statusLine) throws IOException
+  {
+    int start = statusLine.indexOf(' ');
+    if (!statusLine.startsWith("HTTP/") || start < 0 || statusLine.length() < start + 4)
+    {
+      throw new IOException("Invalid HTTP status line: " + statusLine);
+    }
+    try
+    {
+      return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IOException("Invalid HTTP status line: " + statusLine);
+    }
+  }
+
+  static boolean isInformational(int code)
+  {
+    return code >= 100 && code < 200 && code != 101;
+  }
+
+  static boolean hasNoBody(int code)
+  {
+    return code == 204 || code == 304;
+  }
+
+  /**
+   * Reads header lines up to the empty line that ends them
+   */
+  static List<ParamInfo> readHeaders(InputStream in) throws IOException
+  {
+    List<ParamInfo> headers = new ArrayList<ParamInfo>();
+    String line;
+    while ((line = readLine(in)) != null && line.length() > 0)
+    {
+      int colon = line.indexOf(':');
+      if (colon <= 0)
+      {
+        continue;
+      }
+      ParamInfo header = new ParamInfo();
+      header.setKey(line.substring(0, colon).trim());
+      header.setValue(line.substring(colon + 1).trim());
+      headers.add(header);
+    }
+    if (line == null)
+    {
+      throw new EOFException("Connection closed while reading the response headers");
+    }
+    return headers;
+  }
+
+  /**
+   * Framing of a response body, read from its headers
+   */
+  static final class Framing
+  {
+    final boolean keepAlive;
+    final long contentLength;
+    final boolean chunked;
+
+    Framing(String statusLine, List<ParamInfo> headers) throws IOException
+    {
+      boolean keepAlive = !statusLine.startsWith("HTTP/1.0");
+      long contentLength = -1;
+      boolean chunked = false;
+      for (ParamInfo header : headers)
+      {
+        String name = header.getKey();
+        String value = header.getValue().trim();
+        if ("Connection".equalsIgnoreCase(name))
+        {
+          keepAlive = !"close".equalsIgnoreCase(value) && (keepAlive || "keep-alive".equalsIgnoreCase(value));
+        }
+        else if ("Content-Length".equalsIgnoreCase(name))
+        {
+          contentLength = parseContentLength(value);
+        }
+        else if ("Transfer-Encoding".equalsIgnoreCase(name))
+        {
+          chunked = value.toLowerCase(Locale.US).contains("chunked");
+        }
+      }
+      this.keepAlive = keepAlive;
+      this.contentLength = contentLength;
+      this.chunked = chunked;
+    }
+  }
+
+  private static long parseContentLength(String value) throws IOException
+  {
+    try
+    {
+      long length = Long.parseLong(value);
+      if (length >= 0)
+      {
+        return length;
+      }
+    }
+    catch (NumberFormatException e)
+    {
+      // reported below
+    }
+    throw new IOException("Invalid Content-Length: " + value);
+  }
+
+  /**
+   * Reads a CRLF (or LF) terminated ISO-8859-1 line
+   *
+   * @return the line without its terminator, or null at the end of the stream
+   */
+  static String readLine(InputStream in) throws IOException
+  {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) >= 0)
+    {
+      if (c == '\n')
+      {
+        int last = line.length() - 1;
+        return last >= 0 && line.charAt(last) == '\r' ? line.substring(0, last) : line.toString();
+      }
+      if (line.length() >= MAX_LINE)
+      {
+        throw new IOException("HTTP line longer than " + MAX_LINE + " bytes");
+      }
+      line.append((char) c);
+    }
+    return line.length() > 0 ? line.toString() : null;
+  }
+}
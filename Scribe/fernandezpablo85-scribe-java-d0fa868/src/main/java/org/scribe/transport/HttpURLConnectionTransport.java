@@ -0,0 +1,94 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.net.*;
+
+import org.scribe.model.*;
+
+/**
+ * Default {@link Transport}, built on {@link HttpURLConnection}
+ *
+ * Connections are only opened when a request is sent, so requests that are only built and signed never touch the
+ * network stack.
+ */
+public class HttpURLConnectionTransport implements Transport
+{
+  private static final String CONTENT_LENGTH = "Content-Length";
+  private static final String CONTENT_ENCODING = "Content-Encoding";
+  private static final int CHUNK_SIZE = 16 * 1024;
+  private static final HttpURLConnectionTransport DEFAULT = new HttpURLConnectionTransport();
+
+  /**
+   * Returns the shared instance used by requests that have no transport of their own
+   *
+   * @return default transport
+   */
+  public static HttpURLConnectionTransport getDefault()
+  {
+    return DEFAULT;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Response send(Request request) throws IOException
+  {
+    HttpURLConnection connection = openConnection(request);
+    connection.setRequestMethod(request.getVerb().name());
+    if (request.getConnectTimeout() != null)
+    {
+      connection.setConnectTimeout(request.getConnectTimeout());
+    }
+    if (request.getReadTimeout() != null)
+    {
+      connection.setReadTimeout(request.getReadTimeout());
+    }
+    for (ParamInfo header : request.getHeaders())
+    {
+      connection.setRequestProperty(header.getKey(), header.getValue());
+    }
+    if (request.getVerb().equals(Verb.PUT) || request.getVerb().equals(Verb.POST))
+    {
+      addBody(connection, request.getBody());
+    }
+    return new Response(connection);
+  }
+
+  /**
+   * Opens the connection for a request. Override to customize connections (proxies, TLS settings) or to stub them.
+   *
+   * @param request request about to be sent
+   * @return unconnected connection
+   * @throws IOException if the connection cannot be opened
+   */
+  protected HttpURLConnection openConnection(Request request) throws IOException
+  {
+    return (HttpURLConnection) new URL(request.getUrl()).openConnection();
+  }
+
+  /*
+   * Streams the body: HttpURLConnection would otherwise buffer all of it before sending anything
+   */
+  private void addBody(HttpURLConnection connection, RequestBody body) throws IOException
+  {
+    long length = body.getContentLength();
+    if (body.getContentEncoding() != null)
+    {
+      connection.setRequestProperty(CONTENT_ENCODING, body.getContentEncoding());
+    }
+    // setFixedLengthStreamingMode(long) needs Java 7, so bodies beyond the int range go chunked
+    if (length == RequestBody.UNKNOWN_LENGTH || length > Integer.MAX_VALUE)
+    {
+      connection.setChunkedStreamingMode(CHUNK_SIZE);
+    }
+    else
+    {
+      connection.setRequestProperty(CONTENT_LENGTH, String.valueOf(length));
+      connection.setFixedLengthStreamingMode((int) length);
+    }
+    connection.setDoOutput(true);
+    OutputStream out = connection.getOutputStream();
+    body.writeTo(out);
+    out.flush();
+  }
+}
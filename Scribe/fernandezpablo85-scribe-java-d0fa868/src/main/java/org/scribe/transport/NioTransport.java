@@ -0,0 +1,1284 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.net.ssl.*;
+
+import org.scribe.exceptions.*;
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * Non-blocking HTTP/1.1 {@link AsyncTransport} built on a {@link Selector}
+ *
+ * One selector thread per transport connects, writes requests and reads responses for every request in flight. Every
+ * host (scheme, host and port) has at most maxInFlightPerHost requests in flight; the others wait in order. Futures
+ * complete on the callback executor as soon as the status line and headers have been read. The body then streams
+ * through a bounded buffer: a reader that falls behind only pauses its own connection.
+ *
+ * Every request gets its own connection, closed once its body has been read or its response closed; use
+ * {@link PooledTransport} when keep-alive matters more than not blocking threads. HTTPS runs over an {@link SSLEngine}.
+ * Connects directly, without proxies. Host names are resolved on the calling thread.
+ *
+ * Request bodies are read from {@link RequestBody#openChannel()} on the selector thread, a buffer at a time, as the
+ * connection accepts them; bodies backed by slow streams hold up the other requests of the transport. File bodies
+ * never enter the heap: they go from the page cache to the socket with {@link FileChannel#transferTo}, or through
+ * memory-mapped windows of the file over HTTPS.
+ *
+ * Call {@link #shutdown()} to stop the selector thread of a transport that is no longer needed.
+ */
+public class NioTransport implements AsyncTransport
+{
+  private static final int DEFAULT_MAX_IN_FLIGHT_PER_HOST = 16;
+  private static final int HEAD_LIMIT = 64 * 1024;
+  private static final int BODY_BUFFER_SIZE = 64 * 1024;
+  private static final int PLAIN_BUFFER_SIZE = 16 * 1024;
+  private static final int UPLOAD_BUFFER_SIZE = 16 * 1024;
+  private static final int MAPPED_WINDOW_SIZE = 8 * 1024 * 1024;
+  // room for the hex size line of a chunk before its data
+  private static final int CHUNK_HEADER_SIZE = 10;
+  private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+  private static final String HTTP = "http";
+  private static final String HTTPS = "https";
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private static volatile NioTransport defaultTransport;
+  private static volatile ExecutorService defaultCallbackExecutor;
+
+  private final int maxInFlightPerHost;
+  private final Executor callbackExecutor;
+  private final SSLContext sslContext;
+  private final HostnameVerifier hostnameVerifier;
+  private final Selector selector;
+  private final Thread selectorThread;
+  private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger queued = new AtomicInteger();
+  private volatile boolean shutdown;
+
+  // only touched by the selector thread
+  private final Map<String, HostQueue> hosts = new HashMap<String, HostQueue>();
+  private final Set<Exchange> open = new HashSet<Exchange>();
+
+  /**
+   * Default constructor. Up to 16 requests in flight per host, results delivered on a shared pool of daemon threads.
+   */
+  public NioTransport()
+  {
+    this(DEFAULT_MAX_IN_FLIGHT_PER_HOST, getDefaultCallbackExecutor());
+  }
+
+  /**
+   * Creates a transport with a custom in-flight limit and callback executor
+   *
+   * @param maxInFlightPerHost maximum number of requests in flight to a single host
+   * @param callbackExecutor where futures complete, and so where their listeners run. A direct executor runs them
+   *          on the selector thread, where response bodies cannot be read.
+   */
+  public NioTransport(int maxInFlightPerHost, Executor callbackExecutor)
+  {
+    this(maxInFlightPerHost, callbackExecutor, defaultSslContext(), null);
+  }
+
+  /**
+   * Creates a transport with a custom in-flight limit, callback executor and TLS settings
+   *
+   * @param maxInFlightPerHost maximum number of requests in flight to a single host
+   * @param callbackExecutor where futures complete, and so where their listeners run
+   * @param sslContext creates the TLS engines of https connections
+   * @param hostnameVerifier checks that the certificate of an https host matches its name, or null for the standard
+   *          HTTPS check
+   */
+  public NioTransport(int maxInFlightPerHost, Executor callbackExecutor, SSLContext sslContext,
+      HostnameVerifier hostnameVerifier)
+  {
+    if (maxInFlightPerHost <= 0)
+    {
+      throw new IllegalArgumentException("In-flight limit must be greater than zero");
+    }
+    Preconditions.checkNotNull(callbackExecutor, "Callback executor cannot be null");
+    Preconditions.checkNotNull(sslContext, "SSL context cannot be null");
+    this.maxInFlightPerHost = maxInFlightPerHost;
+    this.callbackExecutor = callbackExecutor;
+    this.sslContext = sslContext;
+    this.hostnameVerifier = hostnameVerifier;
+    try
+    {
+      this.selector = Selector.open();
+    }
+    catch (IOException e)
+    {
+      throw new OAuthException("Could not open selector", e);
+    }
+    this.selectorThread = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        loop();
+      }
+    }, "scribe-nio-selector");
+    selectorThread.setDaemon(true);
+    selectorThread.start();
+  }
+
+  /**
+   * Returns the shared instance that sends asynchronous requests that have no transport of their own
+   *
+   * @return default transport
+   */
+  public static NioTransport getDefault()
+  {
+    NioTransport transport = defaultTransport;
+    if (transport == null)
+    {
+      synchronized (NioTransport.class)
+      {
+        transport = defaultTransport;
+        if (transport == null)
+        {
+          transport = new NioTransport();
+          defaultTransport = transport;
+        }
+      }
+    }
+    return transport;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public SettableFuture<Response> sendAsync(Request request)
+  {
+    SettableFuture<Response> future = new SettableFuture<Response>();
+    try
+    {
+      if (shutdown)
+      {
+        throw new IOException("Transport has been shut down");
+      }
+      URL url = new URL(request.getUrl());
+      String scheme = url.getProtocol().toLowerCase(Locale.US);
+      if (!HTTP.equals(scheme) && !HTTPS.equals(scheme))
+      {
+        throw new IOException("Unsupported protocol: " + scheme);
+      }
+      int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+      RequestBody body = Http1.bodyOf(request);
+      ByteBuffer head = ByteBuffer.wrap(Http1.renderHead(request, url, port, body, true));
+      InetSocketAddress address = new InetSocketAddress(url.getHost(), port);
+      if (address.isUnresolved())
+      {
+        throw new UnknownHostException(url.getHost());
+      }
+      final Exchange exchange = new Exchange(future, scheme + "://" + url.getHost() + ":" + port, address,
+          HTTPS.equals(scheme) ? url.getHost() : null, head, body, millis(request.getConnectTimeout()),
+          millis(request.getReadTimeout()));
+      queued.incrementAndGet();
+      submit(new Runnable()
+      {
+        public void run()
+        {
+          enqueue(exchange);
+        }
+      });
+      future.setCancelHandler(new Runnable()
+      {
+        public void run()
+        {
+          submit(new Runnable()
+          {
+            public void run()
+            {
+              exchange.abort();
+            }
+          });
+        }
+      });
+    }
+    catch (IOException e)
+    {
+      future.setException(e);
+    }
+    return future;
+  }
+
+  /**
+   * Sends a request and waits for its headers
+   *
+   * {@inheritDoc}
+   */
+  public Response send(Request request) throws IOException
+  {
+    SettableFuture<Response> future = sendAsync(request);
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the response");
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause.getMessage(), cause);
+    }
+  }
+
+  /**
+   * Returns the number of requests that have a connection (connecting, sending or receiving)
+   *
+   * @return requests in flight
+   */
+  public int getInFlightCount()
+  {
+    return inFlight.get();
+  }
+
+  /**
+   * Returns the number of requests waiting for their host to drop below the in-flight limit
+   *
+   * @return queued requests
+   */
+  public int getQueuedCount()
+  {
+    return queued.get();
+  }
+
+  /**
+   * Stops the selector thread. Requests in flight or queued fail, later requests fail right away.
+   */
+  public void shutdown()
+  {
+    shutdown = true;
+    selector.wakeup();
+  }
+
+  private void submit(Runnable task)
+  {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  private void loop()
+  {
+    while (!shutdown)
+    {
+      try
+      {
+        selector.select(nextTimeout());
+        runTasks();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext())
+        {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isValid())
+          {
+            ((Exchange) key.attachment()).onReady();
+          }
+        }
+        expire();
+      }
+      catch (IOException e)
+      {
+        // select only fails if the selector is broken; keep going until shut down
+      }
+    }
+    runTasks();
+    for (Exchange exchange : new ArrayList<Exchange>(open))
+    {
+      exchange.fail(new IOException("Transport has been shut down"));
+    }
+    for (HostQueue queue : hosts.values())
+    {
+      for (Exchange exchange : queue.waiting)
+      {
+        queued.decrementAndGet();
+        exchange.future.setException(new IOException("Transport has been shut down"));
+      }
+    }
+    hosts.clear();
+    try
+    {
+      selector.close();
+    }
+    catch (IOException e)
+    {
+      // nothing left to release
+    }
+  }
+
+  private void runTasks()
+  {
+    Runnable task;
+    while ((task = tasks.poll()) != null)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (RuntimeException e)
+      {
+        // a failing task must not stop the selector thread
+      }
+    }
+  }
+
+  private long nextTimeout()
+  {
+    long next = Long.MAX_VALUE;
+    for (Exchange exchange : open)
+    {
+      if (exchange.deadline > 0)
+      {
+        next = Math.min(next, exchange.deadline);
+      }
+    }
+    if (next == Long.MAX_VALUE)
+    {
+      return 0;
+    }
+    return Math.max(1, next - now());
+  }
+
+  private void expire()
+  {
+    long now = now();
+    for (Exchange exchange : new ArrayList<Exchange>(open))
+    {
+      if (exchange.deadline > 0 && now >= exchange.deadline)
+      {
+        exchange.fail(new SocketTimeoutException(exchange.state == State.CONNECTING ? "connect timed out"
+            : "Read timed out"));
+      }
+    }
+  }
+
+  private void enqueue(Exchange exchange)
+  {
+    if (shutdown)
+    {
+      queued.decrementAndGet();
+      exchange.future.setException(new IOException("Transport has been shut down"));
+      return;
+    }
+    HostQueue queue = hosts.get(exchange.hostKey);
+    if (queue == null)
+    {
+      queue = new HostQueue();
+      hosts.put(exchange.hostKey, queue);
+    }
+    queue.waiting.add(exchange);
+    startWaiting(exchange.hostKey, queue);
+  }
+
+  private void finished(Exchange exchange)
+  {
+    HostQueue queue = hosts.get(exchange.hostKey);
+    if (queue == null)
+    {
+      return;
+    }
+    queue.inFlight--;
+    startWaiting(exchange.hostKey, queue);
+  }
+
+  private void startWaiting(String hostKey, HostQueue queue)
+  {
+    while (!shutdown && queue.inFlight < maxInFlightPerHost && !queue.waiting.isEmpty())
+    {
+      Exchange next = queue.waiting.poll();
+      queued.decrementAndGet();
+      if (next.future.isDone())
+      {
+        continue;
+      }
+      queue.inFlight++;
+      next.start();
+    }
+    if (queue.inFlight == 0 && queue.waiting.isEmpty())
+    {
+      hosts.remove(hostKey);
+    }
+  }
+
+  private void complete(final SettableFuture<Response> future, final Response response)
+  {
+    deliver(new Runnable()
+    {
+      public void run()
+      {
+        if (!future.set(response))
+        {
+          response.close();
+        }
+      }
+    });
+  }
+
+  private void completeWithFailure(final SettableFuture<Response> future, final IOException failure)
+  {
+    deliver(new Runnable()
+    {
+      public void run()
+      {
+        future.setException(failure);
+      }
+    });
+  }
+
+  private void deliver(Runnable completion)
+  {
+    try
+    {
+      callbackExecutor.execute(completion);
+    }
+    catch (RejectedExecutionException e)
+    {
+      completion.run();
+    }
+  }
+
+  private static long now()
+  {
+    return System.nanoTime() / 1000000;
+  }
+
+  private static long millis(Integer timeout)
+  {
+    return timeout == null ? 0 : timeout.intValue();
+  }
+
+  private static SSLContext defaultSslContext()
+  {
+    try
+    {
+      return SSLContext.getDefault();
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new OAuthException("No default SSL context available", e);
+    }
+  }
+
+  private static ExecutorService getDefaultCallbackExecutor()
+  {
+    ExecutorService executor = defaultCallbackExecutor;
+    if (executor == null)
+    {
+      synchronized (NioTransport.class)
+      {
+        executor = defaultCallbackExecutor;
+        if (executor == null)
+        {
+          executor = Executors.newCachedThreadPool(new Transports.DaemonThreadFactory("scribe-nio-callback"));
+          defaultCallbackExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  private enum State
+  {
+    QUEUED, CONNECTING, HANDSHAKING, WRITING, READING_HEAD, STREAMING
+  }
+
+  private static final class HostQueue
+  {
+    final ArrayDeque<Exchange> waiting = new ArrayDeque<Exchange>();
+    int inFlight;
+  }
+
+  /**
+   * A single request and its response. Everything but {@link #release(boolean)} runs on the selector thread.
+   */
+  private final class Exchange implements ConnectionReleaser
+  {
+    final SettableFuture<Response> future;
+    final String hostKey;
+    private final InetSocketAddress address;
+    private final String tlsHost;
+    private final RequestBody body;
+    private final long connectTimeout;
+    private final long readTimeout;
+    private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+
+    State state = State.QUEUED;
+    long deadline;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private SSLEngine engine;
+    private HostnameVerifier verifier;
+    private ByteBuffer netIn;
+    private ByteBuffer netOut;
+    private ByteBuffer plainIn;
+    private BodyPipe pipe;
+    private int tail;
+    private boolean wantWrite;
+    private boolean pipeFull;
+    private boolean endOfStream;
+    private boolean closed;
+    private ByteBuffer message;
+    private ReadableByteChannel bodyChannel;
+    private ByteBuffer upload;
+    private long uploadRemaining;
+    private long filePosition;
+    private boolean uploaded;
+
+    Exchange(SettableFuture<Response> future, String hostKey, InetSocketAddress address, String tlsHost,
+        ByteBuffer head, RequestBody body, long connectTimeout, long readTimeout)
+    {
+      this.future = future;
+      this.hostKey = hostKey;
+      this.address = address;
+      this.tlsHost = tlsHost;
+      this.message = head;
+      this.body = body;
+      this.uploaded = body == null;
+      this.connectTimeout = connectTimeout;
+      this.readTimeout = readTimeout;
+    }
+
+    void start()
+    {
+      inFlight.incrementAndGet();
+      open.add(this);
+      state = State.CONNECTING;
+      deadline = deadline(connectTimeout);
+      try
+      {
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+        if (channel.connect(address))
+        {
+          onReady();
+        }
+      }
+      catch (IOException e)
+      {
+        fail(e);
+      }
+    }
+
+    void onReady()
+    {
+      try
+      {
+        if (state == State.CONNECTING)
+        {
+          if (!channel.finishConnect())
+          {
+            return;
+          }
+          touch();
+          if (tlsHost != null)
+          {
+            startTls();
+          }
+          else
+          {
+            plainIn = ByteBuffer.allocate(PLAIN_BUFFER_SIZE);
+            state = State.WRITING;
+          }
+        }
+        if (state == State.HANDSHAKING)
+        {
+          if (!handshake())
+          {
+            updateInterest();
+            return;
+          }
+          if (verifier != null && !verifier.verify(tlsHost, engine.getSession()))
+          {
+            throw new SSLPeerUnverifiedException("Certificate does not match host name " + tlsHost);
+          }
+          state = State.WRITING;
+        }
+        if (state == State.WRITING)
+        {
+          if (!writeRequest())
+          {
+            updateInterest();
+            return;
+          }
+          state = State.READING_HEAD;
+        }
+        readResponse();
+        updateInterest();
+      }
+      catch (IOException e)
+      {
+        fail(e);
+      }
+      catch (RuntimeException e)
+      {
+        fail(new IOException(String.valueOf(e.getMessage()), e));
+      }
+    }
+
+    /**
+     * Called once the reader has made room in a full body buffer
+     */
+    void resume()
+    {
+      if (!closed && pipeFull)
+      {
+        pipeFull = false;
+        touch();
+        onReady();
+      }
+    }
+
+    /**
+     * Called when the future is cancelled
+     */
+    void abort()
+    {
+      if (state == State.QUEUED)
+      {
+        HostQueue queue = hosts.get(hostKey);
+        if (queue != null && queue.waiting.remove(this))
+        {
+          queued.decrementAndGet();
+          startWaiting(hostKey, queue);
+        }
+        return;
+      }
+      fail(new InterruptedIOException("Request cancelled"));
+    }
+
+    /**
+     * Closes the connection once the body has been read, drained or abandoned. Connections are never reused.
+     */
+    public void release(boolean reusable)
+    {
+      submit(new Runnable()
+      {
+        public void run()
+        {
+          close();
+        }
+      });
+    }
+
+    void fail(IOException failure)
+    {
+      if (pipe != null)
+      {
+        pipe.fail(failure);
+      }
+      else if (!future.isDone())
+      {
+        completeWithFailure(future, failure);
+      }
+      close();
+    }
+
+    private void close()
+    {
+      if (closed)
+      {
+        return;
+      }
+      closed = true;
+      deadline = 0;
+      if (key != null)
+      {
+        key.cancel();
+      }
+      if (channel != null)
+      {
+        try
+        {
+          channel.close();
+        }
+        catch (IOException e)
+        {
+          // already unusable
+        }
+      }
+      closeBody();
+      if (open.remove(this))
+      {
+        inFlight.decrementAndGet();
+        finished(this);
+      }
+    }
+
+    private void startTls() throws IOException
+    {
+      engine = sslContext.createSSLEngine(tlsHost, address.getPort());
+      engine.setUseClientMode(true);
+      verifier = hostnameVerifier != null ? hostnameVerifier : EndpointIdentification.enable(engine);
+      SSLSession session = engine.getSession();
+      netIn = ByteBuffer.allocate(session.getPacketBufferSize());
+      netOut = ByteBuffer.allocate(session.getPacketBufferSize());
+      plainIn = ByteBuffer.allocate(session.getApplicationBufferSize());
+      engine.beginHandshake();
+      state = State.HANDSHAKING;
+    }
+
+    /**
+     * @return false if the handshake has to wait for the network
+     */
+    private boolean handshake() throws IOException
+    {
+      while (true)
+      {
+        if (!flush())
+        {
+          wantWrite = true;
+          return false;
+        }
+        wantWrite = false;
+        switch (engine.getHandshakeStatus())
+        {
+          case NEED_WRAP:
+            if (engine.wrap(EMPTY, netOut).getStatus() == SSLEngineResult.Status.CLOSED)
+            {
+              throw new SSLException("Connection closed during the TLS handshake");
+            }
+            break;
+          case NEED_UNWRAP:
+            netIn.flip();
+            SSLEngineResult result;
+            try
+            {
+              result = engine.unwrap(netIn, plainIn);
+            }
+            finally
+            {
+              netIn.compact();
+            }
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED)
+            {
+              throw new SSLException("Connection closed during the TLS handshake");
+            }
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW)
+            {
+              int read = channel.read(netIn);
+              if (read < 0)
+              {
+                throw new EOFException("Connection closed during the TLS handshake");
+              }
+              if (read == 0)
+              {
+                return false;
+              }
+              touch();
+            }
+            break;
+          case NEED_TASK:
+            runDelegatedTasks();
+            break;
+          default:
+            return true;
+        }
+      }
+    }
+
+    private void runDelegatedTasks()
+    {
+      Runnable task;
+      while ((task = engine.getDelegatedTask()) != null)
+      {
+        task.run();
+      }
+    }
+
+    /**
+     * Writes pending TLS records
+     *
+     * @return true if none are left
+     */
+    private boolean flush() throws IOException
+    {
+      if (netOut.position() == 0)
+      {
+        return true;
+      }
+      netOut.flip();
+      try
+      {
+        if (channel.write(netOut) > 0)
+        {
+          touch();
+        }
+        return !netOut.hasRemaining();
+      }
+      finally
+      {
+        netOut.compact();
+      }
+    }
+
+    /**
+     * @return false if the request has to wait for the connection to accept more bytes
+     */
+    private boolean writeRequest() throws IOException
+    {
+      while (true)
+      {
+        if (engine != null && !flush())
+        {
+          return false;
+        }
+        if (!message.hasRemaining())
+        {
+          if (engine == null && isFileUpload())
+          {
+            return transferFile();
+          }
+          if (!nextUploadBuffer())
+          {
+            return true;
+          }
+        }
+        if (engine == null)
+        {
+          if (channel.write(message) > 0)
+          {
+            touch();
+          }
+          if (message.hasRemaining())
+          {
+            return false;
+          }
+        }
+        else if (engine.wrap(message, netOut).getStatus() == SSLEngineResult.Status.CLOSED)
+        {
+          throw new SSLException("Connection closed while sending the request");
+        }
+      }
+    }
+
+    /**
+     * Reads the next buffer of the body, framed as a chunk if its length is unknown
+     *
+     * @return false once the whole body has been handed out
+     */
+    private boolean nextUploadBuffer() throws IOException
+    {
+      if (uploaded)
+      {
+        return false;
+      }
+      boolean chunked = body.getContentLength() == RequestBody.UNKNOWN_LENGTH;
+      if (isFileUpload())
+      {
+        return nextMappedWindow();
+      }
+      if (upload == null)
+      {
+        upload = ByteBuffer.allocate(CHUNK_HEADER_SIZE + UPLOAD_BUFFER_SIZE + 2);
+      }
+      int start = chunked ? CHUNK_HEADER_SIZE : 0;
+      int room = chunked ? UPLOAD_BUFFER_SIZE : (int) Math.min(UPLOAD_BUFFER_SIZE, uploadRemaining);
+      upload.clear().position(start);
+      upload.limit(start + room);
+      int read = 0;
+      while (upload.hasRemaining() && (read = bodyChannel.read(upload)) >= 0)
+      {
+        // channels from streams and files only return once they have read something
+      }
+      int length = upload.position() - start;
+      // a stream that ends right after a chunk gets its last chunk on the next call
+      if (chunked ? read < 0 && length == 0 : read < 0 || length == uploadRemaining)
+      {
+        uploaded = true;
+        closeBody();
+      }
+      if (!chunked)
+      {
+        uploadRemaining -= length;
+        if (uploaded && uploadRemaining > 0)
+        {
+          throw new EOFException("Request body ended " + uploadRemaining + " bytes early");
+        }
+        upload.flip().position(start);
+        message = upload;
+        return length > 0;
+      }
+      if (length == 0)
+      {
+        message = ByteBuffer.wrap(LAST_CHUNK);
+        return true;
+      }
+      byte[] size = (Integer.toHexString(length) + Http1.CRLF).getBytes("ISO-8859-1");
+      upload.limit(upload.capacity());
+      upload.put((byte) '\r').put((byte) '\n');
+      int end = upload.position();
+      upload.position(start - size.length);
+      upload.put(size);
+      upload.position(start - size.length).limit(end);
+      message = upload;
+      return true;
+    }
+
+    /**
+     * Opens the body on first use
+     *
+     * @return true if it is a file of known length, sent without copying it to the heap
+     */
+    private boolean isFileUpload() throws IOException
+    {
+      if (uploaded)
+      {
+        return false;
+      }
+      if (bodyChannel == null)
+      {
+        bodyChannel = body.openChannel();
+        uploadRemaining = body.getContentLength();
+      }
+      return bodyChannel instanceof FileChannel && uploadRemaining != RequestBody.UNKNOWN_LENGTH;
+    }
+
+    /**
+     * Lets the kernel copy the file straight to the socket
+     *
+     * @return false if the request has to wait for the connection to accept more bytes
+     */
+    private boolean transferFile() throws IOException
+    {
+      FileChannel file = (FileChannel) bodyChannel;
+      while (uploadRemaining > 0)
+      {
+        long sent = file.transferTo(filePosition, uploadRemaining, channel);
+        if (sent == 0)
+        {
+          if (filePosition >= file.size())
+          {
+            throw new EOFException("Request body ended " + uploadRemaining + " bytes early");
+          }
+          return false;
+        }
+        touch();
+        filePosition += sent;
+        uploadRemaining -= sent;
+      }
+      uploaded = true;
+      closeBody();
+      return true;
+    }
+
+    /**
+     * Maps the next window of the file, for the {@link SSLEngine} to encrypt
+     *
+     * @return false once the whole file has been handed out
+     */
+    private boolean nextMappedWindow() throws IOException
+    {
+      FileChannel file = (FileChannel) bodyChannel;
+      if (uploadRemaining == 0)
+      {
+        uploaded = true;
+        closeBody();
+        return false;
+      }
+      long size = Math.min(MAPPED_WINDOW_SIZE, uploadRemaining);
+      if (filePosition + size > file.size())
+      {
+        throw new EOFException("Request body ended " + uploadRemaining + " bytes early");
+      }
+      message = file.map(FileChannel.MapMode.READ_ONLY, filePosition, size);
+      filePosition += size;
+      uploadRemaining -= size;
+      return true;
+    }
+
+    private void closeBody()
+    {
+      if (bodyChannel != null)
+      {
+        try
+        {
+          bodyChannel.close();
+        }
+        catch (IOException e)
+        {
+          // nothing more to send anyway
+        }
+        bodyChannel = null;
+      }
+    }
+
+    private void readResponse() throws IOException
+    {
+      if (engine != null)
+      {
+        flush();
+      }
+      while (!closed)
+      {
+        process();
+        if (closed || pipeFull)
+        {
+          return;
+        }
+        if (endOfStream)
+        {
+          if (state != State.STREAMING)
+          {
+            throw new EOFException("Connection closed before the response");
+          }
+          pipe.finish();
+          close();
+          return;
+        }
+        int read = readPlain();
+        if (read < 0)
+        {
+          endOfStream = true;
+        }
+        else if (read == 0)
+        {
+          return;
+        }
+        else
+        {
+          touch();
+        }
+      }
+    }
+
+    /**
+     * Reads (and decrypts) what the connection has available into plainIn
+     *
+     * @return number of bytes added, or -1 at the end of the stream
+     */
+    private int readPlain() throws IOException
+    {
+      if (engine == null)
+      {
+        return channel.read(plainIn);
+      }
+      int before = plainIn.position();
+      while (true)
+      {
+        netIn.flip();
+        SSLEngineResult result;
+        try
+        {
+          result = engine.unwrap(netIn, plainIn);
+        }
+        finally
+        {
+          netIn.compact();
+        }
+        if (engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK)
+        {
+          runDelegatedTasks();
+        }
+        if (engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+        {
+          engine.wrap(EMPTY, netOut);
+          flush();
+        }
+        int produced = plainIn.position() - before;
+        switch (result.getStatus())
+        {
+          case CLOSED:
+            return produced > 0 ? produced : -1;
+          case BUFFER_OVERFLOW:
+            if (plainIn.position() == 0)
+            {
+              throw new SSLException("TLS record larger than the application buffer");
+            }
+            return produced;
+          case BUFFER_UNDERFLOW:
+            if (produced > 0)
+            {
+              return produced;
+            }
+            int read = channel.read(netIn);
+            if (read <= 0)
+            {
+              return read;
+            }
+            break;
+          default:
+            if (produced > 0)
+            {
+              return produced;
+            }
+        }
+      }
+    }
+
+    /**
+     * Hands what plainIn holds to the header parser or to the body buffer
+     */
+    private void process() throws IOException
+    {
+      plainIn.flip();
+      try
+      {
+        if (state == State.READING_HEAD)
+        {
+          readHead();
+        }
+        if (state == State.STREAMING && !closed && plainIn.hasRemaining())
+        {
+          if (!pipe.offer(plainIn))
+          {
+            close();
+            return;
+          }
+          pipeFull = plainIn.hasRemaining();
+          if (pipeFull)
+          {
+            deadline = 0;
+          }
+        }
+      }
+      finally
+      {
+        plainIn.compact();
+      }
+    }
+
+    private void readHead() throws IOException
+    {
+      while (plainIn.hasRemaining())
+      {
+        int b = plainIn.get() & 0xff;
+        head.write(b);
+        if (head.size() > HEAD_LIMIT)
+        {
+          throw new IOException("Response headers longer than " + HEAD_LIMIT + " bytes");
+        }
+        tail = (tail << 8) | b;
+        if ((tail == 0x0d0a0d0a || (tail & 0xffff) == 0x0a0a) && startResponse())
+        {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Parses the head read so far
+     *
+     * @return true for a final response, false for an informational one that is skipped
+     */
+    private boolean startResponse() throws IOException
+    {
+      InputStream in = new ByteArrayInputStream(head.toByteArray());
+      head.reset();
+      tail = 0;
+      String statusLine = Http1.readLine(in);
+      int code = Http1.parseCode(statusLine == null ? "" : statusLine);
+      List<ParamInfo> headers = Http1.readHeaders(in);
+      if (Http1.isInformational(code))
+      {
+        return false;
+      }
+      Http1.Framing framing = new Http1.Framing(statusLine, headers);
+      state = State.STREAMING;
+      InputStream body;
+      if (Http1.hasNoBody(code) || framing.contentLength == 0)
+      {
+        body = new ByteArrayInputStream(new byte[0]);
+        close();
+      }
+      else
+      {
+        pipe = new BodyPipe(BODY_BUFFER_SIZE, selectorThread, new Runnable()
+        {
+          public void run()
+          {
+            submit(new Runnable()
+            {
+              public void run()
+              {
+                resume();
+              }
+            });
+          }
+        }, new Runnable()
+        {
+          public void run()
+          {
+            release(false);
+          }
+        });
+        if (framing.chunked)
+        {
+          body = ResponseBodyStream.chunked(pipe, this, false);
+        }
+        else if (framing.contentLength > 0)
+        {
+          body = ResponseBodyStream.fixedLength(pipe, this, framing.contentLength, false);
+        }
+        else
+        {
+          body = ResponseBodyStream.untilClose(pipe, this);
+        }
+      }
+      complete(future, new Response(code, headers, body));
+      return true;
+    }
+
+    private void updateInterest()
+    {
+      if (closed)
+      {
+        return;
+      }
+      int ops;
+      switch (state)
+      {
+        case CONNECTING:
+          ops = SelectionKey.OP_CONNECT;
+          break;
+        case HANDSHAKING:
+          ops = wantWrite ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+          break;
+        case WRITING:
+          ops = SelectionKey.OP_WRITE;
+          break;
+        case STREAMING:
+          ops = pipeFull ? 0 : SelectionKey.OP_READ;
+          break;
+        default:
+          ops = SelectionKey.OP_READ;
+      }
+      if (netOut != null && netOut.position() > 0)
+      {
+        ops |= SelectionKey.OP_WRITE;
+      }
+      key.interestOps(ops);
+    }
+
+    private void touch()
+    {
+      deadline = deadline(readTimeout);
+    }
+
+    private long deadline(long timeout)
+    {
+      return timeout > 0 ? now() + timeout : 0;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.net.*;
+
+/**
+ * A kept-alive socket owned by a {@link PooledTransport} host pool
+ */
+class PooledConnection implements ConnectionReleaser
+{
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+  private final PooledTransport.HostPool pool;
+  private long lastUsed;
+  private boolean reused;
+  private boolean leased;
+  private BodyReference body;
+
+  PooledConnection(Socket socket, PooledTransport.HostPool pool) throws IOException
+  {
+    this.socket = socket;
+    this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+    this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    this.pool = pool;
+    this.lastUsed = System.currentTimeMillis();
+  }
+
+  InputStream getInputStream()
+  {
+    return in;
+  }
+
+  OutputStream getOutputStream()
+  {
+    return out;
+  }
+
+  void setReadTimeout(int millis) throws SocketException
+  {
+    socket.setSoTimeout(millis);
+  }
+
+  boolean isReused()
+  {
+    return reused;
+  }
+
+  void markReused()
+  {
+    this.reused = true;
+  }
+
+  long getLastUsed()
+  {
+    return lastUsed;
+  }
+
+  synchronized void lease()
+  {
+    leased = true;
+  }
+
+  /**
+   * Watches the body stream of the current lease: once the stream is garbage collected, the reference is enqueued
+   * and the lease can be reclaimed with {@link #reclaim(Reference)}
+   */
+  synchronized void watch(InputStream stream, ReferenceQueue<InputStream> queue)
+  {
+    body = new BodyReference(stream, this, queue);
+  }
+
+  /**
+   * Hands the connection back to its pool, or closes it if it cannot carry another request. Only the first release
+   * of a lease counts.
+   */
+  public synchronized void release(boolean reusable)
+  {
+    if (!leased)
+    {
+      return;
+    }
+    leased = false;
+    if (body != null)
+    {
+      body.clear();
+      body = null;
+    }
+    lastUsed = System.currentTimeMillis();
+    pool.release(this, reusable && !socket.isClosed());
+  }
+
+  /**
+   * Closes and releases a connection whose body stream was dropped before it was read to the end or closed
+   *
+   * @return true if the reference still belonged to the current lease
+   */
+  synchronized boolean reclaim(Reference<?> reference)
+  {
+    if (!leased || body != reference)
+    {
+      return false;
+    }
+    release(false);
+    return true;
+  }
+
+  void close()
+  {
+    try
+    {
+      socket.close();
+    }
+    catch (IOException e)
+    {
+      // nothing left to do with it
+    }
+  }
+
+  /**
+   * Weak reference to a response body stream, leading back to its connection
+   */
+  static final class BodyReference extends WeakReference<InputStream>
+  {
+    final PooledConnection connection;
+
+    BodyReference(InputStream stream, PooledConnection connection, ReferenceQueue<InputStream> queue)
+    {
+      super(stream, queue);
+      this.connection = connection;
+    }
+  }
+}
@@ -0,0 +1,562 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.lang.ref.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.net.ssl.*;
+
+import org.scribe.model.*;
+
+/**
+ * HTTP/1.1 {@link Transport} that keeps connections alive and reuses them
+ *
+ * Every host (scheme, host and port) gets its own pool, limited to maxConnectionsPerHost connections: further
+ * requests wait for a connection to be released, for at most their connect timeout (one minute without one).
+ * Connections idle for longer than the idle timeout are closed by a shared background thread.
+ *
+ * A connection goes back to its pool as soon as its response body has been read. Bodies of up to 64KB, fixed-length
+ * or chunked, are read before the {@link Response} is returned, so their connection is released even if nobody reads
+ * them. Longer bodies stream from the connection: read them or call {@link Response#close()}, which drains what is
+ * left. The connection of a streamed body that is dropped unread is closed and released once the body is garbage
+ * collected.
+ *
+ * Connects directly, without proxies. The certificate of an HTTPS host is checked against its name with the
+ * standard HTTPS rules of the TLS provider, or with the {@link HostnameVerifier} given.
+ */
+public class PooledTransport implements Transport
+{
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+  private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 1000;
+  private static final int BUFFERED_BODY_LIMIT = 64 * 1024;
+  private static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 60 * 1000;
+  // how often a request waiting for a connection looks for abandoned ones
+  private static final long RECLAIM_INTERVAL_MILLIS = 1000;
+  private static final String HTTP = "http";
+  private static final String HTTPS = "https";
+
+  private static volatile ScheduledExecutorService evictor;
+
+  private final int maxConnectionsPerHost;
+  private final long idleTimeoutMillis;
+  private final SSLSocketFactory sslSocketFactory;
+  private final HostnameVerifier hostnameVerifier;
+  private final ConcurrentHashMap<String, HostPool> pools = new ConcurrentHashMap<String, HostPool>();
+  private final AtomicLong newConnections = new AtomicLong();
+  private final AtomicLong reusedConnections = new AtomicLong();
+  private final AtomicLong evictedConnections = new AtomicLong();
+  private final AtomicLong reclaimedConnections = new AtomicLong();
+  private final ReferenceQueue<InputStream> abandonedBodies = new ReferenceQueue<InputStream>();
+  private final ScheduledFuture<?> eviction;
+  private volatile boolean shutdown;
+
+  /**
+   * Default constructor. Up to 8 connections per host, closed after 30 seconds idle.
+   */
+  public PooledTransport()
+  {
+    this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Creates a transport with custom limits
+   *
+   * @param maxConnectionsPerHost maximum number of open connections to a single host
+   * @param idleTimeout how long an unused connection stays open
+   * @param unit unit of the idle timeout
+   */
+  public PooledTransport(int maxConnectionsPerHost, long idleTimeout, TimeUnit unit)
+  {
+    this(maxConnectionsPerHost, idleTimeout, unit, (SSLSocketFactory) SSLSocketFactory.getDefault(), null);
+  }
+
+  /**
+   * Creates a transport with custom limits and TLS settings
+   *
+   * @param maxConnectionsPerHost maximum number of open connections to a single host
+   * @param idleTimeout how long an unused connection stays open
+   * @param unit unit of the idle timeout
+   * @param sslSocketFactory creates the TLS layer of https connections
+   * @param hostnameVerifier checks that the certificate of an https host matches its name, or null for the standard
+   *          HTTPS check
+   */
+  public PooledTransport(int maxConnectionsPerHost, long idleTimeout, TimeUnit unit, SSLSocketFactory sslSocketFactory,
+      HostnameVerifier hostnameVerifier)
+  {
+    if (maxConnectionsPerHost <= 0 || idleTimeout <= 0)
+    {
+      throw new IllegalArgumentException("Connection limit and idle timeout must be greater than zero");
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+    this.sslSocketFactory = sslSocketFactory;
+    this.hostnameVerifier = hostnameVerifier;
+    long period = Math.max(idleTimeoutMillis / 2, 1);
+    this.eviction = getEvictor().scheduleWithFixedDelay(new Eviction(this), period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Response send(Request request) throws IOException
+  {
+    if (shutdown)
+    {
+      throw new IOException("Transport has been shut down");
+    }
+    URL url = new URL(request.getUrl());
+    String scheme = url.getProtocol().toLowerCase(Locale.US);
+    if (!HTTP.equals(scheme) && !HTTPS.equals(scheme))
+    {
+      throw new IOException("Unsupported protocol: " + scheme);
+    }
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    HostPool pool = poolFor(scheme, url.getHost(), port);
+    RequestBody body = Http1.bodyOf(request);
+    byte[] head = Http1.renderHead(request, url, port, body, false);
+    int connectTimeout = request.getConnectTimeout() != null ? request.getConnectTimeout() : 0;
+    int readTimeout = request.getReadTimeout() != null ? request.getReadTimeout() : 0;
+
+    while (true)
+    {
+      PooledConnection connection = pool.acquire(connectTimeout);
+      boolean responding = false;
+      try
+      {
+        connection.setReadTimeout(readTimeout);
+        OutputStream out = connection.getOutputStream();
+        out.write(head);
+        if (body != null)
+        {
+          Http1.writeBody(body, out);
+        }
+        out.flush();
+        String statusLine = Http1.readLine(connection.getInputStream());
+        if (statusLine == null)
+        {
+          throw new EOFException("Connection closed before the response");
+        }
+        responding = true;
+        return readResponse(connection, request, statusLine);
+      }
+      catch (IOException e)
+      {
+        connection.release(false);
+        // the server may have closed a kept-alive connection meanwhile: if it never answered, try another connection
+        if (responding || !connection.isReused() || e instanceof SocketTimeoutException
+            || (body != null && !body.isRepeatable()))
+        {
+          throw e;
+        }
+      }
+      catch (RuntimeException e)
+      {
+        connection.release(false);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Returns how many connections were opened
+   *
+   * @return new connection count
+   */
+  public long getNewConnectionCount()
+  {
+    return newConnections.get();
+  }
+
+  /**
+   * Returns how many requests were sent on an already open connection
+   *
+   * @return reused connection count
+   */
+  public long getReusedConnectionCount()
+  {
+    return reusedConnections.get();
+  }
+
+  /**
+   * Returns how many idle connections were closed because they were unused for too long
+   *
+   * @return evicted connection count
+   */
+  public long getEvictedConnectionCount()
+  {
+    return evictedConnections.get();
+  }
+
+  /**
+   * Returns how many connections were closed because their response body was dropped without being read or closed
+   *
+   * @return reclaimed connection count
+   */
+  public long getReclaimedConnectionCount()
+  {
+    return reclaimedConnections.get();
+  }
+
+  /**
+   * Returns the number of open connections waiting in the pools
+   *
+   * @return idle connection count
+   */
+  public int getIdleConnectionCount()
+  {
+    int idle = 0;
+    for (HostPool pool : pools.values())
+    {
+      idle += pool.idleCount();
+    }
+    return idle;
+  }
+
+  /**
+   * Closes the connections that have been idle for longer than the idle timeout. Called periodically in the
+   * background.
+   */
+  public void closeIdleConnections()
+  {
+    reclaimAbandonedConnections();
+    long deadline = System.currentTimeMillis() - idleTimeoutMillis;
+    for (HostPool pool : pools.values())
+    {
+      pool.evictIdleSince(deadline);
+    }
+  }
+
+  /**
+   * Closes every idle connection and stops accepting requests. Connections in use are closed when released.
+   */
+  public void shutdown()
+  {
+    shutdown = true;
+    eviction.cancel(false);
+    for (HostPool pool : pools.values())
+    {
+      pool.evictIdleSince(Long.MAX_VALUE);
+    }
+  }
+
+  private void reclaimAbandonedConnections()
+  {
+    Reference<? extends InputStream> reference;
+    while ((reference = abandonedBodies.poll()) != null)
+    {
+      if (((PooledConnection.BodyReference) reference).connection.reclaim(reference))
+      {
+        reclaimedConnections.incrementAndGet();
+      }
+    }
+  }
+
+  private HostPool poolFor(String scheme, String host, int port)
+  {
+    String key = scheme + "://" + host + ":" + port;
+    HostPool pool = pools.get(key);
+    if (pool == null)
+    {
+      HostPool created = new HostPool(scheme, host, port);
+      pool = pools.putIfAbsent(key, created);
+      if (pool == null)
+      {
+        pool = created;
+      }
+    }
+    return pool;
+  }
+
+  private Response readResponse(PooledConnection connection, Request request, String statusLine) throws IOException
+  {
+    InputStream in = connection.getInputStream();
+    int code = Http1.parseCode(statusLine);
+    List<ParamInfo> headers = Http1.readHeaders(in);
+    // informational responses are followed by the real one
+    while (Http1.isInformational(code))
+    {
+      statusLine = Http1.readLine(in);
+      if (statusLine == null)
+      {
+        throw new EOFException("Connection closed before the response");
+      }
+      code = Http1.parseCode(statusLine);
+      headers = Http1.readHeaders(in);
+    }
+
+    Http1.Framing framing = new Http1.Framing(statusLine, headers);
+    InputStream body;
+    if (Http1.hasNoBody(code))
+    {
+      connection.release(framing.keepAlive);
+      body = new ByteArrayInputStream(new byte[0]);
+    }
+    else if (framing.chunked)
+    {
+      body = prefetch(ResponseBodyStream.chunked(in, connection, framing.keepAlive), connection);
+    }
+    else if (framing.contentLength >= 0 && framing.contentLength <= BUFFERED_BODY_LIMIT)
+    {
+      byte[] bytes = new byte[(int) framing.contentLength];
+      int offset = 0;
+      while (offset < bytes.length)
+      {
+        int read = in.read(bytes, offset, bytes.length - offset);
+        if (read < 0)
+        {
+          throw new EOFException("Connection closed before the end of the response body");
+        }
+        offset += read;
+      }
+      connection.release(framing.keepAlive);
+      body = new ByteArrayInputStream(bytes);
+    }
+    else if (framing.contentLength >= 0)
+    {
+      body = ResponseBodyStream.fixedLength(in, connection, framing.contentLength, framing.keepAlive);
+      connection.watch(body, abandonedBodies);
+    }
+    else
+    {
+      body = ResponseBodyStream.untilClose(in, connection);
+      connection.watch(body, abandonedBodies);
+    }
+    return new Response(code, headers, body);
+  }
+
+  /*
+   * Reads a chunked body if it ends within the buffered body limit, which releases the connection. Otherwise the part
+   * read is followed by the rest of the stream, and the connection is watched like other streamed bodies.
+   */
+  private InputStream prefetch(ResponseBodyStream stream, PooledConnection connection) throws IOException
+  {
+    ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    while (prefix.size() <= BUFFERED_BODY_LIMIT)
+    {
+      int read = stream.read(buffer, 0, buffer.length);
+      if (read < 0)
+      {
+        return new ByteArrayInputStream(prefix.toByteArray());
+      }
+      prefix.write(buffer, 0, read);
+    }
+    InputStream body = new SequenceInputStream(new ByteArrayInputStream(prefix.toByteArray()), stream);
+    connection.watch(body, abandonedBodies);
+    return body;
+  }
+
+  private Socket connect(String scheme, String host, int port, int connectTimeout) throws IOException
+  {
+    Socket socket = new Socket();
+    try
+    {
+      socket.setTcpNoDelay(true);
+      socket.connect(new InetSocketAddress(host, port), connectTimeout);
+      if (!HTTPS.equals(scheme))
+      {
+        return socket;
+      }
+      SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+      HostnameVerifier verifier = hostnameVerifier != null ? hostnameVerifier : EndpointIdentification.enable(sslSocket);
+      sslSocket.startHandshake();
+      if (verifier != null && !verifier.verify(host, sslSocket.getSession()))
+      {
+        sslSocket.close();
+        throw new SSLPeerUnverifiedException("Certificate does not match host name " + host);
+      }
+      return sslSocket;
+    }
+    catch (IOException e)
+    {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private static ScheduledExecutorService getEvictor()
+  {
+    if (evictor == null)
+    {
+      synchronized (PooledTransport.class)
+      {
+        if (evictor == null)
+        {
+          evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+          {
+            public Thread newThread(Runnable runnable)
+            {
+              Thread thread = new Thread(runnable, "scribe-pool-evictor");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+        }
+      }
+    }
+    return evictor;
+  }
+
+  /**
+   * Only holds a weak reference, so an abandoned transport can still be collected (its task then cancels itself)
+   */
+  private static final class Eviction implements Runnable
+  {
+    private final WeakReference<PooledTransport> transport;
+
+    Eviction(PooledTransport transport)
+    {
+      this.transport = new WeakReference<PooledTransport>(transport);
+    }
+
+    public void run()
+    {
+      PooledTransport pooled = transport.get();
+      if (pooled == null)
+      {
+        throw new IllegalStateException("Transport collected, stop evicting");
+      }
+      pooled.closeIdleConnections();
+    }
+  }
+
+  /**
+   * Connections to a single host: at most maxConnectionsPerHost at once, idle ones reused most recent first
+   */
+  final class HostPool
+  {
+    private final String scheme;
+    private final String host;
+    private final int port;
+    private final Semaphore permits = new Semaphore(maxConnectionsPerHost);
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<PooledConnection>();
+    // keeps leased connections, and so the references watching their bodies, reachable
+    private final Set<PooledConnection> leased = Collections.newSetFromMap(new ConcurrentHashMap<PooledConnection, Boolean>());
+
+    HostPool(String scheme, String host, int port)
+    {
+      this.scheme = scheme;
+      this.host = host;
+      this.port = port;
+    }
+
+    PooledConnection acquire(int connectTimeout) throws IOException
+    {
+      long deadline = System.currentTimeMillis() + (connectTimeout > 0 ? connectTimeout : DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+      try
+      {
+        while (true)
+        {
+          reclaimAbandonedConnections();
+          long remaining = deadline - System.currentTimeMillis();
+          if (permits.tryAcquire(Math.max(Math.min(remaining, RECLAIM_INTERVAL_MILLIS), 0), TimeUnit.MILLISECONDS))
+          {
+            break;
+          }
+          if (remaining <= RECLAIM_INTERVAL_MILLIS)
+          {
+            throw new SocketTimeoutException("Timed out waiting for a connection to " + host + ":" + port);
+          }
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a connection to " + host + ":" + port);
+      }
+      PooledConnection connection = pollIdle();
+      if (connection != null)
+      {
+        connection.lease();
+        leased.add(connection);
+        connection.markReused();
+        reusedConnections.incrementAndGet();
+        return connection;
+      }
+      try
+      {
+        connection = new PooledConnection(connect(scheme, host, port, connectTimeout), this);
+      }
+      catch (IOException e)
+      {
+        permits.release();
+        throw e;
+      }
+      catch (RuntimeException e)
+      {
+        permits.release();
+        throw e;
+      }
+      connection.lease();
+      leased.add(connection);
+      newConnections.incrementAndGet();
+      return connection;
+    }
+
+    void release(PooledConnection connection, boolean reusable)
+    {
+      leased.remove(connection);
+      if (reusable && !shutdown)
+      {
+        synchronized (idle)
+        {
+          idle.addFirst(connection);
+        }
+      }
+      else
+      {
+        connection.close();
+      }
+      permits.release();
+    }
+
+    int idleCount()
+    {
+      synchronized (idle)
+      {
+        return idle.size();
+      }
+    }
+
+    void evictIdleSince(long deadline)
+    {
+      while (true)
+      {
+        PooledConnection oldest;
+        synchronized (idle)
+        {
+          oldest = idle.peekLast();
+          if (oldest == null || oldest.getLastUsed() > deadline)
+          {
+            return;
+          }
+          idle.pollLast();
+        }
+        oldest.close();
+        evictedConnections.incrementAndGet();
+      }
+    }
+
+    private PooledConnection pollIdle()
+    {
+      long deadline = System.currentTimeMillis() - idleTimeoutMillis;
+      while (true)
+      {
+        PooledConnection connection;
+        synchronized (idle)
+        {
+          connection = idle.pollFirst();
+        }
+        if (connection == null || connection.getLastUsed() > deadline)
+        {
+          return connection;
+        }
+        connection.close();
+        evictedConnections.incrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.scribe.transport;
+
+import java.io.*;
+
+/**
+ * Body of a response read from a connection: fixed length, chunked, or delimited by the end of the connection.
+ *
+ * The connection is released (back to its pool, for pooled connections) as soon as the body has been read to the end.
+ * Closing the stream early drains what is left (up to {@link #MAX_DRAIN} bytes) so the connection can still be reused;
+ * bigger leftovers close it.
+ */
+class ResponseBodyStream extends InputStream
+{
+  static final int MAX_DRAIN = 64 * 1024;
+
+  private static final long UNTIL_CLOSE = -1;
+
+  private final ConnectionReleaser connection;
+  private final InputStream in;
+  private final boolean chunked;
+  private final boolean keepAlive;
+  private long remaining;
+  private boolean firstChunk = true;
+  private boolean done;
+
+  private ResponseBodyStream(InputStream in, ConnectionReleaser connection, boolean chunked, long length, boolean keepAlive)
+  {
+    this.connection = connection;
+    this.in = in;
+    this.chunked = chunked;
+    this.remaining = chunked ? 0 : length;
+    this.keepAlive = keepAlive && length != UNTIL_CLOSE;
+  }
+
+  static ResponseBodyStream fixedLength(InputStream in, ConnectionReleaser connection, long length, boolean keepAlive)
+  {
+    return new ResponseBodyStream(in, connection, false, length, keepAlive);
+  }
+
+  static ResponseBodyStream chunked(InputStream in, ConnectionReleaser connection, boolean keepAlive)
+  {
+    return new ResponseBodyStream(in, connection, true, 0, keepAlive);
+  }
+
+  static ResponseBodyStream untilClose(InputStream in, ConnectionReleaser connection)
+  {
+    return new ResponseBodyStream(in, connection, false, UNTIL_CLOSE, false);
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    byte[] single = new byte[1];
+    int read = read(single, 0, 1);
+    return read < 0 ? -1 : single[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException
+  {
+    if (done)
+    {
+      return -1;
+    }
+    if (length == 0)
+    {
+      return 0;
+    }
+    try
+    {
+      if (chunked && remaining == 0 && !nextChunk())
+      {
+        finish(keepAlive);
+        return -1;
+      }
+      if (remaining == 0)
+      {
+        finish(keepAlive);
+        return -1;
+      }
+      int toRead = remaining == UNTIL_CLOSE ? length : (int) Math.min(length, remaining);
+      int read = in.read(buffer, offset, toRead);
+      if (read < 0)
+      {
+        finish(false);
+        if (remaining == UNTIL_CLOSE)
+        {
+          return -1;
+        }
+        throw new EOFException("Connection closed before the end of the response body");
+      }
+      if (remaining != UNTIL_CLOSE)
+      {
+        remaining -= read;
+        if (remaining == 0 && !chunked)
+        {
+          finish(keepAlive);
+        }
+      }
+      return read;
+    }
+    catch (IOException e)
+    {
+      finish(false);
+      throw e;
+    }
+  }
+
+  @Override
+  public int available() throws IOException
+  {
+    if (done || remaining == 0)
+    {
+      return 0;
+    }
+    int available = in.available();
+    return remaining == UNTIL_CLOSE ? available : (int) Math.min(available, remaining);
+  }
+
+  /**
+   * Drains the rest of the body so the connection can be reused, or closes the connection if too much is left
+   */
+  @Override
+  public void close() throws IOException
+  {
+    if (done)
+    {
+      return;
+    }
+    if (!keepAlive)
+    {
+      finish(false);
+      return;
+    }
+    byte[] buffer = new byte[4096];
+    long drained = 0;
+    while (!done && drained <= MAX_DRAIN)
+    {
+      int read = read(buffer, 0, buffer.length);
+      if (read < 0)
+      {
+        return;
+      }
+      drained += read;
+    }
+    finish(false);
+  }
+
+  private boolean nextChunk() throws IOException
+  {
+    if (!firstChunk)
+    {
+      Http1.readLine(in);
+    }
+    firstChunk = false;
+    String sizeLine = Http1.readLine(in);
+    if (sizeLine == null)
+    {
+      throw new EOFException("Connection closed before the end of the chunked response body");
+    }
+    int extension = sizeLine.indexOf(';');
+    String size = (extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim();
+    // parseLong would also take a sign, and a negative size would end up as read-until-close or a negative read
+    if (size.length() == 0 || Character.digit(size.charAt(0), 16) < 0)
+    {
+      throw new IOException("Invalid chunk size: " + sizeLine);
+    }
+    try
+    {
+      remaining = Long.parseLong(size, 16);
+    }
+    catch (NumberFormatException e)
+    {
+      throw new IOException("Invalid chunk size: " + sizeLine);
+    }
+    if (remaining == 0)
+    {
+      String trailer;
+      while ((trailer = Http1.readLine(in)) != null && trailer.length() > 0)
+      {
+        // trailers are not exposed
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private void finish(boolean reusable)
+  {
+    if (!done)
+    {
+      done = true;
+      connection.release(reusable);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package org.scribe.transport;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * {@link AsyncTransport} that keeps the blocking programming model of another transport and runs its sends on a
+ * thread of their own, typically a virtual thread
+ *
+ * Every host (scheme, host and port) has a {@link Semaphore} of maxConcurrentRequestsPerHost permits. A send holds
+ * a permit until the delegate has returned the response headers; sends over the limit wait for a permit, for at most
+ * their connect timeout. Blocking {@link #send(Request)} calls wait on the calling thread, {@link #sendAsync(Request)}
+ * waits on a thread of the {@link ExecutionMode}.
+ */
+public class ThreadPerRequestTransport implements AsyncTransport
+{
+  private final Transport delegate;
+  private final ExecutorService executor;
+  private final int maxConcurrentRequestsPerHost;
+  private final ConcurrentHashMap<String, Semaphore> permits = new ConcurrentHashMap<String, Semaphore>();
+
+  /**
+   * Creates a transport that sends through delegate, on threads of the given mode
+   *
+   * @param delegate blocking transport that sends the requests
+   * @param mode kind of threads that run asynchronous sends
+   * @param maxConcurrentRequestsPerHost maximum number of concurrent sends to a single host
+   * @throws UnsupportedOperationException if the mode is not available on this JVM
+   */
+  public ThreadPerRequestTransport(Transport delegate, ExecutionMode mode, int maxConcurrentRequestsPerHost)
+  {
+    this(delegate, mode.getExecutor(), maxConcurrentRequestsPerHost);
+  }
+
+  /**
+   * Creates a transport that sends through delegate, on threads of the given executor
+   *
+   * @param delegate blocking transport that sends the requests
+   * @param executor runs asynchronous sends
+   * @param maxConcurrentRequestsPerHost maximum number of concurrent sends to a single host
+   */
+  public ThreadPerRequestTransport(Transport delegate, ExecutorService executor, int maxConcurrentRequestsPerHost)
+  {
+    Preconditions.checkNotNull(delegate, "Delegate transport cannot be null");
+    Preconditions.checkNotNull(executor, "Executor cannot be null");
+    if (maxConcurrentRequestsPerHost <= 0)
+    {
+      throw new IllegalArgumentException("Concurrency limit must be greater than zero");
+    }
+    this.delegate = delegate;
+    this.executor = executor;
+    this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Response send(Request request) throws IOException
+  {
+    Semaphore semaphore = permitsFor(request);
+    acquire(semaphore, request.getConnectTimeout());
+    try
+    {
+      return delegate.send(request);
+    }
+    finally
+    {
+      semaphore.release();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public SettableFuture<Response> sendAsync(final Request request)
+  {
+    final SettableFuture<Response> future = new SettableFuture<Response>();
+    try
+    {
+      final Future<?> task = executor.submit(new Runnable()
+      {
+        public void run()
+        {
+          if (future.isDone())
+          {
+            return;
+          }
+          try
+          {
+            Response response = send(request);
+            if (!future.set(response))
+            {
+              response.close();
+            }
+          }
+          catch (Throwable e)
+          {
+            future.setException(e);
+          }
+        }
+      });
+      future.setCancelHandler(new Runnable()
+      {
+        public void run()
+        {
+          task.cancel(true);
+        }
+      });
+    }
+    catch (RejectedExecutionException e)
+    {
+      future.setException(new IOException("Executor refused the request", e));
+    }
+    return future;
+  }
+
+  /**
+   * Returns the number of sends in progress to the host of a url
+   *
+   * @param url any url of the host
+   * @return concurrent sends
+   * @throws MalformedURLException if the url is invalid
+   */
+  public int getConcurrentRequestCount(String url) throws MalformedURLException
+  {
+    Semaphore semaphore = permits.get(hostKey(new URL(url)));
+    return semaphore == null ? 0 : maxConcurrentRequestsPerHost - semaphore.availablePermits();
+  }
+
+  public Transport getDelegate()
+  {
+    return delegate;
+  }
+
+  public ExecutorService getExecutor()
+  {
+    return executor;
+  }
+
+  private Semaphore permitsFor(Request request) throws IOException
+  {
+    String key = hostKey(new URL(request.getUrl()));
+    Semaphore semaphore = permits.get(key);
+    if (semaphore == null)
+    {
+      Semaphore created = new Semaphore(maxConcurrentRequestsPerHost);
+      semaphore = permits.putIfAbsent(key, created);
+      if (semaphore == null)
+      {
+        semaphore = created;
+      }
+    }
+    return semaphore;
+  }
+
+  private static void acquire(Semaphore semaphore, Integer timeoutMillis) throws IOException
+  {
+    try
+    {
+      if (timeoutMillis == null || timeoutMillis.intValue() == 0)
+      {
+        semaphore.acquire();
+      }
+      else if (!semaphore.tryAcquire(timeoutMillis.intValue(), TimeUnit.MILLISECONDS))
+      {
+        throw new SocketTimeoutException("Timed out waiting for a free slot to the host");
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a free slot to the host");
+    }
+  }
+
+  private static String hostKey(URL url)
+  {
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    return url.getProtocol().toLowerCase(Locale.US) + "://" + url.getHost().toLowerCase(Locale.US) + ":" + port;
+  }
+}
@@ -0,0 +1,23 @@
+package org.scribe.transport;
+
+import java.io.*;
+
+import org.scribe.model.*;
+
+/**
+ * Sends HTTP requests. Plug a different engine into {@link Request}s directly, or into every request of a service
+ * through {@link org.scribe.builder.ServiceBuilder#transport(Transport)}.
+ *
+ * Implementations must be thread-safe: a single transport sends the requests of every thread.
+ */
+public interface Transport
+{
+  /**
+   * Sends a request and returns its response
+   *
+   * @param request request to send, with its headers and body already in place
+   * @return the response. Its body may still be streaming from the server.
+   * @throws IOException if the request could not be sent or the response could not be read
+   */
+  Response send(Request request) throws IOException;
+}
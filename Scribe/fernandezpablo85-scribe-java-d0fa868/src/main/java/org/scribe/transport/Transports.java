@@ -0,0 +1,98 @@
+package org.scribe.transport;
+
+import java.util.concurrent.*;
+
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * Helpers to send requests asynchronously through any {@link Transport}
+ */
+public final class Transports
+{
+  private static volatile ExecutorService blockingSender;
+
+  private Transports()
+  {
+  }
+
+  /**
+   * Sends a request without blocking the calling thread
+   *
+   * {@link AsyncTransport}s send it themselves. Other transports send it from a shared pool of daemon threads;
+   * cancelling the future then only closes the response when it arrives.
+   *
+   * @param transport the transport
+   * @param request the request
+   * @return future response
+   */
+  public static SettableFuture<Response> sendAsync(final Transport transport, final Request request)
+  {
+    if (transport instanceof AsyncTransport)
+    {
+      return ((AsyncTransport) transport).sendAsync(request);
+    }
+    final SettableFuture<Response> future = new SettableFuture<Response>();
+    getBlockingSender().execute(new Runnable()
+    {
+      public void run()
+      {
+        if (future.isDone())
+        {
+          return;
+        }
+        try
+        {
+          Response response = transport.send(request);
+          if (!future.set(response))
+          {
+            response.close();
+          }
+        }
+        catch (Throwable e)
+        {
+          future.setException(e);
+        }
+      }
+    });
+    return future;
+  }
+
+  private static ExecutorService getBlockingSender()
+  {
+    ExecutorService sender = blockingSender;
+    if (sender == null)
+    {
+      synchronized (Transports.class)
+      {
+        sender = blockingSender;
+        if (sender == null)
+        {
+          sender = Executors.newCachedThreadPool(new DaemonThreadFactory("scribe-blocking-sender"));
+          blockingSender = sender;
+        }
+      }
+    }
+    return sender;
+  }
+
+  /**
+   * Names its threads and makes them daemons, so they never keep the JVM alive
+   */
+  static final class DaemonThreadFactory implements ThreadFactory
+  {
+    private final String name;
+
+    DaemonThreadFactory(String name)
+    {
+      this.name = name;
+    }
+
+    public Thread newThread(Runnable runnable)
+    {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
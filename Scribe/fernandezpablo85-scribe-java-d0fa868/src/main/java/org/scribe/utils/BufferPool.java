@@ -0,0 +1,89 @@
+package org.scribe.utils;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Bounded pool of reusable byte arrays, all of the same size
+ *
+ * Buffers are handed out when there is one idle, and allocated otherwise. Released buffers beyond maxPooled are left
+ * to the garbage collector, so a burst of concurrent readers never pins more than maxPooled buffers.
+ */
+public class BufferPool
+{
+  private static final BufferPool SHARED = new BufferPool(8 * 1024, 64);
+
+  private final int bufferSize;
+  private final BlockingQueue<byte[]> idle;
+  private final AtomicLong allocations = new AtomicLong();
+
+  /**
+   * Default constructor
+   *
+   * @param bufferSize length of the buffers
+   * @param maxPooled maximum number of idle buffers kept
+   */
+  public BufferPool(int bufferSize, int maxPooled)
+  {
+    if (bufferSize <= 0 || maxPooled <= 0)
+    {
+      throw new IllegalArgumentException("Buffer size and pool size must be greater than zero");
+    }
+    this.bufferSize = bufferSize;
+    this.idle = new ArrayBlockingQueue<byte[]>(maxPooled);
+  }
+
+  /**
+   * Returns the pool of 8KB scratch buffers used to read streams
+   *
+   * @return shared pool
+   */
+  public static BufferPool getShared()
+  {
+    return SHARED;
+  }
+
+  /**
+   * Takes an idle buffer, or allocates one. Its contents are undefined.
+   *
+   * @return buffer of {@link #getBufferSize()} bytes
+   */
+  public byte[] acquire()
+  {
+    byte[] buffer = idle.poll();
+    if (buffer == null)
+    {
+      allocations.incrementAndGet();
+      buffer = new byte[bufferSize];
+    }
+    return buffer;
+  }
+
+  /**
+   * Gives a buffer back. It must not be used afterwards.
+   *
+   * @param buffer buffer obtained from {@link #acquire()}
+   */
+  public void release(byte[] buffer)
+  {
+    if (buffer != null && buffer.length == bufferSize)
+    {
+      idle.offer(buffer);
+    }
+  }
+
+  public int getBufferSize()
+  {
+    return bufferSize;
+  }
+
+  public int getIdleCount()
+  {
+    return idle.size();
+  }
+
+  public long getAllocationCount()
+  {
+    return allocations.get();
+  }
+}
@@ -0,0 +1,67 @@
+package org.scribe.utils;
+
+import java.io.*;
+
+/**
+ * Stream that counts the bytes read (and skipped) through it
+ */
+public class CountingInputStream extends FilterInputStream
+{
+  private volatile long count;
+
+  /**
+   * Default constructor
+   *
+   * @param in stream to count
+   */
+  public CountingInputStream(InputStream in)
+  {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException
+  {
+    int b = in.read();
+    if (b >= 0)
+    {
+      count++;
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException
+  {
+    int read = in.read(buffer, offset, length);
+    if (read > 0)
+    {
+      count += read;
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException
+  {
+    long skipped = in.skip(n);
+    count += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported()
+  {
+    return false;
+  }
+
+  /**
+   * Returns the number of bytes read so far
+   *
+   * @return byte count
+   */
+  public long getCount()
+  {
+    return count;
+  }
+}
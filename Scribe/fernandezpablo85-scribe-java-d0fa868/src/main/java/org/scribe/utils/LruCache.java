@@ -0,0 +1,200 @@
+package org.scribe.utils;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Size-bounded, thread-safe LRU cache.
+ *
+ * Entries are spread over independently locked segments, so concurrent readers of different keys rarely contend.
+ * Each segment evicts its least recently used entry when it runs out of room.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V>
+{
+  private static final int MAX_SEGMENTS = 16;
+
+  private final Segment<K, V>[] segments;
+  private final int maxSize;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Default constructor
+   *
+   * @param maxSize maximum number of entries kept in the cache
+   */
+  public LruCache(int maxSize)
+  {
+    if (maxSize <= 0)
+    {
+      throw new IllegalArgumentException("Cache size must be greater than zero");
+    }
+    int count = Math.min(MAX_SEGMENTS, maxSize);
+    this.maxSize = maxSize;
+    this.segments = newSegments(count);
+    for (int i = 0; i < count; i++)
+    {
+      // the first segments take the remainder, so that the capacities add up to exactly maxSize
+      segments[i] = new Segment<K, V>(this, maxSize / count + (i < maxSize % count ? 1 : 0));
+    }
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static <K, V> Segment<K, V>[] newSegments(int count)
+  {
+    return new Segment[count];
+  }
+
+  /**
+   * Returns the cached value, or null if there is none
+   *
+   * @param key cache key
+   * @return cached value or null
+   */
+  public V get(K key)
+  {
+    Segment<K, V> segment = segmentFor(key);
+    V value;
+    synchronized (segment)
+    {
+      value = segment.get(key);
+    }
+    (value != null ? hits : misses).incrementAndGet();
+    return value;
+  }
+
+  /**
+   * Caches a value, evicting the least recently used entry of its segment if needed
+   *
+   * @param key cache key
+   * @param value value to cache
+   * @return the value previously cached for this key, or null
+   */
+  public V put(K key, V value)
+  {
+    Preconditions.checkNotNull(value, "Cannot cache a null value");
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment)
+    {
+      return segment.put(key, value);
+    }
+  }
+
+  /**
+   * Removes a value from the cache
+   *
+   * @param key cache key
+   * @return the removed value or null
+   */
+  public V remove(K key)
+  {
+    Segment<K, V> segment = segmentFor(key);
+    synchronized (segment)
+    {
+      return segment.remove(key);
+    }
+  }
+
+  /**
+   * Removes every entry. Counters are kept.
+   */
+  public void clear()
+  {
+    for (Segment<K, V> segment : segments)
+    {
+      synchronized (segment)
+      {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cached entries
+   *
+   * @return size
+   */
+  public int size()
+  {
+    int size = 0;
+    for (Segment<K, V> segment : segments)
+    {
+      synchronized (segment)
+      {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public int getMaxSize()
+  {
+    return maxSize;
+  }
+
+  public long getHitCount()
+  {
+    return hits.get();
+  }
+
+  public long getMissCount()
+  {
+    return misses.get();
+  }
+
+  public long getEvictionCount()
+  {
+    return evictions.get();
+  }
+
+  /**
+   * Called (while holding the segment lock) every time an entry is evicted to make room for a new one.
+   *
+   * Does nothing by default.
+   *
+   * @param key evicted key
+   * @param value evicted value
+   */
+  protected void onEviction(K key, V value)
+  {
+  }
+
+  private Segment<K, V> segmentFor(K key)
+  {
+    Preconditions.checkNotNull(key, "Cache keys cannot be null");
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[(hash & 0x7fffffff) % segments.length];
+  }
+
+  private static final class Segment<K, V> extends LinkedHashMap<K, V>
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final LruCache<K, V> cache;
+    private final int capacity;
+
+    Segment(LruCache<K, V> cache, int capacity)
+    {
+      super(16, 0.75f, true);
+      this.cache = cache;
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+    {
+      if (size() > capacity)
+      {
+        cache.evictions.incrementAndGet();
+        cache.onEviction(eldest.getKey(), eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+  }
+}
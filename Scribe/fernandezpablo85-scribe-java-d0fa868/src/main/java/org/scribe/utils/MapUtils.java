@@ -11,39 +11,84 @@ import org.scribe.model.ParamInfo;
  */
 public class MapUtils {
 
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
     /**
-     * Sorts a Map
+     * Sorts a list of parameters by encoded key and then by encoded value, as required by section 9.1.1 of the OAuth
+     * 1.0a spec.
+     * 
+     * Neither the list nor its parameters are modified, and the sort is stable.
      * 
-     * @param map unsorted map
-     * @return sorted map
+     * @param map unsorted parameters
+     * @return a new list with the same parameters, sorted
      */
     public static final List<ParamInfo> sort(List<ParamInfo> map) {
         Preconditions.checkNotNull(map, "Cannot sort a null object.");
 
-        List<ParamInfo> sorted = new ArrayList<ParamInfo>();
-        List<String> keys = new ArrayList<String>();
-        for (ParamInfo paramInfo : map) {
-            keys.add(paramInfo.getKey());
+        int size = map.size();
+        ParamInfo[] params = map.toArray(new ParamInfo[size]);
+        String[] keys = new String[size];
+        String[] values = new String[size];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = URLUtils.percentEncode(params[i].getKey());
+            values[i] = URLUtils.percentEncode(params[i].getValue());
+            order[i] = i;
         }
-        keys = getSortedKeys(keys);
-
-        for (String key : keys) {
-            for (ParamInfo paramInfo : map) {
-                if (key.equals(paramInfo.getKey()) && (paramInfo.getIsUsed() == false)) {
-                    sorted.add(paramInfo);
-                    paramInfo.setIsUsed(true);
-                }
-            }
+        sortIndexes(order, keys, values);
+
+        List<ParamInfo> sorted = new ArrayList<ParamInfo>(size);
+        for (int index : order) {
+            sorted.add(params[index]);
         }
-        //    for (String key : getSortedKeys(map))
-        //    {
-        //      sorted.put(key, map.get(key));
-        //    }
         return sorted;
     }
 
-    private static List<String> getSortedKeys(List<String> map) {
-        Collections.sort(map);
-        return map;
+    /*
+     * Stable merge sort over an index array, so the parameters themselves are never moved around
+     */
+    private static void sortIndexes(int[] order, String[] keys, String[] values) {
+        int[] scratch = new int[order.length];
+        mergeSort(order, scratch, 0, order.length, keys, values);
+    }
+
+    private static void mergeSort(int[] order, int[] scratch, int from, int to, String[] keys, String[] values) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(order, from, to, keys, values);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, scratch, from, middle, keys, values);
+        mergeSort(order, scratch, middle, to, keys, values);
+        if (compare(order[middle - 1], order[middle], keys, values) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(scratch[left], scratch[right], keys, values) <= 0)) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    private static void insertionSort(int[] order, int from, int to, String[] keys, String[] values) {
+        for (int i = from + 1; i < to; i++) {
+            int current = order[i];
+            int j = i - 1;
+            while (j >= from && compare(order[j], current, keys, values) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+
+    private static int compare(int one, int other, String[] keys, String[] values) {
+        int byKey = keys[one].compareTo(keys[other]);
+        return byKey != 0 ? byKey : values[one].compareTo(values[other]);
     }
 }
@@ -0,0 +1,196 @@
+package org.scribe.utils;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * {@link Future} completed by whoever holds it, with completion listeners
+ *
+ * Listeners run once, on the executor they were added with, after the future completes, fails or is cancelled.
+ * Listeners added to a future that is already done run right away. A cancel handler can be set to abort the work
+ * behind the future when {@link #cancel(boolean)} is called.
+ *
+ * @param <V> result type
+ */
+public class SettableFuture<V> implements Future<V>
+{
+  private static final Executor DIRECT = new Executor()
+  {
+    public void execute(Runnable command)
+    {
+      command.run();
+    }
+  };
+
+  private final CountDownLatch done = new CountDownLatch(1);
+  private List<Runnable> listeners = new ArrayList<Runnable>(2);
+  private V value;
+  private Throwable failure;
+  private boolean cancelled;
+  private volatile Runnable cancelHandler;
+
+  /**
+   * Returns an executor that runs tasks on the calling thread
+   *
+   * @return direct executor
+   */
+  public static Executor directExecutor()
+  {
+    return DIRECT;
+  }
+
+  /**
+   * Completes the future with a value
+   *
+   * @param value the result
+   * @return false if the future was already done
+   */
+  public boolean set(V value)
+  {
+    return complete(value, null, false);
+  }
+
+  /**
+   * Completes the future with a failure
+   *
+   * @param failure the cause, reported by {@link #get()} in an {@link ExecutionException}
+   * @return false if the future was already done
+   */
+  public boolean setException(Throwable failure)
+  {
+    Preconditions.checkNotNull(failure, "Failure cannot be null");
+    return complete(null, failure, false);
+  }
+
+  /**
+   * Sets the task run when the future is cancelled. Runs it right away if the future has been cancelled already.
+   *
+   * @param cancelHandler aborts the work behind the future
+   */
+  public void setCancelHandler(Runnable cancelHandler)
+  {
+    this.cancelHandler = cancelHandler;
+    if (isCancelled())
+    {
+      cancelHandler.run();
+    }
+  }
+
+  /**
+   * Runs a listener on the given executor once the future is done
+   *
+   * @param listener the listener
+   * @param executor where the listener runs
+   */
+  public void addListener(final Runnable listener, final Executor executor)
+  {
+    Preconditions.checkNotNull(listener, "Listener cannot be null");
+    Preconditions.checkNotNull(executor, "Executor cannot be null");
+    Runnable task = new Runnable()
+    {
+      public void run()
+      {
+        executor.execute(listener);
+      }
+    };
+    synchronized (this)
+    {
+      if (listeners != null)
+      {
+        listeners.add(task);
+        return;
+      }
+    }
+    task.run();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean cancel(boolean mayInterruptIfRunning)
+  {
+    if (!complete(null, new CancellationException("Future was cancelled"), true))
+    {
+      return false;
+    }
+    Runnable handler = cancelHandler;
+    if (handler != null)
+    {
+      handler.run();
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public synchronized boolean isCancelled()
+  {
+    return cancelled;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isDone()
+  {
+    return done.getCount() == 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public V get() throws InterruptedException, ExecutionException
+  {
+    done.await();
+    return result();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+  {
+    if (!done.await(timeout, unit))
+    {
+      throw new TimeoutException("Future not done after " + timeout + " " + unit.name().toLowerCase(Locale.US));
+    }
+    return result();
+  }
+
+  private synchronized V result() throws ExecutionException
+  {
+    if (cancelled)
+    {
+      throw (CancellationException) failure;
+    }
+    if (failure != null)
+    {
+      throw new ExecutionException(failure);
+    }
+    return value;
+  }
+
+  private boolean complete(V value, Throwable failure, boolean cancelled)
+  {
+    List<Runnable> toRun;
+    synchronized (this)
+    {
+      if (listeners == null)
+      {
+        return false;
+      }
+      this.value = value;
+      this.failure = failure;
+      this.cancelled = cancelled;
+      toRun = listeners;
+      listeners = null;
+    }
+    done.countDown();
+    for (Runnable listener : toRun)
+    {
+      listener.run();
+    }
+    return true;
+  }
+}
@@ -1,42 +1,183 @@
 package org.scribe.utils;
 
 import java.io.*;
+import java.nio.charset.*;
 
 /**
  * Utils to deal with Streams.
- *  
+ *
+ * Streams are read as bytes and decoded once at the end. Bodies of a known length are read straight into an array of
+ * that length; the others through scratch buffers of the shared {@link BufferPool}.
+ *
  * @author Pablo Fernandez
  */
 public class StreamUtils
 {
+  /**
+   * Length of streams of unknown length
+   */
+  public static final long UNKNOWN_LENGTH = -1;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+  // larger Content-Length values are not trusted to size an array up front
+  private static final int MAX_PRESIZED_LENGTH = 16 * 1024 * 1024;
+
   /**
    * Returns the stream contents as an UTF-8 encoded string
-   * 
+   *
    * @param is input stream
    * @return string contents
    */
   public static String getStreamContents(InputStream is)
+  {
+    return getStreamContents(is, UNKNOWN_LENGTH);
+  }
+
+  /**
+   * Returns the stream contents as an UTF-8 encoded string
+   *
+   * @param is input stream
+   * @param expectedLength number of bytes announced for the stream (its Content-Length), or {@link #UNKNOWN_LENGTH}
+   * @return string contents
+   */
+  public static String getStreamContents(InputStream is, long expectedLength)
   {
     Preconditions.checkNotNull(is, "Cannot get String from a null object");
+    BufferPool pool = BufferPool.getShared();
+    byte[] scratch = pool.acquire();
+    try
+    {
+      Bytes bytes = read(is, expectedLength, scratch);
+      return new String(bytes.array, 0, bytes.length, UTF8);
+    }
+    catch (IOException ioe)
+    {
+      throw new RuntimeException("Error while reading response body", ioe);
+    }
+    finally
+    {
+      pool.release(scratch);
+    }
+  }
+
+  /**
+   * Returns the stream contents as they are
+   *
+   * @param is input stream
+   * @param expectedLength number of bytes announced for the stream (its Content-Length), or {@link #UNKNOWN_LENGTH}
+   * @return contents
+   */
+  public static byte[] getStreamBytes(InputStream is, long expectedLength)
+  {
+    Preconditions.checkNotNull(is, "Cannot get bytes from a null object");
+    BufferPool pool = BufferPool.getShared();
+    byte[] scratch = pool.acquire();
     try
     {
-      final char[] buffer = new char[0x10000];
-      StringBuilder out = new StringBuilder();
-      Reader in = new InputStreamReader(is, "UTF-8");
-      int read;
-      do
+      Bytes bytes = read(is, expectedLength, scratch);
+      if (bytes.array != scratch && bytes.array.length == bytes.length)
       {
-        read = in.read(buffer, 0, buffer.length);
-        if (read > 0)
+        return bytes.array;
+      }
+      byte[] copy = new byte[bytes.length];
+      System.arraycopy(bytes.array, 0, copy, 0, bytes.length);
+      return copy;
+    }
+    catch (IOException ioe)
+    {
+      throw new RuntimeException("Error while reading response body", ioe);
+    }
+    finally
+    {
+      pool.release(scratch);
+    }
+  }
+
+  /*
+   * Reads and closes the stream. Bodies of the expected length land in an array of that length, short bodies of
+   * unknown length stay in the scratch buffer, and the others in a growing array.
+   */
+  private static Bytes read(InputStream is, long expectedLength, byte[] scratch) throws IOException
+  {
+    try
+    {
+      GrowingBuffer out = null;
+      if (expectedLength >= 0 && expectedLength <= MAX_PRESIZED_LENGTH)
+      {
+        byte[] bytes = new byte[(int) expectedLength];
+        int length = fill(is, bytes);
+        int next = length < bytes.length ? -1 : is.read();
+        if (next < 0)
         {
-          out.append(buffer, 0, read);
+          return new Bytes(bytes, length);
         }
-      } while (read >= 0);
-      in.close();
-      return out.toString();
-    } catch (IOException ioe)
+        // the stream is longer than announced
+        out = new GrowingBuffer(2 * bytes.length + scratch.length);
+        out.write(bytes);
+        out.write(next);
+      }
+      int length;
+      while ((length = fill(is, scratch)) == scratch.length)
+      {
+        if (out == null)
+        {
+          out = new GrowingBuffer(4 * scratch.length);
+        }
+        out.write(scratch);
+      }
+      if (out == null)
+      {
+        return new Bytes(scratch, length);
+      }
+      out.write(scratch, 0, length);
+      return out.toBytes();
+    }
+    finally
     {
-      throw new RuntimeException("Error while reading response body", ioe);
+      is.close();
+    }
+  }
+
+  private static int fill(InputStream is, byte[] buffer) throws IOException
+  {
+    int length = 0;
+    while (length < buffer.length)
+    {
+      int read = is.read(buffer, length, buffer.length - length);
+      if (read < 0)
+      {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+
+  private static final class Bytes
+  {
+    final byte[] array;
+    final int length;
+
+    Bytes(byte[] array, int length)
+    {
+      this.array = array;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Hands out its array instead of copying it
+   */
+  private static final class GrowingBuffer extends ByteArrayOutputStream
+  {
+    GrowingBuffer(int size)
+    {
+      super(size);
+    }
+
+    Bytes toBytes()
+    {
+      return new Bytes(buf, count);
     }
   }
 }
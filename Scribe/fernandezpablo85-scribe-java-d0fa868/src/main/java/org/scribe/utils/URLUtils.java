@@ -2,6 +2,7 @@ package org.scribe.utils;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
 import java.util.*;
 
 import org.scribe.exceptions.*;
@@ -24,14 +25,26 @@ public class URLUtils {
 
     private static final String            ERROR_MSG       = String.format("Cannot find specified encoding: %s", UTF_8);
 
-    private static final Set<EncodingRule> ENCODING_RULES;
+    private static final char[]            HEX             = "0123456789ABCDEF".toCharArray();
+
+    private static final char              PERCENT         = '%';
+
+    private static final int               MAX_ESCAPED     = 12;
+
+    private static final boolean[]         UNRESERVED      = new boolean[128];
 
     static {
-        Set<EncodingRule> rules = new HashSet<EncodingRule>();
-        rules.add(new EncodingRule("*", "%2A"));
-        rules.add(new EncodingRule("+", "%20"));
-        rules.add(new EncodingRule("%7E", "~"));
-        ENCODING_RULES = Collections.unmodifiableSet(rules);
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+            UNRESERVED[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
     }
 
     /**
@@ -46,35 +59,159 @@ public class URLUtils {
     }
 
     private static String doFormUrlEncode(List<ParamInfo> map) {
-        StringBuffer encodedString = new StringBuffer(map.size() * 20);
+        StringBuilder encodedString = new StringBuilder(map.size() * 20);
         for (ParamInfo paramInfo : map) {
             if (encodedString.length() > 0) {
                 encodedString.append(PARAM_SEPARATOR);
             }
-            encodedString.append(percentEncode(paramInfo.getKey())).append(PAIR_SEPARATOR).append(percentEncode(paramInfo.getValue()));
+            percentEncode(paramInfo.getKey(), encodedString).append(PAIR_SEPARATOR);
+            percentEncode(paramInfo.getValue(), encodedString);
         }
-        System.out.println("from urlutil encoded string  " + encodedString.toString());
         return encodedString.toString();
     }
 
     /**
-     * Percent encodes a string
+     * Percent encodes a string, as defined by RFC 3986 (all but ALPHA, DIGIT, '-', '.', '_' and '~' is escaped)
+     * 
+     * Strings that need no escaping are returned as they are.
      * 
-     * @param plain
+     * @param string plain string
      * @return percent encoded string
      */
     public static String percentEncode(String string) {
         Preconditions.checkNotNull(string, "Cannot encode null string");
-        try {
-            String encoded = URLEncoder.encode(string, UTF_8);
-            for (EncodingRule rule : ENCODING_RULES) {
-                encoded = rule.apply(encoded);
+        int length = string.length();
+        int plain = 0;
+        while (plain < length && isUnreserved(string.charAt(plain))) {
+            plain++;
+        }
+        if (plain == length) {
+            return string;
+        }
+        StringBuilder encoded = new StringBuilder(length + 16);
+        encoded.append(string, 0, plain);
+        return doPercentEncode(string, plain, encoded).toString();
+    }
+
+    /**
+     * Percent encodes a string, appending the result to a {@link StringBuilder}
+     * 
+     * @param string plain string
+     * @param builder where to append the encoded string
+     * @return the same builder, for chaining
+     */
+    public static StringBuilder percentEncode(String string, StringBuilder builder) {
+        Preconditions.checkNotNull(string, "Cannot encode null string");
+        Preconditions.checkNotNull(builder, "Cannot encode into a null builder");
+        return doPercentEncode(string, 0, builder);
+    }
+
+    /**
+     * Percent encodes a string into a char array.
+     * 
+     * Use {@link #percentEncodedLength(String)} to find out how much room is needed.
+     * 
+     * @param string plain string
+     * @param buffer destination array
+     * @param offset position of the first char to write
+     * @return position right after the last char written
+     * @throws IndexOutOfBoundsException if the encoded string does not fit
+     */
+    public static int percentEncode(String string, char[] buffer, int offset) {
+        Preconditions.checkNotNull(string, "Cannot encode null string");
+        Preconditions.checkNotNull(buffer, "Cannot encode into a null buffer");
+        int length = string.length();
+        int position = offset;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (isUnreserved(c)) {
+                buffer[position++] = c;
+            } else {
+                int codePoint = codePointAt(string, i);
+                position = escape(codePoint, buffer, position);
+                i += charCount(codePoint) - 1;
             }
-            return encoded;
-           // return string;
-        } catch (UnsupportedEncodingException uee) {
-            throw new OAuthException(ERROR_MSG, uee);
         }
+        return position;
+    }
+
+    /**
+     * Percent encodes a string as ASCII bytes into a {@link ByteBuffer}
+     * 
+     * @param string plain string
+     * @param buffer destination buffer
+     * @return the same buffer, for chaining
+     * @throws java.nio.BufferOverflowException if the encoded string does not fit
+     */
+    public static ByteBuffer percentEncode(String string, ByteBuffer buffer) {
+        int next = percentEncode(string, 0, buffer);
+        if (next < string.length()) {
+            throw new BufferOverflowException();
+        }
+        return buffer;
+    }
+
+    /**
+     * Percent encodes as much of a string as fits into a {@link ByteBuffer}, starting at a given char.
+     * 
+     * Never splits the escape sequence of a single character, so encoding can be resumed from the returned index
+     * once the buffer has been drained.
+     * 
+     * @param string plain string
+     * @param from index of the first char to encode
+     * @param buffer destination buffer
+     * @return index of the first char that was not encoded (string.length() when done)
+     */
+    public static int percentEncode(String string, int from, ByteBuffer buffer) {
+        Preconditions.checkNotNull(string, "Cannot encode null string");
+        Preconditions.checkNotNull(buffer, "Cannot encode into a null buffer");
+        char[] escaped = null;
+        int length = string.length();
+        int i = from;
+        while (i < length && buffer.hasRemaining()) {
+            char c = string.charAt(i);
+            if (isUnreserved(c)) {
+                buffer.put((byte) c);
+                i++;
+            } else {
+                if (escaped == null) {
+                    escaped = new char[MAX_ESCAPED];
+                }
+                int codePoint = codePointAt(string, i);
+                int count = escape(codePoint, escaped, 0);
+                if (buffer.remaining() < count) {
+                    break;
+                }
+                for (int j = 0; j < count; j++) {
+                    buffer.put((byte) escaped[j]);
+                }
+                i += charCount(codePoint);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns the length the string will have once percent encoded
+     * 
+     * @param string plain string
+     * @return encoded length
+     */
+    public static int percentEncodedLength(String string) {
+        Preconditions.checkNotNull(string, "Cannot encode null string");
+        int length = string.length();
+        int encoded = 0;
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (isUnreserved(c)) {
+                encoded++;
+            } else {
+                int codePoint = codePointAt(string, i);
+                encoded += 3 * utf8Length(codePoint);
+                i += charCount(codePoint) - 1;
+            }
+        }
+        return encoded;
     }
 
     /**
@@ -92,19 +229,70 @@ public class URLUtils {
         }
     }
 
-    private static final class EncodingRule {
+    private static StringBuilder doPercentEncode(String string, int from, StringBuilder builder) {
+        char[] escaped = null;
+        int length = string.length();
+        for (int i = from; i < length; i++) {
+            char c = string.charAt(i);
+            if (isUnreserved(c)) {
+                builder.append(c);
+            } else {
+                if (escaped == null) {
+                    escaped = new char[MAX_ESCAPED];
+                }
+                int codePoint = codePointAt(string, i);
+                builder.append(escaped, 0, escape(codePoint, escaped, 0));
+                i += charCount(codePoint) - 1;
+            }
+        }
+        return builder;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return c < 128 && UNRESERVED[c];
+    }
 
-        private final String ch;
+    /*
+     * Unpaired surrogates can't be represented in UTF-8 and are encoded as '?', just like String.getBytes() does
+     */
+    private static int codePointAt(String string, int index) {
+        char c = string.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < string.length() && Character.isLowSurrogate(string.charAt(index + 1))) {
+            return Character.toCodePoint(c, string.charAt(index + 1));
+        }
+        return (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) ? '?' : c;
+    }
 
-        private final String toCh;
+    private static int charCount(int codePoint) {
+        return codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT ? 2 : 1;
+    }
 
-        EncodingRule(String ch, String toCh) {
-            this.ch = ch;
-            this.toCh = toCh;
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < 0x10000) {
+            return 3;
         }
+        return 4;
+    }
 
-        String apply(String string) {
-            return string.replace(ch, toCh);
+    private static int escape(int codePoint, char[] buffer, int offset) {
+        int bytes = utf8Length(codePoint);
+        int position = offset;
+        for (int i = 0; i < bytes; i++) {
+            int shift = 6 * (bytes - 1 - i);
+            int b;
+            if (i == 0) {
+                b = (bytes == 1) ? codePoint : ((0xFF00 >> bytes) & 0xFF) | (codePoint >> shift);
+            } else {
+                b = 0x80 | ((codePoint >> shift) & 0x3F);
+            }
+            buffer[position++] = PERCENT;
+            buffer[position++] = HEX[(b >> 4) & 0xF];
+            buffer[position++] = HEX[b & 0xF];
         }
+        return position;
     }
 }
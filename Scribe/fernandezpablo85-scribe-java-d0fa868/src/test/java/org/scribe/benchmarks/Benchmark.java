@@ -0,0 +1,93 @@
+package org.scribe.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Minimal timing harness for the benchmarks in this package.
+ * 
+ * Benchmarks are plain main() programs (like the examples), so they never run as part of the test suite.
+ */
+public abstract class Benchmark
+{
+  private static final long WARMUP_NANOS = 2000L * 1000 * 1000;
+  private static final long MEASURE_NANOS = 3000L * 1000 * 1000;
+
+  /**
+   * Runs one operation of the benchmark
+   * 
+   * @throws Exception if the operation fails
+   */
+  protected abstract void operation() throws Exception;
+
+  /**
+   * Warms the operation up, then measures it and prints the average time per operation
+   * 
+   * @param name label for the printed result
+   * @return average nanoseconds per operation
+   * @throws Exception if the operation fails
+   */
+  public double run(String name) throws Exception
+  {
+    loop(WARMUP_NANOS);
+    long start = System.nanoTime();
+    long operations = loop(MEASURE_NANOS);
+    double nanosPerOperation = (double) (System.nanoTime() - start) / operations;
+    System.out.println(String.format("%-40s %,14.1f ns/op %,14.0f ops/s", name, nanosPerOperation, 1e9 / nanosPerOperation));
+    return nanosPerOperation;
+  }
+
+  /**
+   * Runs the operation on several threads at once, then prints the aggregate throughput
+   * 
+   * @param name label for the printed result
+   * @param threads number of threads running the operation
+   * @return aggregate operations per second
+   * @throws Exception if the operation fails
+   */
+  public double run(String name, int threads) throws Exception
+  {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try
+    {
+      final CyclicBarrier start = new CyclicBarrier(threads);
+      List<Future<Long>> results = new ArrayList<Future<Long>>();
+      for (int i = 0; i < threads; i++)
+      {
+        results.add(executor.submit(new Callable<Long>()
+        {
+          public Long call() throws Exception
+          {
+            loop(WARMUP_NANOS);
+            start.await();
+            return loop(MEASURE_NANOS);
+          }
+        }));
+      }
+      long operations = 0;
+      for (Future<Long> result : results)
+      {
+        operations += result.get();
+      }
+      double operationsPerSecond = operations * 1e9 / MEASURE_NANOS;
+      System.out.println(String.format("%-40s %,14.0f ops/s on %d threads", name, operationsPerSecond, threads));
+      return operationsPerSecond;
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  private long loop(long nanos) throws Exception
+  {
+    long deadline = System.nanoTime() + nanos;
+    long operations = 0;
+    do
+    {
+      operation();
+      operations++;
+    } while (System.nanoTime() < deadline);
+    return operations;
+  }
+}
@@ -0,0 +1,245 @@
+package org.scribe.benchmarks;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+import org.scribe.builder.*;
+import org.scribe.builder.api.*;
+import org.scribe.model.*;
+import org.scribe.oauth.*;
+import org.scribe.transport.*;
+
+/**
+ * Uploads a large file (1 GB by default) with signed PUT requests to a local sink, and prints throughput, the peak
+ * heap in use and the number of garbage collections for: the file read into a byte[] first, the file streamed through
+ * {@link HttpURLConnectionTransport}, and the file sent by {@link NioTransport} with transferTo.
+ *
+ * Arguments: [size in MB] [rounds]. The byte[] variant is skipped when the heap is smaller than twice the file.
+ */
+public class FileUploadBenchmark
+{
+  private static final int MB = 1024 * 1024;
+
+  public static void main(String[] args) throws Exception
+  {
+    int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    File file = createFile(sizeMb);
+    String url = startSink();
+    OAuthService service = new ServiceBuilder().provider(TwitterApi.class).apiKey("api key").apiSecret("api secret").build();
+    Token token = new Token("token", "token secret");
+    NioTransport nio = new NioTransport(4, Executors.newCachedThreadPool());
+    try
+    {
+      for (int round = 0; round < rounds; round++)
+      {
+        if (Runtime.getRuntime().maxMemory() > 2L * file.length())
+        {
+          upload("HttpURLConnection, byte[]", service, token, url, file, HttpURLConnectionTransport.getDefault(), true);
+        }
+        upload("HttpURLConnection, File", service, token, url, file, HttpURLConnectionTransport.getDefault(), false);
+        upload("NioTransport, File (transferTo)", service, token, url, file, nio, false);
+      }
+    }
+    finally
+    {
+      nio.shutdown();
+      file.delete();
+    }
+  }
+
+  private static void upload(String name, OAuthService service, Token token, String url, File file, Transport transport,
+      boolean buffered) throws Exception
+  {
+    System.gc();
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long baseline = memory.getHeapMemoryUsage().getUsed();
+    long collections = collectionCount();
+    HeapSampler sampler = new HeapSampler();
+    sampler.start();
+    long start = System.nanoTime();
+
+    OAuthRequest request = new OAuthRequest(Verb.PUT, url);
+    if (buffered)
+    {
+      byte[] bytes = new byte[(int) file.length()];
+      DataInputStream in = new DataInputStream(new FileInputStream(file));
+      in.readFully(bytes);
+      in.close();
+      request.addPayload(ByteBuffer.wrap(bytes));
+    }
+    else
+    {
+      request.addPayload(file);
+    }
+    request.setTransport(transport);
+    service.signRequest(token, request);
+    String received = request.send().getBody();
+
+    double seconds = (System.nanoTime() - start) / 1e9;
+    long peak = sampler.finish();
+    if (Long.parseLong(received) != file.length())
+    {
+      throw new IllegalStateException("Sink received " + received + " bytes");
+    }
+    System.out.println(String.format("%-34s %,8.0f MB/s   peak heap +%,6d MB   %,4d GCs", name, file.length() / seconds / MB,
+        Math.max(0, peak - baseline) / MB, collectionCount() - collections));
+  }
+
+  private static File createFile(int sizeMb) throws IOException
+  {
+    File file = File.createTempFile("scribe-upload", ".bin");
+    file.deleteOnExit();
+    byte[] block = new byte[MB];
+    for (int i = 0; i < block.length; i++)
+    {
+      block[i] = (byte) i;
+    }
+    OutputStream out = new FileOutputStream(file);
+    for (int i = 0; i < sizeMb; i++)
+    {
+      out.write(block);
+    }
+    out.close();
+    return file;
+  }
+
+  private static long collectionCount()
+  {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  /**
+   * Accepts uploads, discards their bodies and answers with the number of bytes received
+   */
+  private static String startSink() throws IOException
+  {
+    final ServerSocketChannel server = ServerSocketChannel.open();
+    server.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+    Thread acceptor = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        try
+        {
+          while (true)
+          {
+            final SocketChannel socket = server.accept();
+            Thread worker = new Thread(new Runnable()
+            {
+              public void run()
+              {
+                sink(socket);
+              }
+            }, "upload-sink");
+            worker.setDaemon(true);
+            worker.start();
+          }
+        }
+        catch (IOException e)
+        {
+          // benchmark is over
+        }
+      }
+    }, "upload-sink-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return "http://127.0.0.1:" + server.socket().getLocalPort() + "/upload";
+  }
+
+  private static void sink(SocketChannel socket)
+  {
+    try
+    {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+      StringBuilder head = new StringBuilder();
+      int headEnd;
+      while ((headEnd = head.indexOf("\r\n\r\n")) < 0)
+      {
+        buffer.clear();
+        if (socket.read(buffer) < 0)
+        {
+          return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+          head.append((char) buffer.get());
+        }
+      }
+      long received = head.length() - headEnd - 4;
+      long length = 0;
+      for (String line : head.substring(0, headEnd).split("\r\n"))
+      {
+        if (line.toLowerCase().startsWith("content-length:"))
+        {
+          length = Long.parseLong(line.substring(15).trim());
+        }
+      }
+      while (received < length)
+      {
+        buffer.clear();
+        int read = socket.read(buffer);
+        if (read < 0)
+        {
+          break;
+        }
+        received += read;
+      }
+      String body = String.valueOf(received);
+      String response = "HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\nConnection: close\r\n\r\n" + body;
+      socket.write(ByteBuffer.wrap(response.getBytes("ISO-8859-1")));
+      socket.close();
+    }
+    catch (IOException e)
+    {
+      // client went away
+    }
+  }
+
+  private static final class HeapSampler extends Thread
+  {
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private volatile boolean running = true;
+    private volatile long peak;
+
+    HeapSampler()
+    {
+      super("heap-sampler");
+      setDaemon(true);
+    }
+
+    @Override
+    public void run()
+    {
+      while (running)
+      {
+        peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+        try
+        {
+          Thread.sleep(5);
+        }
+        catch (InterruptedException e)
+        {
+          return;
+        }
+      }
+    }
+
+    long finish() throws InterruptedException
+    {
+      running = false;
+      join();
+      return Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package org.scribe.benchmarks;
+
+import java.util.*;
+
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * Measures {@link MapUtils#sort(List)} with 10, 1k and 100k parameters, a quarter of them sharing their key with
+ * others (like repeated facet parameters do).
+ */
+public class MapUtilsSortBenchmark
+{
+  private static final int[] SIZES = { 10, 1000, 100000 };
+
+  public static void main(String[] args) throws Exception
+  {
+    for (int size : SIZES)
+    {
+      final List<ParamInfo> params = createParams(size);
+      new Benchmark()
+      {
+        @Override
+        protected void operation()
+        {
+          MapUtils.sort(params);
+        }
+      }.run("sort " + size + " params");
+    }
+  }
+
+  private static List<ParamInfo> createParams(int size)
+  {
+    Random random = new Random(size);
+    List<ParamInfo> params = new ArrayList<ParamInfo>(size);
+    for (int i = 0; i < size; i++)
+    {
+      ParamInfo param = new ParamInfo();
+      param.setKey(i % 4 == 0 ? "facet" : "param" + random.nextInt(size));
+      param.setValue("value " + random.nextInt(size));
+      params.add(param);
+    }
+    return params;
+  }
+}
@@ -0,0 +1,88 @@
+package org.scribe.benchmarks;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+/**
+ * Gzips a form encoded multi-facet POST body (about 300 KB) at several compression levels, and prints the compressed
+ * size and the CPU time per body, through both the stream path of the blocking transports and the channel path of
+ * NioTransport.
+ */
+public class RequestCompressionBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    final byte[] form = URLUtils.formURLEncodeMap(facets(6000)).getBytes();
+    System.out.println(String.format("form body: %,d bytes", form.length));
+    for (final int level : new int[] { Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION })
+    {
+      final RequestBody body = RequestBody.gzip(RequestBody.of(form), level);
+      final CountingOutputStream sink = new CountingOutputStream();
+      body.writeTo(sink);
+      long compressed = sink.count;
+      String label = "level " + (level == Deflater.DEFAULT_COMPRESSION ? "default (6)" : String.valueOf(level));
+      System.out.println(String.format("%-40s %,14d bytes %13.1f %%", label, compressed, 100.0 * compressed / form.length));
+      new Benchmark()
+      {
+        @Override
+        protected void operation() throws Exception
+        {
+          body.writeTo(sink);
+        }
+      }.run("  " + label + ", stream");
+      new Benchmark()
+      {
+        private final ByteBuffer buffer = ByteBuffer.allocate(16 * 1024);
+
+        @Override
+        protected void operation() throws Exception
+        {
+          ReadableByteChannel channel = body.openChannel();
+          while (channel.read(buffer) >= 0)
+          {
+            buffer.clear();
+          }
+          channel.close();
+        }
+      }.run("  " + label + ", channel");
+    }
+  }
+
+  private static List<ParamInfo> facets(int count)
+  {
+    String[] fields = { "industry", "company_size", "seniority", "location", "school", "current_company" };
+    Random random = new Random(42);
+    List<ParamInfo> params = new ArrayList<ParamInfo>();
+    for (int i = 0; i < count; i++)
+    {
+      ParamInfo param = new ParamInfo();
+      param.setKey("facet");
+      param.setValue(fields[i % fields.length] + ",urn:li:" + fields[i % fields.length] + ":" + random.nextInt(100000));
+      params.add(param);
+    }
+    return params;
+  }
+
+  private static final class CountingOutputStream extends OutputStream
+  {
+    long count;
+
+    @Override
+    public void write(int b)
+    {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+      count += length;
+    }
+  }
+}
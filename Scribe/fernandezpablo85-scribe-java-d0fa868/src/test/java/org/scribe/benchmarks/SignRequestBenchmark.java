@@ -0,0 +1,30 @@
+package org.scribe.benchmarks;
+
+import org.scribe.builder.*;
+import org.scribe.builder.api.*;
+import org.scribe.model.*;
+import org.scribe.oauth.*;
+
+/**
+ * Measures building and signing a request end to end. Requests only open a connection when sent, so this is pure CPU.
+ */
+public class SignRequestBenchmark
+{
+  public static void main(String[] args) throws Exception
+  {
+    final OAuthService service = new ServiceBuilder().provider(TwitterApi.class).apiKey("api key").apiSecret("api secret").build();
+    final Token token = new Token("token", "token secret");
+    Benchmark benchmark = new Benchmark()
+    {
+      @Override
+      protected void operation()
+      {
+        OAuthRequest request = new OAuthRequest(Verb.POST, "http://api.example.com/1/statuses/update.json?facet=a&facet=b");
+        request.addBodyParameter("status", "signing benchmark");
+        service.signRequest(token, request);
+      }
+    };
+    benchmark.run("build and sign POST");
+    benchmark.run("build and sign POST", Runtime.getRuntime().availableProcessors());
+  }
+}
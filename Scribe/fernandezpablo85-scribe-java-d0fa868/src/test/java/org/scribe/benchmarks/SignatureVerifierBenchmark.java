@@ -0,0 +1,57 @@
+package org.scribe.benchmarks;
+
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.oauth.*;
+import org.scribe.services.*;
+
+/**
+ * Measures {@link OAuthSignatureVerifier} throughput on a signed POST with query and form parameters, on one thread
+ * and on every core.
+ */
+public class SignatureVerifierBenchmark
+{
+  private static final String URL = "http://example.com/webhook?facet=a&facet=b&page=2";
+
+  public static void main(String[] args) throws Exception
+  {
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey("api key");
+    config.setApiSecret("api secret");
+    TokenExtractorImpl tokenExtractor = new TokenExtractorImpl();
+    OAuthService service = new OAuth10aServiceImpl(new PooledHMACSha1SignatureService(), new TimestampServiceImpl(),
+        new BaseStringExtractorImpl(), new HeaderExtractorImpl(), tokenExtractor, tokenExtractor, config);
+    OAuthRequest request = new OAuthRequest(Verb.POST, URL);
+    request.addBodyParameter("event", "order.created");
+    request.addBodyParameter("payload", "{\"id\": 42, \"items\": [1, 2, 3]}");
+    service.signRequest(new Token("token", "token secret"), request);
+
+    final String header = request.getHeaders().get(0).getValue();
+    final String body = request.getBodyContents();
+    final OAuthSignatureVerifier verifier = new OAuthSignatureVerifier(new SecretProvider()
+    {
+      public String getConsumerSecret(String consumerKey)
+      {
+        return "api secret";
+      }
+
+      public String getTokenSecret(String consumerKey, String token)
+      {
+        return "token secret";
+      }
+    });
+    Benchmark benchmark = new Benchmark()
+    {
+      @Override
+      protected void operation()
+      {
+        if (!verifier.verify(Verb.POST, URL, header, body))
+        {
+          throw new IllegalStateException("Signature did not verify");
+        }
+      }
+    };
+    benchmark.run("verify signed POST");
+    benchmark.run("verify signed POST", Runtime.getRuntime().availableProcessors());
+  }
+}
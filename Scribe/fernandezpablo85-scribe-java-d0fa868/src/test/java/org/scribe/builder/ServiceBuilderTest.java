@@ -0,0 +1,160 @@
+package org.scribe.builder;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.scribe.builder.api.*;
+import org.scribe.model.*;
+import org.scribe.oauth.*;
+import org.scribe.services.*;
+import org.scribe.transport.*;
+import org.scribe.utils.*;
+
+public class ServiceBuilderTest
+{
+
+  @Test
+  public void shouldSignWithHMACSha1ByDefault()
+  {
+    OAuthService service = new ServiceBuilder().provider(TwitterApi.class).apiKey("key").apiSecret("secret").build();
+    assertEquals("HMAC-SHA1", signedMethod(service));
+  }
+
+  @Test
+  public void shouldSignWithConfiguredSignatureService() throws Exception
+  {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(1024);
+    SignatureService rsa = new RSASha1SignatureService(generator.generateKeyPair().getPrivate());
+    OAuthService service = new ServiceBuilder()
+                              .provider(TwitterApi.class)
+                              .apiKey("key")
+                              .apiSecret("secret")
+                              .signatureService(rsa)
+                              .build();
+    assertEquals("RSA-SHA1", signedMethod(service));
+  }
+
+  @Test
+  public void shouldUseConfiguredTimestampService()
+  {
+    OAuthService service = new ServiceBuilder()
+                              .provider(TwitterApi.class)
+                              .apiKey("key")
+                              .apiSecret("secret")
+                              .timestampService(new RingBufferNonceTimestampService())
+                              .build();
+    assertEquals(22, oauthParameter(service, OAuthConstants.NONCE).length());
+  }
+
+  @Test
+  public void shouldSendThroughConfiguredTransport()
+  {
+    final List<Request> sent = new ArrayList<Request>();
+    Transport transport = new Transport()
+    {
+      public Response send(Request request)
+      {
+        sent.add(request);
+        return new Response(200, new ArrayList<ParamInfo>(), new ByteArrayInputStream("ok".getBytes()));
+      }
+    };
+    OAuth10aService service = (OAuth10aService) new ServiceBuilder().provider(TwitterApi.class).apiKey("key").apiSecret("secret")
+        .transport(transport).build();
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com/resource");
+    assertEquals("ok", service.signAndSend(new Token("token", "secret"), request).getBody());
+    assertEquals(1, sent.size());
+    assertSame(request, sent.get(0));
+  }
+
+  @Test
+  public void shouldAskForCompressedResponses()
+  {
+    OAuthService service = new ServiceBuilder().provider(TwitterApi.class).apiKey("key").apiSecret("secret").acceptCompression().build();
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com/resource");
+    service.signRequest(new Token("token", "secret"), request);
+    assertEquals("Accept-Encoding", request.getHeaders().get(0).getKey());
+    assertEquals("gzip, deflate", request.getHeaders().get(0).getValue());
+  }
+
+  @Test
+  public void shouldSendAsyncOnThreadsOfExecutionMode() throws Exception
+  {
+    final List<String> threads = new ArrayList<String>();
+    Transport transport = new Transport()
+    {
+      public Response send(Request request)
+      {
+        threads.add(Thread.currentThread().getName());
+        return new Response(200, new ArrayList<ParamInfo>(), new ByteArrayInputStream("ok".getBytes()));
+      }
+    };
+    OAuth10aService service = (OAuth10aService) new ServiceBuilder().provider(TwitterApi.class).apiKey("key").apiSecret("secret")
+        .transport(transport).executionMode(ExecutionMode.PLATFORM_THREADS, 4).build();
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com/resource");
+    Response response = service.signAndSendAsync(new Token("token", "secret"), request, SettableFuture.directExecutor())
+        .get(5, TimeUnit.SECONDS);
+    assertEquals("ok", response.getBody());
+    assertTrue(threads.get(0).startsWith("scribe-sender"));
+    assertTrue(request.getTransport() instanceof ThreadPerRequestTransport);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectNullSignatureService()
+  {
+    new ServiceBuilder().signatureService(null);
+  }
+
+  @Test
+  public void shouldLeaveConfigPassedToApiUnchanged()
+  {
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey("key");
+    config.setApiSecret("secret");
+    new TwitterApi().createService(config);
+    assertNull(config.getRequestTokenEndpoint());
+    assertNull(config.getAccessTokenEndpoint());
+    assertEquals(Verb.GET, config.getRequestTokenVerb());
+    assertEquals(Verb.GET, config.getAccessTokenVerb());
+  }
+
+  @Test
+  public void shouldBuildServicesOfApisImplementingOnlyApi()
+  {
+    assertSame(PlainApi.SERVICE, new ServiceBuilder().provider(PlainApi.class).apiKey("key").apiSecret("secret").build());
+  }
+
+  private String signedMethod(OAuthService service)
+  {
+    return oauthParameter(service, OAuthConstants.SIGN_METHOD);
+  }
+
+  private String oauthParameter(OAuthService service, String key)
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com/resource");
+    service.signRequest(new Token("token", "secret"), request);
+    for (ParamInfo param : request.getOauthParameters())
+    {
+      if (key.equals(param.getKey()))
+      {
+        return param.getValue();
+      }
+    }
+    return null;
+  }
+
+  public static class PlainApi implements Api
+  {
+    static final OAuthService SERVICE = new TwitterApi().createService("key", "secret", null, null);
+
+    public OAuthService createService(String apiKey, String apiSecret, String callback, String scope)
+    {
+      return SERVICE;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package org.scribe.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+import org.junit.*;
+import org.junit.rules.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.oauth.*;
+import org.scribe.services.*;
+import org.scribe.test.helpers.*;
+
+public class ResponseCacheTest
+{
+  private static final Pattern NONCE = Pattern.compile("oauth_nonce=\"([^\"]+)\"");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private HttpServerStub server;
+  private ResponseCache cache;
+  private OAuth10aServiceImpl service;
+  private Token token;
+  private final List<String> nonces = new CopyOnWriteArrayList<String>();
+  private final List<String> conditions = new CopyOnWriteArrayList<String>();
+
+  @Before
+  public void setup() throws Exception
+  {
+    server = new HttpServerStub(new HttpServerStub.Handler()
+    {
+      public void handle(HttpServerStub.Exchange exchange)
+      {
+        Matcher matcher = NONCE.matcher(exchange.getRequestHeader("Authorization"));
+        nonces.add(matcher.find() ? matcher.group(1) : "");
+        String path = exchange.getPath();
+        if (path.startsWith("/fresh"))
+        {
+          exchange.setResponseHeader("Cache-Control", "private, max-age=60");
+          exchange.respond(200, "fresh " + nonces.size());
+        }
+        else if (path.startsWith("/etag"))
+        {
+          String condition = exchange.getRequestHeader("If-None-Match");
+          conditions.add(String.valueOf(condition));
+          exchange.setResponseHeader("Cache-Control", "no-cache");
+          exchange.setResponseHeader("ETag", "\"v1\"");
+          exchange.respond("\"v1\"".equals(condition) ? 304 : 200, "\"v1\"".equals(condition) ? "" : "tagged");
+        }
+        else if (path.startsWith("/expired"))
+        {
+          String condition = exchange.getRequestHeader("If-Modified-Since");
+          conditions.add(String.valueOf(condition));
+          exchange.setResponseHeader("Expires", "Thu, 01 Jan 1970 00:00:00 GMT");
+          exchange.setResponseHeader("Last-Modified", "Sat, 01 Jan 2011 00:00:00 GMT");
+          exchange.respond(condition != null ? 304 : 200, condition != null ? "" : "modified");
+        }
+        else if (path.startsWith("/nostore"))
+        {
+          exchange.setResponseHeader("Cache-Control", "no-store, max-age=60");
+          exchange.respond(200, "secret");
+        }
+        else
+        {
+          exchange.respond(200, "uncacheable");
+        }
+      }
+    });
+    cache = new ResponseCache(1024 * 1024);
+    service = newService(cache);
+    token = new Token("token", "token secret");
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    server.stop();
+  }
+
+  @Test
+  public void shouldAnswerFreshResponsesFromCache()
+  {
+    assertEquals("fresh 1", get("/fresh?a=1").getBody());
+    Response cached = get("/fresh?a=1");
+    assertEquals(200, cached.getCode());
+    assertEquals("fresh 1", cached.getBody());
+    assertEquals("private, max-age=60", cached.getHeader("cache-control"));
+    assertEquals(1, server.getRequestCount());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(0.5, cache.getHitRate(), 0.0);
+  }
+
+  @Test
+  public void shouldRevalidateWithETagAndFreshNonce()
+  {
+    assertEquals("tagged", get("/etag").getBody());
+    Response revalidated = get("/etag");
+    assertEquals(200, revalidated.getCode());
+    assertEquals("tagged", revalidated.getBody());
+    assertEquals(Arrays.asList("null", "\"v1\""), conditions);
+    assertEquals(2, nonces.size());
+    assertFalse(nonces.get(0).equals(nonces.get(1)));
+    assertEquals(1, cache.getRevalidationCount());
+    assertEquals(0.5, cache.getRevalidationRate(), 0.0);
+  }
+
+  @Test
+  public void shouldRevalidateExpiredResponsesWithLastModified()
+  {
+    get("/expired");
+    assertEquals("modified", get("/expired").getBody());
+    assertEquals(Arrays.asList("null", "Sat, 01 Jan 2011 00:00:00 GMT"), conditions);
+    assertEquals(1, cache.getRevalidationCount());
+  }
+
+  @Test
+  public void shouldNotStoreNoStoreOrUncacheableResponses()
+  {
+    get("/nostore");
+    get("/nostore");
+    get("/other");
+    assertEquals("uncacheable", get("/other").getBody());
+    assertEquals(4, server.getRequestCount());
+    assertEquals(4, cache.getMissCount());
+    assertEquals(0, cache.getMemorySize());
+  }
+
+  @Test
+  public void shouldKeyOnParamsAndToken()
+  {
+    get("/fresh?a=1&b=2");
+    get("/fresh?b=2&a=1");
+    service.signAndSend(new Token("other", "other secret"), new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1&b=2")));
+    get("/fresh?a=1&b=3");
+    assertEquals(3, server.getRequestCount());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void shouldLeaveOAuthParamsOutOfKey()
+  {
+    OAuthRequest plain = new OAuthRequest(Verb.GET, "http://example.com/resource?q=scribe");
+    OAuthRequest signed = new OAuthRequest(Verb.GET, "http://example.com/resource?q=scribe&oauth_nonce=123");
+    signed.addOAuthParameter("oauth_timestamp", "123456");
+    assertEquals(ResponseCache.keyFor(plain, "api key", token), ResponseCache.keyFor(signed, "api key", token));
+  }
+
+  @Test
+  public void shouldKeepConsumersSharingCacheApart()
+  {
+    Token empty = new Token("", "");
+    get("/fresh?a=1");
+    newService(cache, "other key").signAndSend(empty, new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1")));
+    service.signAndSend(empty, new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1")));
+    assertEquals(3, server.getRequestCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  @Test
+  public void shouldOnlyCacheGetRequests()
+  {
+    service.signAndSend(token, new OAuthRequest(Verb.POST, server.getUrl("/fresh")));
+    service.signAndSend(token, new OAuthRequest(Verb.POST, server.getUrl("/fresh")));
+    assertEquals(2, server.getRequestCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedWithinByteBudget()
+  {
+    cache = new ResponseCache(1000);
+    service = newService(cache);
+    get("/fresh?page=1");
+    get("/fresh?page=2");
+    get("/fresh?page=3");
+    assertTrue(cache.getMemorySize() <= 1000);
+    get("/fresh?page=3");
+    get("/fresh?page=1");
+    assertEquals(4, server.getRequestCount());
+  }
+
+  @Test
+  public void shouldFindResponsesOnDisk() throws IOException
+  {
+    File directory = folder.newFolder("responses");
+    cache = new ResponseCache(1024, directory, 1024 * 1024);
+    service = newService(cache);
+    get("/fresh?a=1");
+    assertTrue(cache.getDiskSize() > 0);
+
+    ResponseCache reopened = new ResponseCache(1024, directory, 1024 * 1024);
+    Response cached = newService(reopened).signAndSend(token, new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1")));
+    assertEquals("fresh 1", cached.getBody());
+    assertEquals(1, server.getRequestCount());
+    assertEquals(1, reopened.getHitCount());
+
+    reopened.clear();
+    assertEquals(0, reopened.getDiskSize());
+  }
+
+  @Test
+  public void shouldDropCorruptFilesOnDisk() throws IOException
+  {
+    File directory = folder.newFolder("responses");
+    cache = new ResponseCache(1024, directory, 1024 * 1024);
+    service = newService(cache);
+    get("/fresh?a=1");
+    File[] files = directory.listFiles();
+    assertEquals(1, files.length);
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(files[0]));
+    try
+    {
+      // valid magic and key, but a negative body length
+      out.writeInt(0x53524331);
+      byte[] key = ResponseCache.keyFor(new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1")), "api key", token).getBytes("UTF-8");
+      out.writeInt(key.length);
+      out.write(key);
+      out.writeInt(200);
+      out.writeLong(Long.MAX_VALUE);
+      out.writeInt(0);
+      out.writeInt(-5);
+    }
+    finally
+    {
+      out.close();
+    }
+
+    ResponseCache reopened = new ResponseCache(1024, directory, 1024 * 1024);
+    OAuth10aServiceImpl reopenedService = newService(reopened);
+    assertEquals("fresh 2", reopenedService.signAndSend(token, new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1"))).getBody());
+    assertEquals("fresh 2", reopenedService.signAndSend(token, new OAuthRequest(Verb.GET, server.getUrl("/fresh?a=1"))).getBody());
+    assertEquals(2, server.getRequestCount());
+    assertEquals(1, reopened.getHitCount());
+  }
+
+  @Test
+  public void shouldAnswerAsyncRequestsFromCache() throws Exception
+  {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try
+    {
+      assertEquals("fresh 1", service.signAndSendAsync(token, new OAuthRequest(Verb.GET, server.getUrl("/fresh")), executor).get().getBody());
+      assertEquals("fresh 1", service.signAndSendAsync(token, new OAuthRequest(Verb.GET, server.getUrl("/fresh")), executor).get().getBody());
+      assertEquals(1, server.getRequestCount());
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  private Response get(String path)
+  {
+    return service.signAndSend(token, new OAuthRequest(Verb.GET, server.getUrl(path)));
+  }
+
+  private static OAuth10aServiceImpl newService(ResponseCache cache)
+  {
+    return newService(cache, "api key");
+  }
+
+  private static OAuth10aServiceImpl newService(ResponseCache cache, String apiKey)
+  {
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey(apiKey);
+    config.setApiSecret("api secret");
+    config.setResponseCache(cache);
+    TokenExtractorImpl tokenExtractor = new TokenExtractorImpl();
+    return new OAuth10aServiceImpl(new HMACSha1SignatureService(), new TimestampServiceImpl(), new BaseStringExtractorImpl(),
+        new HeaderExtractorImpl(), tokenExtractor, tokenExtractor, config);
+  }
+}
@@ -2,6 +2,8 @@ package org.scribe.extractors;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
+
 import org.junit.*;
 import org.scribe.exceptions.*;
 import org.scribe.model.*;
@@ -50,4 +52,38 @@ public class BaseStringExtractorTest
     request.addBodyParameter("body", "this param has whitespace");
     assertEquals(expected, extractor.extract(request));
   }
+
+  @Test
+  public void shouldStreamTheSameBaseString() throws Exception
+  {
+    OAuthRequest streamed = ObjectMother.createSampleOAuthRequest();
+    streamed.addBodyParameter("body", "this param has whitespace & symbols like %, = and \u00e9");
+    request.addBodyParameter("body", "this param has whitespace & symbols like %, = and \u00e9");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    extractor.extract(streamed, out);
+    assertEquals(extractor.extract(request), out.toString("UTF-8"));
+  }
+
+  @Test
+  public void shouldStreamBaseStringsLargerThanTheBuffer() throws Exception
+  {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 5000; i++)
+    {
+      value.append("facet ").append(i).append(';');
+    }
+    OAuthRequest streamed = ObjectMother.createSampleOAuthRequest();
+    streamed.addBodyParameter("facets", value.toString());
+    request.addBodyParameter("facets", value.toString());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    extractor.extract(streamed, out);
+    assertEquals(extractor.extract(request), out.toString("UTF-8"));
+  }
+
+  @Test(expected = OAuthParametersMissingException.class)
+  public void shouldThrowExceptionIfStreamedRquestHasNoOAuthParameters() throws Exception
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com");
+    extractor.extract(request, new ByteArrayOutputStream());
+  }
 }
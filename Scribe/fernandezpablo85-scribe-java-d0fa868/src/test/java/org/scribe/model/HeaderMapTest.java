@@ -0,0 +1,72 @@
+package org.scribe.model;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class HeaderMapTest
+{
+  private HeaderMap headers;
+
+  @Before
+  public void setup()
+  {
+    List<ParamInfo> list = new ArrayList<ParamInfo>();
+    list.add(header(null, "HTTP/1.1 200 OK"));
+    list.add(header("Set-Cookie", "a=1"));
+    list.add(header("Content-Type", "application/json"));
+    list.add(header("set-cookie", "b=2"));
+    list.add(header("Link", "<https://api.example.com/items?page=2>; rel=\"next\""));
+    list.add(header("SET-COOKIE", "c=3"));
+    headers = HeaderMap.of(list);
+  }
+
+  @Test
+  public void shouldLookUpNamesInAnyCase()
+  {
+    assertEquals("application/json", headers.get("content-type"));
+    assertEquals("application/json", headers.get("CONTENT-TYPE"));
+    assertTrue(headers.contains("link"));
+    assertFalse(headers.contains("X-RateLimit-Remaining"));
+    assertNull(headers.get("X-RateLimit-Remaining"));
+  }
+
+  @Test
+  public void shouldKeepEveryValueInOrder()
+  {
+    assertEquals("a=1", headers.get("Set-Cookie"));
+    assertEquals(Arrays.asList("a=1", "b=2", "c=3"), headers.getAll("set-cookie"));
+    assertEquals(Collections.<String> emptyList(), headers.getAll("Missing"));
+    assertEquals(5, headers.size());
+    assertEquals(3, headers.getNameCount());
+    assertEquals(new ArrayList<String>(Arrays.asList("Set-Cookie", "Content-Type", "Link")), new ArrayList<String>(headers.getNames()));
+    assertEquals(5, headers.toList().size());
+  }
+
+  @Test
+  public void shouldIndexManyHeaders()
+  {
+    Map<String, List<String>> fields = new LinkedHashMap<String, List<String>>();
+    for (int i = 0; i < 500; i++)
+    {
+      fields.put("X-Header-" + i, Arrays.asList(String.valueOf(i), "again " + i));
+    }
+    fields.put(null, Arrays.asList("HTTP/1.1 200 OK"));
+    HeaderMap many = HeaderMap.of(fields);
+    assertEquals(1000, many.size());
+    for (int i = 0; i < 500; i++)
+    {
+      assertEquals(Arrays.asList(String.valueOf(i), "again " + i), many.getAll("x-header-" + i));
+    }
+  }
+
+  private static ParamInfo header(String key, String value)
+  {
+    ParamInfo header = new ParamInfo();
+    header.setKey(key);
+    header.setValue(value);
+    return header;
+  }
+}
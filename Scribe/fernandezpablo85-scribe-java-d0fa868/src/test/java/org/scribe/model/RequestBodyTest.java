@@ -0,0 +1,94 @@
+package org.scribe.model;
+
+import static org.junit.Assert.*;
+import static org.scribe.test.helpers.HttpFixtures.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class RequestBodyTest
+{
+  private final byte[] contents = contents();
+
+  @Test
+  public void shouldReadBuffersWithoutMovingThem() throws Exception
+  {
+    ByteBuffer buffer = ByteBuffer.wrap(contents);
+    RequestBody body = RequestBody.of(buffer);
+    assertEquals(contents.length, body.getContentLength());
+    assertArrayEquals(contents, read(body.openChannel()));
+    assertArrayEquals(contents, read(body.openChannel()));
+    assertEquals(0, buffer.position());
+  }
+
+  @Test
+  public void shouldReadStreamsOnlyOnce() throws Exception
+  {
+    RequestBody body = RequestBody.of(new ByteArrayInputStream(contents), 100);
+    assertFalse(body.isRepeatable());
+    assertArrayEquals(Arrays.copyOf(contents, 100), read(body.openChannel()));
+    try
+    {
+      body.openChannel();
+      fail();
+    }
+    catch (IOException e)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void shouldGzipAsChannelAndAsStream() throws Exception
+  {
+    RequestBody body = RequestBody.gzip(RequestBody.of(contents));
+    assertEquals("gzip", body.getContentEncoding());
+    assertEquals(RequestBody.UNKNOWN_LENGTH, body.getContentLength());
+    byte[] fromChannel = read(body.openChannel());
+    ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+    body.writeTo(fromStream);
+    assertArrayEquals(fromChannel, fromStream.toByteArray());
+    assertArrayEquals(contents, gunzip(fromChannel));
+    assertTrue(fromChannel.length < contents.length / 4);
+  }
+
+  @Test
+  public void shouldGzipEmptyBodies() throws Exception
+  {
+    assertArrayEquals(new byte[0], gunzip(read(RequestBody.gzip(RequestBody.of(new byte[0])).openChannel())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldNotGzipTwice()
+  {
+    RequestBody.gzip(RequestBody.gzip(RequestBody.of(contents)));
+  }
+
+  private static byte[] contents()
+  {
+    StringBuilder form = new StringBuilder();
+    for (int i = 0; i < 5000; i++)
+    {
+      form.append("facet=category%20").append(i % 37).append("&value=").append(i).append('&');
+    }
+    return form.toString().getBytes();
+  }
+
+  private static byte[] read(ReadableByteChannel channel) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // small reads to cross every internal buffer boundary
+    ByteBuffer buffer = ByteBuffer.allocate(1000);
+    while (channel.read(buffer) >= 0)
+    {
+      out.write(buffer.array(), 0, buffer.position());
+      buffer.clear();
+    }
+    channel.close();
+    return out.toByteArray();
+  }
+}
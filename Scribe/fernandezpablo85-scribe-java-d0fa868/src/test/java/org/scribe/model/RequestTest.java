@@ -2,6 +2,8 @@ package org.scribe.model;
 
 import static org.junit.Assert.*;
 
+import java.io.*;
+
 import org.junit.*;
 
 public class RequestTest {
@@ -61,4 +63,17 @@ public class RequestTest {
         assertTrue(connection.getHeaders().containsKey("Content-Length"));
     }
 
+    @Test
+    public void shouldSetStreamedPayload() {
+        postRequest.addPayload(new ByteArrayInputStream("PAYLOAD".getBytes()), 7);
+        assertNull(postRequest.getBodyContents());
+        assertEquals(7, postRequest.getBody().getContentLength());
+        assertFalse(postRequest.getBody().isRepeatable());
+        postRequest.send();
+        assertEquals("7", connection.getHeaders().get("Content-Length"));
+        postRequest.addPayload("PAYLOAD");
+        assertEquals("PAYLOAD", postRequest.getBodyContents());
+        assertTrue(postRequest.getBody().isRepeatable());
+    }
+
 }
\ No newline at end of file
@@ -3,8 +3,12 @@ package org.scribe.model;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.*;
 
 import org.junit.*;
+import org.scribe.exceptions.*;
 
 public class ResponseTest
 {
@@ -25,7 +29,8 @@ public class ResponseTest
   public void shouldPopulateResponseHeaders()
   {
     assertEquals(2, response.getHeaders().size());
-   // assertEquals("one", response.getHeader("one"));
+    assertEquals("one", response.getHeader("one"));
+    assertEquals("two", response.getHeader("TWO"));
   }
 
   @Test
@@ -52,6 +57,137 @@ public class ResponseTest
     assertEquals("errors", errResponse.getBody());
   }
 
+  @Test
+  public void shouldReturnRawBodyBytes()
+  {
+    assertArrayEquals("contents".getBytes(), response.getBodyBytes());
+    assertEquals("contents", response.getBody());
+    assertEquals(1, connection.getTimesCalledInpuStream());
+  }
+
+  @Test
+  public void shouldConsumeBodyInChunksAndStopEarly() throws Exception
+  {
+    final ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+    final StreamStub stream = new StreamStub(20000);
+    Response large = new Response(200, new ArrayList<ParamInfo>(), stream);
+    long consumed = large.consume(new ChunkConsumer()
+    {
+      public boolean onChunk(ByteBuffer chunk)
+      {
+        chunks.write(chunk.array(), chunk.position(), chunk.remaining());
+        return chunks.size() < 10000;
+      }
+    });
+    assertEquals(chunks.size(), consumed);
+    assertTrue(consumed >= 10000 && consumed < 20000);
+    assertTrue(stream.closed);
+  }
+
+  @Test
+  public void shouldReadBodyUpToMaxBytes()
+  {
+    assertEquals("contents", response.getBody(8));
+    Response large = new Response(200, new ArrayList<ParamInfo>(), new StreamStub(20000));
+    try
+    {
+      large.getBody(10000);
+      fail();
+    }
+    catch (OAuthException e)
+    {
+      assertTrue(e.getCause().getMessage().contains("10000"));
+    }
+  }
+
+  @Test
+  public void shouldDecompressGzipBodyAndCountBytes() throws Exception
+  {
+    String json = json();
+    Response gzipped = new Response(200, headers("Content-Encoding", "gzip"), new ByteArrayInputStream(gzip(json)));
+    assertEquals(json, gzipped.getBody());
+    assertEquals(gzip(json).length, gzipped.getCompressedByteCount());
+    assertEquals(json.length(), gzipped.getDecompressedByteCount());
+  }
+
+  @Test
+  public void shouldDecompressDeflateBodiesWithAndWithoutZlibWrapper() throws Exception
+  {
+    String json = json();
+    for (boolean nowrap : new boolean[] { false, true })
+    {
+      Response deflated = new Response(200, headers("content-encoding", "deflate"), new ByteArrayInputStream(deflate(json, nowrap)));
+      assertEquals(json, new String(deflated.getBodyBytes(), "UTF-8"));
+    }
+  }
+
+  @Test
+  public void shouldAcceptEmptyCompressedBodies()
+  {
+    Response empty = new Response(204, headers("Content-Encoding", "gzip"), new ByteArrayInputStream(new byte[0]));
+    assertEquals("", empty.getBody());
+  }
+
+  @Test
+  public void shouldCountUncompressedBodiesOnce()
+  {
+    assertEquals("contents", response.getBody());
+    assertEquals(8, response.getCompressedByteCount());
+    assertEquals(8, response.getDecompressedByteCount());
+  }
+
+  private static List<ParamInfo> headers(String key, String value)
+  {
+    ParamInfo header = new ParamInfo();
+    header.setKey(key);
+    header.setValue(value);
+    return new ArrayList<ParamInfo>(Collections.singletonList(header));
+  }
+
+  private static String json()
+  {
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 2000; i++)
+    {
+      json.append("{\"id\":").append(i).append(",\"name\":\"connection ").append(i).append("\"},");
+    }
+    return json.append("{}]").toString();
+  }
+
+  private static byte[] gzip(String value) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(value.getBytes("UTF-8"));
+    gzip.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] deflate(String value, boolean nowrap) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+    deflate.write(value.getBytes("UTF-8"));
+    deflate.close();
+    return out.toByteArray();
+  }
+
+  private static class StreamStub extends ByteArrayInputStream
+  {
+    boolean closed;
+
+    StreamStub(int size)
+    {
+      super(new byte[size]);
+    }
+
+    @Override
+    public void close()
+    {
+      closed = true;
+    }
+  }
+
   private static class FaultyConnection extends ConnectionStub
   {
 
@@ -0,0 +1,23 @@
+package org.scribe.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class TokenTest
+{
+  @Test
+  public void shouldBeEqualToTokenWithSameValues()
+  {
+    Token token = new Token("token", "secret");
+    assertEquals(token, new Token("token", "secret"));
+    assertEquals(token.hashCode(), new Token("token", "secret").hashCode());
+  }
+
+  @Test
+  public void shouldNotBeEqualToTokenWithDifferentSecret()
+  {
+    assertFalse(new Token("token", "secret").equals(new Token("token", "other")));
+    assertFalse(new Token("token", null).equals(new Token("token", "secret")));
+  }
+}
@@ -0,0 +1,172 @@
+package org.scribe.oauth;
+
+import static org.junit.Assert.*;
+import static org.scribe.test.helpers.HttpFixtures.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.regex.*;
+
+import org.junit.*;
+import org.scribe.exceptions.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.services.*;
+import org.scribe.test.helpers.*;
+import org.scribe.transport.*;
+import org.scribe.utils.*;
+
+public class AsyncOAuthServiceTest
+{
+  private static final long PROVIDER_AHEAD_SECONDS = 300;
+  private static final Pattern TIMESTAMP = Pattern.compile("oauth_timestamp=\"(\\d+)\"");
+
+  private final CountDownLatch slow = new CountDownLatch(1);
+  private final AtomicInteger executions = new AtomicInteger();
+  private final Executor executor = new Executor()
+  {
+    public void execute(Runnable command)
+    {
+      executions.incrementAndGet();
+      command.run();
+    }
+  };
+  private volatile String requestTokenBody = "oauth_token=request&oauth_token_secret=request_secret";
+  private HttpServerStub server;
+  private NioTransport transport;
+  private OAuthConfig config;
+  private OAuth10aServiceImpl service;
+
+  @Before
+  public void setup() throws Exception
+  {
+    server = new HttpServerStub(new HttpServerStub.Handler()
+    {
+      public void handle(HttpServerStub.Exchange exchange) throws IOException
+      {
+        String path = exchange.getPath();
+        String authorization = exchange.getRequestHeader("Authorization");
+        if (path.equals("/request_token"))
+        {
+          exchange.respond(200, requestTokenBody);
+        }
+        else if (path.equals("/access_token"))
+        {
+          boolean verified = authorization.contains("oauth_verifier=\"verifier\"")
+              && authorization.contains("oauth_token=\"request\"");
+          exchange.respond(verified ? 200 : 401, "oauth_token=access&oauth_token_secret=access_secret");
+        }
+        else if (path.equals("/skewed"))
+        {
+          long providerSeconds = System.currentTimeMillis() / 1000 + PROVIDER_AHEAD_SECONDS;
+          Matcher matcher = TIMESTAMP.matcher(authorization);
+          boolean accepted = matcher.find() && Math.abs(Long.parseLong(matcher.group(1)) - providerSeconds) <= 60;
+          exchange.setResponseHeader("Date", httpDate(providerSeconds * 1000));
+          exchange.respond(accepted ? 200 : 401, accepted ? "ok" : "oauth_problem=timestamp_refused");
+        }
+        else if (path.equals("/slow"))
+        {
+          try
+          {
+            slow.await(5, TimeUnit.SECONDS);
+          }
+          catch (InterruptedException e)
+          {
+            throw new InterruptedIOException();
+          }
+          exchange.respond(200, "slow");
+        }
+        else
+        {
+          exchange.respond(200, authorization.contains("oauth_token=\"access\"") ? "resource" : "anonymous");
+        }
+      }
+    });
+    transport = new NioTransport(4, Executors.newCachedThreadPool());
+    config = new OAuthConfig();
+    config.setApiKey("api key");
+    config.setApiSecret("api secret");
+    config.setCallback("oob");
+    config.setRequestTokenEndpoint(server.getUrl("/request_token"));
+    config.setAccessTokenEndpoint(server.getUrl("/access_token"));
+    config.setRequestTokenVerb(Verb.POST);
+    config.setAccessTokenVerb(Verb.POST);
+    config.setTransport(transport);
+    TokenExtractorImpl tokenExtractor = new TokenExtractorImpl();
+    service = new OAuth10aServiceImpl(new HMACSha1SignatureService(), new TimestampServiceImpl(), new BaseStringExtractorImpl(),
+        new HeaderExtractorImpl(), tokenExtractor, tokenExtractor, config);
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    slow.countDown();
+    transport.shutdown();
+    server.stop();
+  }
+
+  @Test
+  public void shouldRunThreeLeggedFlowAsynchronously() throws Exception
+  {
+    Token requestToken = service.getRequestTokenAsync(executor).get(5, TimeUnit.SECONDS);
+    assertEquals("request", requestToken.getToken());
+    assertEquals("request_secret", requestToken.getSecret());
+
+    Token accessToken = service.getAccessTokenAsync(requestToken, new Verifier("verifier"), executor).get(5, TimeUnit.SECONDS);
+    assertEquals("access", accessToken.getToken());
+
+    OAuthRequest request = new OAuthRequest(Verb.GET, server.getUrl("/resource"));
+    assertEquals("resource", service.signAndSendAsync(accessToken, request, executor).get(5, TimeUnit.SECONDS).getBody());
+    assertTrue(executions.get() >= 3);
+  }
+
+  @Test
+  public void shouldRetryRefusedTimestampAsynchronously() throws Exception
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, server.getUrl("/skewed"));
+    Response response = service.signAndSendAsync(new Token("access", "access_secret"), request, executor).get(5, TimeUnit.SECONDS);
+    assertEquals(200, response.getCode());
+    assertEquals("ok", response.getBody());
+    assertEquals(2, server.getRequestCount());
+    assertTrue(Math.abs(service.getClockOffset() - PROVIDER_AHEAD_SECONDS) <= ClockSkewCorrector.TOLERANCE_SECONDS);
+    assertEquals(7, request.getOauthParameters().size());
+    assertEquals(1, request.getHeaders().size());
+  }
+
+  @Test
+  public void shouldReportTokenExtractionFailure() throws Exception
+  {
+    requestTokenBody = "no tokens here";
+    try
+    {
+      service.getRequestTokenAsync(executor).get(5, TimeUnit.SECONDS);
+      fail("Expected the extraction to fail");
+    }
+    catch (ExecutionException e)
+    {
+      assertTrue(e.getCause() instanceof OAuthException);
+    }
+  }
+
+  @Test
+  public void shouldAbortConnectionWhenCancelled() throws Exception
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, server.getUrl("/slow"));
+    SettableFuture<Response> future = service.signAndSendAsync(new Token("access", "access_secret"), request, executor);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (server.getRequestCount() == 0 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(1, transport.getInFlightCount());
+    assertTrue(future.cancel(true));
+    while (transport.getInFlightCount() > 0 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(0, transport.getInFlightCount());
+    assertTrue(future.isCancelled());
+  }
+}
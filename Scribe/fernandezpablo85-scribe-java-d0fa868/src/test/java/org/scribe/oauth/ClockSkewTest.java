@@ -0,0 +1,128 @@
+package org.scribe.oauth;
+
+import static org.junit.Assert.*;
+import static org.scribe.test.helpers.HttpFixtures.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+import org.junit.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.services.*;
+import org.scribe.test.helpers.*;
+import org.scribe.utils.*;
+
+public class ClockSkewTest
+{
+  private static final long PROVIDER_AHEAD_SECONDS = 300;
+  private static final Pattern TIMESTAMP = Pattern.compile("oauth_timestamp=\"(\\d+)\"");
+
+  private HttpServerStub server;
+  private String url;
+  private OAuth10aServiceImpl service;
+  private Token token;
+  private volatile int rejectionCode = 401;
+  private volatile String rejectionBody = "oauth_problem=timestamp_refused";
+
+  @Before
+  public void setup() throws Exception
+  {
+    server = new HttpServerStub(new HttpServerStub.Handler()
+    {
+      public void handle(HttpServerStub.Exchange exchange)
+      {
+        long providerSeconds = System.currentTimeMillis() / 1000 + PROVIDER_AHEAD_SECONDS;
+        Matcher matcher = TIMESTAMP.matcher(exchange.getRequestHeader("Authorization"));
+        boolean accepted = matcher.find() && Math.abs(Long.parseLong(matcher.group(1)) - providerSeconds) <= 60;
+        exchange.setResponseHeader("Date", httpDate(providerSeconds * 1000));
+        exchange.respond(accepted ? 200 : rejectionCode, accepted ? "ok" : rejectionBody);
+      }
+    });
+    url = server.getUrl("/resource");
+
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey("api key");
+    config.setApiSecret("api secret");
+    TokenExtractorImpl tokenExtractor = new TokenExtractorImpl();
+    service = new OAuth10aServiceImpl(new HMACSha1SignatureService(), new TimestampServiceImpl(), new BaseStringExtractorImpl(),
+        new HeaderExtractorImpl(), tokenExtractor, tokenExtractor, config);
+    token = new Token("token", "token secret");
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    server.stop();
+  }
+
+  @Test
+  public void shouldResignOnceWithLearntOffset()
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, url);
+    Response response = service.signAndSend(token, request);
+    assertEquals(200, response.getCode());
+    assertEquals("ok", response.getBody());
+    assertEquals(2, server.getRequestCount());
+    assertTrue(Math.abs(service.getClockOffset() - PROVIDER_AHEAD_SECONDS) <= ClockSkewCorrector.TOLERANCE_SECONDS);
+    assertEquals(7, request.getOauthParameters().size());
+    assertEquals(1, request.getHeaders().size());
+  }
+
+  @Test
+  public void shouldSignWithLearntOffsetAfterwards()
+  {
+    service.signAndSend(token, new OAuthRequest(Verb.GET, url));
+    assertEquals(200, service.signAndSend(token, new OAuthRequest(Verb.GET, url)).getCode());
+    assertEquals(3, server.getRequestCount());
+  }
+
+  @Test
+  public void shouldResignRequestsSignedBeforeAnotherResponseMovedTheOffset() throws Exception
+  {
+    final List<Runnable> steps = new CopyOnWriteArrayList<Runnable>();
+    Executor deferred = new Executor()
+    {
+      public void execute(Runnable step)
+      {
+        steps.add(step);
+      }
+    };
+    SettableFuture<Response> first = service.signAndSendAsync(token, new OAuthRequest(Verb.GET, url), deferred);
+    SettableFuture<Response> second = service.signAndSendAsync(token, new OAuthRequest(Verb.GET, url), deferred);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (steps.size() < 2 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    // both were signed with the old offset; the first rejection moves it, the second must still be retried
+    for (Runnable step : steps)
+    {
+      step.run();
+    }
+    assertEquals(200, first.get(5, TimeUnit.SECONDS).getCode());
+    assertEquals(200, second.get(5, TimeUnit.SECONDS).getCode());
+    assertEquals(4, server.getRequestCount());
+  }
+
+  @Test
+  public void shouldNotRetryOtherRejections()
+  {
+    rejectionBody = "oauth_problem=signature_invalid";
+    Response response = service.signAndSend(token, new OAuthRequest(Verb.GET, url));
+    assertEquals(401, response.getCode());
+    assertEquals(1, server.getRequestCount());
+    assertTrue(Math.abs(service.getClockOffset() - PROVIDER_AHEAD_SECONDS) <= ClockSkewCorrector.TOLERANCE_SECONDS);
+  }
+
+  @Test
+  public void shouldRetryBadRequestsMentioningTimestamp()
+  {
+    rejectionCode = 400;
+    rejectionBody = "Invalid timestamp";
+    assertEquals(200, service.signAndSend(token, new OAuthRequest(Verb.GET, url)).getCode());
+    assertEquals(2, server.getRequestCount());
+  }
+}
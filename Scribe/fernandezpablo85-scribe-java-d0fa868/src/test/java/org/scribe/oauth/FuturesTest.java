@@ -0,0 +1,96 @@
+package org.scribe.oauth;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.scribe.utils.*;
+
+public class FuturesTest
+{
+  private final List<Runnable> queued = new ArrayList<Runnable>();
+  private final Executor deferred = new Executor()
+  {
+    public void execute(Runnable command)
+    {
+      queued.add(command);
+    }
+  };
+
+  @Test
+  public void shouldCloseSourceResultCompletedAfterCancellation()
+  {
+    SettableFuture<Body> source = new SettableFuture<Body>();
+    SettableFuture<Body> result = Futures.then(source, new Futures.Step<Body, Body>()
+    {
+      public SettableFuture<Body> apply(Body value)
+      {
+        return Futures.done(value);
+      }
+    }, deferred);
+    Body body = new Body();
+    source.set(body);
+    result.cancel(true);
+    runQueued();
+    assertTrue(body.closed);
+  }
+
+  @Test
+  public void shouldCloseStepResultReadyWhenChainWasCancelled()
+  {
+    final Body body = new Body();
+    final SettableFuture<String> source = new SettableFuture<String>();
+    final List<SettableFuture<Body>> result = new ArrayList<SettableFuture<Body>>();
+    result.add(Futures.then(source, new Futures.Step<String, Body>()
+    {
+      public SettableFuture<Body> apply(String value)
+      {
+        result.get(0).cancel(true);
+        return Futures.done(body);
+      }
+    }, deferred));
+    source.set("token");
+    runQueued();
+    assertTrue(result.get(0).isCancelled());
+    assertTrue(body.closed);
+  }
+
+  @Test
+  public void shouldNotCloseForwardedResult() throws Exception
+  {
+    SettableFuture<Body> source = new SettableFuture<Body>();
+    SettableFuture<Body> result = Futures.then(source, new Futures.Step<Body, Body>()
+    {
+      public SettableFuture<Body> apply(Body value)
+      {
+        return Futures.done(value);
+      }
+    }, deferred);
+    Body body = new Body();
+    source.set(body);
+    runQueued();
+    assertSame(body, result.get());
+    assertFalse(body.closed);
+  }
+
+  private void runQueued()
+  {
+    while (!queued.isEmpty())
+    {
+      queued.remove(0).run();
+    }
+  }
+
+  private static class Body implements Closeable
+  {
+    boolean closed;
+
+    public void close()
+    {
+      closed = true;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package org.scribe.oauth;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.services.*;
+
+public class OAuth10aServiceImplTest
+{
+
+  private OAuth10aServiceImpl service;
+  private Token token;
+
+  @Before
+  public void setup()
+  {
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey("api key");
+    config.setApiSecret("api secret");
+    TokenExtractorImpl tokenExtractor = new TokenExtractorImpl();
+    service = new OAuth10aServiceImpl(new PooledHMACSha1SignatureService(), new FixedTimestampService(), new BaseStringExtractorImpl(),
+        new HeaderExtractorImpl(), tokenExtractor, tokenExtractor, config);
+    token = new Token("token", "token secret");
+  }
+
+  @Test
+  public void shouldSignRequest()
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com/resource");
+    service.signRequest(token, request);
+    assertEquals(7, request.getOauthParameters().size());
+    assertEquals(OAuthConstants.HEADER, request.getHeaders().get(0).getKey());
+  }
+
+  @Test
+  public void shouldSignBatchLikeSingleRequests()
+  {
+    List<OAuthRequest> batch = createRequests(500);
+    BatchSignatureResult result = service.signRequests(token, batch);
+    assertTrue(result.isAllSigned());
+    assertEquals(500, result.size());
+    List<OAuthRequest> serial = createRequests(500);
+    for (int i = 0; i < serial.size(); i++)
+    {
+      service.signRequest(token, serial.get(i));
+      assertEquals(header(serial.get(i)), header(batch.get(i)));
+    }
+  }
+
+  @Test
+  public void shouldSignBatchWithOneTokenPerRequest()
+  {
+    List<OAuthRequest> requests = createRequests(3);
+    List<Token> tokens = Arrays.asList(token, new Token("other", "other secret"), token);
+    BatchSignatureResult result = service.signRequests(tokens, requests);
+    assertTrue(result.isAllSigned());
+    assertTrue(header(requests.get(0)).contains("oauth_token=\"token\""));
+    assertTrue(header(requests.get(1)).contains("oauth_token=\"other\""));
+    assertTrue(header(requests.get(2)).contains("oauth_token=\"token\""));
+  }
+
+  @Test
+  public void shouldCollectFailuresPerRequest()
+  {
+    List<OAuthRequest> requests = createRequests(100);
+    List<Token> tokens = new ArrayList<Token>(Collections.nCopies(100, token));
+    tokens.set(17, null);
+    tokens.set(63, null);
+    BatchSignatureResult result = service.signRequests(tokens, requests);
+    assertEquals(2, result.getFailureCount());
+    assertFalse(result.isSigned(17));
+    assertFalse(result.isSigned(63));
+    assertTrue(result.isSigned(18));
+    assertNotNull(result.getFailure(17));
+    assertEquals(Arrays.asList(17, 63), new ArrayList<Integer>(result.getFailures().keySet()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowExceptionIfTokensDoNotMatchRequests()
+  {
+    service.signRequests(Arrays.asList(token), createRequests(2));
+  }
+
+  @Test
+  public void shouldSignCompressedBodiesOverTheirParameters()
+  {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 200; i++)
+    {
+      value.append("facet ").append(i).append(' ');
+    }
+    OAuthRequest plain = new OAuthRequest(Verb.POST, "http://example.com/resource");
+    OAuthRequest compressed = new OAuthRequest(Verb.POST, "http://example.com/resource");
+    plain.addBodyParameter("facets", value.toString());
+    compressed.addBodyParameter("facets", value.toString());
+    compressed.compressBody();
+    service.signRequest(token, plain);
+    service.signRequest(token, compressed);
+    assertEquals(header(plain), header(compressed));
+    assertNull(plain.getBody().getContentEncoding());
+    assertEquals("gzip", compressed.getBody().getContentEncoding());
+  }
+
+  private static List<OAuthRequest> createRequests(int count)
+  {
+    List<OAuthRequest> requests = new ArrayList<OAuthRequest>();
+    for (int i = 0; i < count; i++)
+    {
+      OAuthRequest request = new OAuthRequest(Verb.POST, "http://example.com/resource/" + i);
+      request.addBodyParameter("facet", "value " + i);
+      requests.add(request);
+    }
+    return requests;
+  }
+
+  private static String header(OAuthRequest request)
+  {
+    for (ParamInfo header : request.getHeaders())
+    {
+      if (header.getKey().equals(OAuthConstants.HEADER)) return header.getValue();
+    }
+    return null;
+  }
+
+  private static class FixedTimestampService implements TimestampService
+  {
+    public String getTimestampInSeconds()
+    {
+      return "123456";
+    }
+
+    public String getNonce()
+    {
+      return "nonce";
+    }
+  }
+}
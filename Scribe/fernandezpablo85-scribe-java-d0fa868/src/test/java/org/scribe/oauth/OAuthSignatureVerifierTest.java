@@ -0,0 +1,206 @@
+package org.scribe.oauth;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.scribe.exceptions.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.services.*;
+
+public class OAuthSignatureVerifierTest
+{
+  private static final String URL = "http://example.com/resource?facet=a&facet=b";
+
+  private OAuth10aServiceImpl service;
+  private OAuthSignatureVerifier verifier;
+  private Token token;
+
+  @Before
+  public void setup()
+  {
+    OAuthConfig config = new OAuthConfig();
+    config.setApiKey("api key");
+    config.setApiSecret("api secret");
+    TokenExtractorImpl tokenExtractor = new TokenExtractorImpl();
+    service = new OAuth10aServiceImpl(new HMACSha1SignatureService(), new TimestampServiceImpl(), new BaseStringExtractorImpl(),
+        new HeaderExtractorImpl(), tokenExtractor, tokenExtractor, config);
+    verifier = new OAuthSignatureVerifier(new SecretProvider()
+    {
+      public String getConsumerSecret(String consumerKey)
+      {
+        return "api key".equals(consumerKey) ? "api secret" : null;
+      }
+
+      public String getTokenSecret(String consumerKey, String token)
+      {
+        return "token".equals(token) ? "token secret" : null;
+      }
+    });
+    token = new Token("token", "token secret");
+  }
+
+  @Test
+  public void shouldVerifyRequestSignedByService()
+  {
+    OAuthRequest request = signedRequest(token);
+    assertTrue(verifier.verify(Verb.POST, URL, header(request), request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldVerifyRequestWithoutToken()
+  {
+    OAuthRequest request = signedRequest(OAuthConstants.EMPTY_TOKEN);
+    assertTrue(verifier.verify(Verb.POST, URL, header(request), request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldRestoreSignatureOfVerifiedRequest()
+  {
+    OAuthRequest request = signedRequest(token);
+    int size = request.getOauthParameters().size();
+    assertTrue(verifier.verify(request));
+    assertEquals(size, request.getOauthParameters().size());
+    assertTrue(verifier.verify(request));
+  }
+
+  @Test
+  public void shouldRejectReplayedRequestsWithNonceStore()
+  {
+    verifier = new OAuthSignatureVerifier(new HMACSha1SignatureService(), new BaseStringExtractorImpl(), new SecretProvider()
+    {
+      public String getConsumerSecret(String consumerKey)
+      {
+        return "api secret";
+      }
+
+      public String getTokenSecret(String consumerKey, String token)
+      {
+        return "token secret";
+      }
+    }, new TimeBucketedNonceStore(300, 1000));
+    OAuthRequest request = signedRequest(token);
+    assertFalse(verifier.verify(Verb.POST, URL, header(request), "body=tampered"));
+    assertTrue(verifier.verify(Verb.POST, URL, header(request), request.getBodyContents()));
+    assertFalse(verifier.verify(Verb.POST, URL, header(request), request.getBodyContents()));
+    assertTrue(verifier.verify(Verb.POST, URL, header(signedRequest(token)), request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldIgnoreRealm()
+  {
+    OAuthRequest request = signedRequest(token);
+    String header = header(request).replaceFirst("OAuth ", "OAuth realm=\"http://example.com/\", ");
+    assertTrue(verifier.verify(Verb.POST, URL, header, request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldRejectTamperedRequests()
+  {
+    OAuthRequest request = signedRequest(token);
+    assertFalse(verifier.verify(Verb.POST, URL, header(request), "body=tampered"));
+    assertFalse(verifier.verify(Verb.PUT, URL, header(request), request.getBodyContents()));
+    assertFalse(verifier.verify(Verb.POST, URL + "&facet=c", header(request), request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldRejectUnknownConsumersAndTokens()
+  {
+    OAuthRequest request = signedRequest(new Token("unknown", "token secret"));
+    assertFalse(verifier.verify(Verb.POST, URL, header(request), request.getBodyContents()));
+    String header = header(signedRequest(token)).replace("api%20key", "other%20key");
+    assertFalse(verifier.verify(Verb.POST, URL, header, request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldRejectOtherSignatureMethods()
+  {
+    OAuthRequest request = signedRequest(token);
+    String header = header(request).replace("HMAC-SHA1", "PLAINTEXT");
+    assertFalse(verifier.verify(Verb.POST, URL, header, request.getBodyContents()));
+  }
+
+  @Test
+  public void shouldParseHeaderAndBodyIntoRequest()
+  {
+    String header = "OAuth realm=\"r\",oauth_consumer_key=\"api%20key\", oauth_nonce=\"n\"";
+    OAuthRequest request = verifier.parse(Verb.POST, URL, header, "a=1%202&b=&c");
+    assertEquals(2, request.getOauthParameters().size());
+    assertEquals("api key", request.getOauthParameters().get(0).getValue());
+    assertEquals(3, request.getBodyParams().size());
+    assertEquals("1 2", request.getBodyParams().get(0).getValue());
+    assertEquals("", request.getBodyParams().get(2).getValue());
+  }
+
+  /*
+   * Query and body parameters go into the base string alike, so a request signed with body parameters verifies as the
+   * same request with them in its query string, encoded as a spec-compliant client would
+   */
+  @Test
+  public void shouldDecodeEscapedQueryValues()
+  {
+    OAuthRequest request = new OAuthRequest(Verb.POST, "http://example.com/resource");
+    request.addBodyParameter("q", "a b+c");
+    service.signRequest(token, request);
+    assertTrue(verifier.verify(Verb.POST, "http://example.com/resource?q=a%20b%2Bc", header(request), null));
+    assertTrue(verifier.verify(Verb.POST, "http://example.com/resource?q=a+b%2Bc", header(request), null));
+    assertFalse(verifier.verify(Verb.POST, "http://example.com/resource?q=a%20b+c", header(request), null));
+  }
+
+  @Test
+  public void shouldAcceptValuelessQueryParameters()
+  {
+    OAuthRequest request = new OAuthRequest(Verb.POST, "http://example.com/resource");
+    request.addBodyParameter("flag", "");
+    service.signRequest(token, request);
+    assertTrue(verifier.verify(Verb.POST, "http://example.com/resource?flag", header(request), null));
+    assertFalse(verifier.verify(Verb.POST, "http://example.com/resource?other", header(request), null));
+  }
+
+  @Test
+  public void shouldKeepPlusSignsInHeaderValues()
+  {
+    OAuthRequest request = verifier.parse(Verb.GET, URL, "OAuth oauth_signature=\"ab+c%2Bd=\"", null);
+    assertEquals("ab+c+d=", request.getOauthParameters().get(0).getValue());
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfEscapeIsMalformed()
+  {
+    verifier.verify(Verb.GET, URL, "OAuth oauth_consumer_key=\"api%2\"", null);
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfHeaderIsNotOAuth()
+  {
+    verifier.verify(Verb.GET, URL, "Basic dXNlcjpwYXNz", null);
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfHeaderIsMalformed()
+  {
+    verifier.verify(Verb.GET, URL, "OAuth oauth_consumer_key=\"api key", null);
+  }
+
+  @Test
+  public void shouldCompareInConstantTime()
+  {
+    assertTrue(OAuthSignatureVerifier.constantTimeEquals("abc=", "abc="));
+    assertFalse(OAuthSignatureVerifier.constantTimeEquals("abc=", "abd="));
+    assertFalse(OAuthSignatureVerifier.constantTimeEquals("abc=", "abc"));
+  }
+
+  private OAuthRequest signedRequest(Token token)
+  {
+    OAuthRequest request = new OAuthRequest(Verb.POST, URL);
+    request.addBodyParameter("body", "value with spaces & symbols");
+    request.addBodyParameter("other", "\u00e9");
+    service.signRequest(token, request);
+    return request;
+  }
+
+  private String header(OAuthRequest request)
+  {
+    return request.getHeaders().get(0).getValue();
+  }
+}
@@ -0,0 +1,132 @@
+package org.scribe.services;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.scribe.exceptions.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.test.helpers.*;
+
+public class PooledHMACSha1SignatureServiceTest
+{
+
+  private PooledHMACSha1SignatureService service;
+
+  @Before
+  public void setup()
+  {
+    service = new PooledHMACSha1SignatureService(2);
+  }
+
+  @Test
+  public void shouldReturnSignatureMethodString()
+  {
+    String expected = "HMAC-SHA1";
+    assertEquals(expected, service.getSignatureMethod());
+  }
+
+  @Test
+  public void shouldReturnSignature()
+  {
+    String apiSecret = "api secret";
+    String tokenSecret = "token secret";
+    String baseString = "base string";
+    String signature = "uGymw2KHOTWI699YEaoi5xyLT50=";
+    assertEquals(signature, service.getSignature(baseString, apiSecret, tokenSecret));
+  }
+
+  @Test
+  public void shouldMatchPlainHMACServiceWhenKeysChange()
+  {
+    HMACSha1SignatureService plain = new HMACSha1SignatureService();
+    for (int i = 0; i < 10; i++)
+    {
+      String tokenSecret = "token secret " + (i % 3);
+      assertEquals(plain.getSignature("base string " + i, "api&secret", tokenSecret),
+          service.getSignature("base string " + i, "api&secret", tokenSecret));
+    }
+  }
+
+  @Test
+  public void shouldReuseCachedKeys()
+  {
+    service.getSignature("base string", "api secret", "token secret");
+    service.getSignature("other base string", "api secret", "token secret");
+    assertEquals(1, service.getKeyCache().getMissCount());
+    assertEquals(1, service.getKeyCache().getHitCount());
+  }
+
+  @Test
+  public void shouldEvictKeysWhenFull()
+  {
+    service.getSignature("base string", "api secret", "one");
+    service.getSignature("base string", "api secret", "two");
+    service.getSignature("base string", "api secret", "three");
+    assertTrue(service.getKeyCache().size() <= 2);
+    assertEquals(3, service.getKeyCache().size() + service.getKeyCache().getEvictionCount());
+  }
+
+  @Test
+  public void shouldSignConcurrently() throws Exception
+  {
+    final String expected = "uGymw2KHOTWI699YEaoi5xyLT50=";
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<String>> results = new ArrayList<Future<String>>();
+    for (int i = 0; i < 200; i++)
+    {
+      final String tokenSecret = (i % 2 == 0) ? "token secret" : "another secret";
+      results.add(executor.submit(new Callable<String>()
+      {
+        public String call()
+        {
+          service.getSignature("base string", "api secret", tokenSecret);
+          return service.getSignature("base string", "api secret", "token secret");
+        }
+      }));
+    }
+    for (Future<String> result : results)
+    {
+      assertEquals(expected, result.get());
+    }
+    executor.shutdown();
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfBaseStringIsNull()
+  {
+    service.getSignature(null, "apiSecret", "tokenSecret");
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfApiSecretIsEmpty()
+  {
+    service.getSignature("base string", "  ", "tokenSecret");
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfTokenSecretIsNull()
+  {
+    service.getSignature("base string", "apiSecret", null);
+  }
+
+  @Test
+  public void shouldStreamTheSameSignature()
+  {
+    BaseStringExtractorImpl extractor = new BaseStringExtractorImpl();
+    Token token = new Token("token", "token secret");
+    String expected = service.getSignature(extractor.extract(ObjectMother.createSampleOAuthRequest()), "api secret", "token secret");
+    assertEquals(expected, service.getSignature(ObjectMother.createSampleOAuthRequest(), extractor, "api secret", token));
+    assertEquals(expected, service.getSignature(ObjectMother.createSampleOAuthRequest(), extractor, "api secret", token));
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfStreamedRequestHasNoOAuthParameters()
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com");
+    service.getSignature(request, new BaseStringExtractorImpl(), "api secret", new Token("token", "token secret"));
+  }
+}
@@ -0,0 +1,122 @@
+package org.scribe.services;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.scribe.exceptions.*;
+import org.scribe.extractors.*;
+import org.scribe.model.*;
+import org.scribe.test.helpers.*;
+
+public class PrecomputedHMACSha1SignatureServiceTest
+{
+
+  private PrecomputedHMACSha1SignatureService service;
+
+  @Before
+  public void setup()
+  {
+    service = new PrecomputedHMACSha1SignatureService(2);
+  }
+
+  @Test
+  public void shouldReturnSignatureMethodString()
+  {
+    assertEquals("HMAC-SHA1", service.getSignatureMethod());
+  }
+
+  @Test
+  public void shouldReturnSignature()
+  {
+    String signature = "uGymw2KHOTWI699YEaoi5xyLT50=";
+    assertEquals(signature, service.getSignature("base string", "api secret", "token secret"));
+    assertEquals(signature, service.getSignature("base string", "api secret", new Token("token", "token secret")));
+  }
+
+  @Test
+  public void shouldMatchPlainHMACServiceForLongKeys()
+  {
+    HMACSha1SignatureService plain = new HMACSha1SignatureService();
+    String apiSecret = "a very long api secret that makes the key longer than a single sha-1 block";
+    String tokenSecret = "and a token secret with symbols &=%";
+    assertEquals(plain.getSignature("base string", apiSecret, tokenSecret),
+        service.getSignature("base string", apiSecret, new Token("token", tokenSecret)));
+  }
+
+  @Test
+  public void shouldReusePadStatePerToken()
+  {
+    Token token = new Token("token", "token secret");
+    service.getSignature("base string", "api secret", token);
+    service.getSignature("another base string", "api secret", new Token("token", "token secret"));
+    assertEquals(1, service.getMissCount());
+    assertEquals(1, service.getHitCount());
+    assertEquals(0.5, service.getHitRate(), 0.0001);
+    assertEquals(1, service.getCachedTokenCount());
+    assertTrue(service.getEstimatedMemoryUsage() > 0);
+  }
+
+  @Test
+  public void shouldRecomputePadStateIfApiSecretChanges()
+  {
+    HMACSha1SignatureService plain = new HMACSha1SignatureService();
+    Token token = new Token("token", "token secret");
+    service.getSignature("base string", "api secret", token);
+    assertEquals(plain.getSignature("base string", "other secret", "token secret"),
+        service.getSignature("base string", "other secret", token));
+  }
+
+  @Test
+  public void shouldCountRecomputedPadStateAsMiss()
+  {
+    Token token = new Token("token", "token secret");
+    service.getSignature("base string", "api secret", token);
+    service.getSignature("base string", "other secret", token);
+    assertEquals(0, service.getHitCount());
+    assertEquals(2, service.getMissCount());
+    assertEquals(0.0, service.getHitRate(), 0.0);
+  }
+
+  @Test
+  public void shouldEvictAndTrackMemory()
+  {
+    for (int i = 0; i < 10; i++)
+    {
+      service.getSignature("base string", "api secret", new Token("token" + i, "secret" + i));
+    }
+    assertTrue(service.getCachedTokenCount() <= 2);
+    assertEquals(10, service.getCachedTokenCount() + service.getEvictionCount());
+    long perToken = service.getEstimatedMemoryUsage() / service.getCachedTokenCount();
+    assertTrue(perToken > 1000);
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfBaseStringIsEmpty()
+  {
+    service.getSignature("  ", "apiSecret", new Token("token", "secret"));
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfTokenIsNull()
+  {
+    Token token = null;
+    service.getSignature("base string", "apiSecret", token);
+  }
+
+  @Test
+  public void shouldStreamTheSameSignature()
+  {
+    BaseStringExtractorImpl extractor = new BaseStringExtractorImpl();
+    Token token = new Token("token", "token secret");
+    String expected = service.getSignature(extractor.extract(ObjectMother.createSampleOAuthRequest()), "api secret", "token secret");
+    assertEquals(expected, service.getSignature(ObjectMother.createSampleOAuthRequest(), extractor, "api secret", token));
+    assertEquals(expected, service.getSignature(ObjectMother.createSampleOAuthRequest(), extractor, "api secret", token));
+  }
+
+  @Test(expected = OAuthException.class)
+  public void shouldThrowExceptionIfStreamedRequestHasNoOAuthParameters()
+  {
+    OAuthRequest request = new OAuthRequest(Verb.GET, "http://example.com");
+    service.getSignature(request, new BaseStringExtractorImpl(), "api secret", new Token("token", "token secret"));
+  }
+}
@@ -0,0 +1,75 @@
+package org.scribe.services;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+public class RingBufferNonceTimestampServiceTest
+{
+
+  @Test
+  public void shouldReturnUrlSafeFixedLengthNonces()
+  {
+    RingBufferNonceTimestampService service = new RingBufferNonceTimestampService(16);
+    for (int i = 0; i < 100; i++)
+    {
+      String nonce = service.getNonce();
+      assertEquals(22, nonce.length());
+      assertTrue(nonce, nonce.matches("[A-Za-z0-9_-]+"));
+    }
+  }
+
+  @Test
+  public void shouldReturnTimestampInSeconds()
+  {
+    RingBufferNonceTimestampService service = new RingBufferNonceTimestampService();
+    long now = System.currentTimeMillis() / 1000;
+    assertTrue(Math.abs(Long.parseLong(service.getTimestampInSeconds()) - now) <= 1);
+  }
+
+  @Test
+  public void shouldGenerateInlineWhenRingIsEmpty()
+  {
+    RingBufferNonceTimestampService service = new RingBufferNonceTimestampService(1);
+    Set<String> nonces = new HashSet<String>();
+    for (int i = 0; i < 1000; i++)
+    {
+      nonces.add(service.getNonce());
+    }
+    assertEquals(1000, nonces.size());
+    assertTrue(service.getInlineNonceCount() > 0);
+  }
+
+  @Test
+  public void shouldHandOutUniqueNoncesAcrossThreads() throws Exception
+  {
+    final RingBufferNonceTimestampService service = new RingBufferNonceTimestampService(64);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+    for (int t = 0; t < 4; t++)
+    {
+      results.add(executor.submit(new Callable<List<String>>()
+      {
+        public List<String> call()
+        {
+          List<String> nonces = new ArrayList<String>();
+          for (int i = 0; i < 10000; i++)
+          {
+            nonces.add(service.getNonce());
+          }
+          return nonces;
+        }
+      }));
+    }
+    Set<String> unique = new HashSet<String>();
+    for (Future<List<String>> result : results)
+    {
+      unique.addAll(result.get());
+    }
+    executor.shutdown();
+    assertEquals(40000, unique.size());
+  }
+}
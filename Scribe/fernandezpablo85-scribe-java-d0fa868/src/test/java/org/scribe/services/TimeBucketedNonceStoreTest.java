@@ -0,0 +1,146 @@
+package org.scribe.services;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class TimeBucketedNonceStoreTest
+{
+  private TimerStub timer;
+
+  @Before
+  public void setup()
+  {
+    timer = new TimerStub();
+  }
+
+  @Test
+  public void shouldRejectReplayedNonces()
+  {
+    for (TimeBucketedNonceStore store : stores(10, 1000))
+    {
+      assertTrue(store.checkAndStore("key", "1000", "nonce"));
+      assertFalse(store.checkAndStore("key", "1000", "nonce"));
+      assertEquals(1, store.getReplayCount());
+    }
+  }
+
+  @Test
+  public void shouldAcceptSameNonceForOtherConsumersAndTimestamps()
+  {
+    for (TimeBucketedNonceStore store : stores(10, 1000))
+    {
+      assertTrue(store.checkAndStore("key", "1000", "nonce"));
+      assertTrue(store.checkAndStore("other key", "1000", "nonce"));
+      assertTrue(store.checkAndStore("key", "1001", "nonce"));
+    }
+  }
+
+  @Test
+  public void shouldRejectTimestampsOutsideWindow()
+  {
+    for (TimeBucketedNonceStore store : stores(10, 1000))
+    {
+      assertTrue(store.checkAndStore("key", "990", "nonce"));
+      assertTrue(store.checkAndStore("key", "1010", "nonce"));
+      assertFalse(store.checkAndStore("key", "989", "nonce"));
+      assertFalse(store.checkAndStore("key", "1011", "nonce"));
+      assertFalse(store.checkAndStore("key", "not a number", "nonce"));
+    }
+  }
+
+  @Test
+  public void shouldForgetSecondsThatLeaveTheWindow()
+  {
+    for (TimeBucketedNonceStore store : stores(10, 1000))
+    {
+      timer.seconds = 1000;
+      assertTrue(store.checkAndStore("key", "1000", "nonce"));
+      timer.seconds = 1022;
+      assertTrue(store.checkAndStore("key", "1022", "nonce"));
+      assertFalse(store.checkAndStore("key", "1000", "nonce"));
+      assertTrue(store.checkAndStore("key", "1022", "other nonce"));
+      timer.seconds = 1000;
+    }
+  }
+
+  @Test
+  public void shouldCapEntriesPerSecond()
+  {
+    for (TimeBucketedNonceStore store : stores(0, 64))
+    {
+      int accepted = 0;
+      for (int i = 0; i < 1000; i++)
+      {
+        if (store.checkAndStore("key", "1000", "nonce " + i))
+        {
+          accepted++;
+        }
+      }
+      assertTrue(accepted >= 32 && accepted < 1000);
+      assertEquals(1000 - accepted, store.getOverflowCount());
+      assertFalse(store.checkAndStore("key", "1000", "nonce 0"));
+    }
+  }
+
+  @Test
+  public void shouldAcceptEachNonceOnceUnderConcurrency() throws Exception
+  {
+    for (final TimeBucketedNonceStore store : stores(10, 100000))
+    {
+      final AtomicInteger accepted = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      List<Future<?>> results = new ArrayList<Future<?>>();
+      for (int t = 0; t < 4; t++)
+      {
+        results.add(executor.submit(new Runnable()
+        {
+          public void run()
+          {
+            for (int i = 0; i < 5000; i++)
+            {
+              if (store.checkAndStore("key", String.valueOf(995 + i % 10), "nonce " + i))
+              {
+                accepted.incrementAndGet();
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> result : results)
+      {
+        result.get();
+      }
+      executor.shutdown();
+      assertEquals(5000, accepted.get());
+      assertEquals(15000, store.getReplayCount());
+    }
+  }
+
+  private List<TimeBucketedNonceStore> stores(int window, int maxEntries)
+  {
+    List<TimeBucketedNonceStore> stores = new ArrayList<TimeBucketedNonceStore>();
+    stores.add(new TimeBucketedNonceStore(window, maxEntries));
+    stores.add(new TimeBucketedNonceStore(window, maxEntries, true));
+    for (TimeBucketedNonceStore store : stores)
+    {
+      store.setTimer(timer);
+    }
+    return stores;
+  }
+
+  private static class TimerStub extends TimestampServiceImpl.Timer
+  {
+    long seconds = 1000;
+
+    @Override
+    Long getMilis()
+    {
+      return seconds * 1000;
+    }
+  }
+}
@@ -32,6 +32,42 @@ public class TimestampServiceTest
     assertEquals(expected, service.getNonce());
   }
 
+  @Test
+  public void shouldApplyClockOffsetToTimestamps()
+  {
+    service.setClockOffset(-120);
+    assertEquals(-120, service.getClockOffset());
+    assertEquals("880", service.getTimestampInSeconds());
+    assertEquals("1042", service.getNonce());
+  }
+
+  @Test
+  public void shouldReturnCurrentSecondFromSharedClock()
+  {
+    TimestampServiceImpl cached = new TimestampServiceImpl();
+    long now = System.currentTimeMillis() / 1000;
+    assertTrue(Math.abs(Long.parseLong(cached.getTimestampInSeconds()) - now) <= 1);
+  }
+
+  @Test
+  public void shouldRenderEachSecondOnce()
+  {
+    TimestampServiceImpl.Tick tick = new TimestampServiceImpl.Tick(1000);
+    assertSame(tick, TimestampServiceImpl.Clock.advance(tick, 1000999L));
+    TimestampServiceImpl.Tick next = TimestampServiceImpl.Clock.advance(tick, 1001000L);
+    assertEquals(1001, next.seconds);
+    assertEquals("1001", next.rendered);
+  }
+
+  @Test
+  public void shouldKeepTickingWhenClockThreadIsInterrupted() throws InterruptedException
+  {
+    Thread clock = TimestampServiceImpl.Clock.start();
+    clock.interrupt();
+    clock.join(200);
+    assertTrue(clock.isAlive());
+  }
+
   private static class TimerStub extends TimestampServiceImpl.Timer
   {
 
@@ -0,0 +1,72 @@
+package org.scribe.test.helpers;
+
+import java.io.*;
+import java.text.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Bodies, encodings and dates shared by the tests that talk to an {@link HttpServerStub}.
+ */
+public class HttpFixtures
+{
+  private HttpFixtures()
+  {
+  }
+
+  /**
+   * Returns a body of the given size, made of the alphabet repeated
+   */
+  public static byte[] body(int size)
+  {
+    byte[] body = new byte[size];
+    for (int i = 0; i < size; i++)
+    {
+      body[i] = (byte) ('a' + i % 26);
+    }
+    return body;
+  }
+
+  /**
+   * Encodes a body with the chunked transfer coding, in chunks of pseudo-random sizes that are the same on every run
+   */
+  public static byte[] chunked(byte[] body) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Random random = new Random(body.length);
+    int offset = 0;
+    while (offset < body.length)
+    {
+      int size = Math.min(body.length - offset, 1 + random.nextInt(8192));
+      out.write((Integer.toHexString(size) + "\r\n").getBytes());
+      out.write(body, offset, size);
+      out.write("\r\n".getBytes());
+      offset += size;
+    }
+    out.write("0\r\n\r\n".getBytes());
+    return out.toByteArray();
+  }
+
+  public static byte[] gunzip(byte[] gzipped) throws IOException
+  {
+    InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) >= 0)
+    {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Formats a time as an HTTP Date header value
+   */
+  public static String httpDate(long millis)
+  {
+    SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(new Date(millis));
+  }
+}
@@ -0,0 +1,270 @@
+package org.scribe.test.helpers;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Minimal HTTP/1.1 server for tests that need full control of the response (status, every header, body).
+ *
+ * Handles keep-alive and chunked request bodies. Every connection is served by its own daemon thread.
+ */
+public class HttpServerStub
+{
+  private static final String CRLF = "\r\n";
+
+  private final ServerSocket serverSocket;
+  private final Handler handler;
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+  public HttpServerStub(Handler handler) throws IOException
+  {
+    this.handler = handler;
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    Thread acceptor = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        accept();
+      }
+    }, "http-server-stub");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  public String getUrl(String path)
+  {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+  }
+
+  public int getConnectionCount()
+  {
+    return connections.get();
+  }
+
+  public int getRequestCount()
+  {
+    return requests.get();
+  }
+
+  public void stop() throws IOException
+  {
+    serverSocket.close();
+    synchronized (sockets)
+    {
+      for (Socket socket : sockets)
+      {
+        socket.close();
+      }
+    }
+  }
+
+  private void accept()
+  {
+    while (!serverSocket.isClosed())
+    {
+      try
+      {
+        final Socket socket = serverSocket.accept();
+        connections.incrementAndGet();
+        sockets.add(socket);
+        Thread worker = new Thread(new Runnable()
+        {
+          public void run()
+          {
+            serve(socket);
+          }
+        }, "http-server-stub-connection");
+        worker.setDaemon(true);
+        worker.start();
+      }
+      catch (IOException e)
+      {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket socket)
+  {
+    try
+    {
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+      while (true)
+      {
+        Exchange exchange = readRequest(in);
+        if (exchange == null)
+        {
+          break;
+        }
+        requests.incrementAndGet();
+        handler.handle(exchange);
+        writeResponse(exchange, out);
+        if ("close".equalsIgnoreCase(exchange.getRequestHeader("Connection")) || exchange.closeConnection)
+        {
+          break;
+        }
+      }
+      socket.close();
+    }
+    catch (IOException e)
+    {
+      // client went away
+    }
+  }
+
+  private static Exchange readRequest(InputStream in) throws IOException
+  {
+    String requestLine = readLine(in);
+    if (requestLine == null || requestLine.length() == 0)
+    {
+      return null;
+    }
+    String[] parts = requestLine.split(" ");
+    Exchange exchange = new Exchange(parts[0], parts[1]);
+    String line;
+    while ((line = readLine(in)) != null && line.length() > 0)
+    {
+      int colon = line.indexOf(':');
+      exchange.requestHeaders.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+    }
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    String length = exchange.getRequestHeader("Content-Length");
+    if (length != null)
+    {
+      copy(in, body, Long.parseLong(length));
+    }
+    else if ("chunked".equalsIgnoreCase(exchange.getRequestHeader("Transfer-Encoding")))
+    {
+      long chunk;
+      while ((chunk = Long.parseLong(readLine(in).split(";")[0].trim(), 16)) > 0)
+      {
+        copy(in, body, chunk);
+        readLine(in);
+      }
+      while ((line = readLine(in)) != null && line.length() > 0)
+      {
+        // trailers
+      }
+    }
+    exchange.requestBody = body.toByteArray();
+    return exchange;
+  }
+
+  private static void writeResponse(Exchange exchange, OutputStream out) throws IOException
+  {
+    StringBuilder head = new StringBuilder();
+    head.append("HTTP/1.1 ").append(exchange.code).append(" Stub").append(CRLF);
+    for (Map.Entry<String, String> header : exchange.responseHeaders.entrySet())
+    {
+      head.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+    }
+    if (!exchange.responseHeaders.containsKey("Content-Length") && !exchange.responseHeaders.containsKey("Transfer-Encoding"))
+    {
+      head.append("Content-Length: ").append(exchange.responseBody.length).append(CRLF);
+    }
+    head.append(CRLF);
+    out.write(head.toString().getBytes("ISO-8859-1"));
+    out.write(exchange.responseBody);
+    out.flush();
+  }
+
+  private static void copy(InputStream in, OutputStream out, long length) throws IOException
+  {
+    byte[] buffer = new byte[8192];
+    while (length > 0)
+    {
+      int read = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+      if (read < 0)
+      {
+        throw new EOFException();
+      }
+      out.write(buffer, 0, read);
+      length -= read;
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException
+  {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) >= 0)
+    {
+      if (c == '\n')
+      {
+        int last = line.length() - 1;
+        return last >= 0 && line.charAt(last) == '\r' ? line.substring(0, last) : line.toString();
+      }
+      line.append((char) c);
+    }
+    return line.length() > 0 ? line.toString() : null;
+  }
+
+  public interface Handler
+  {
+    void handle(Exchange exchange) throws IOException;
+  }
+
+  public static class Exchange
+  {
+    private final String method;
+    private final String path;
+    private final Map<String, String> requestHeaders = new HashMap<String, String>();
+    private byte[] requestBody;
+    private int code = 200;
+    private final Map<String, String> responseHeaders = new LinkedHashMap<String, String>();
+    private byte[] responseBody = new byte[0];
+    private boolean closeConnection;
+
+    Exchange(String method, String path)
+    {
+      this.method = method;
+      this.path = path;
+    }
+
+    public String getMethod()
+    {
+      return method;
+    }
+
+    public String getPath()
+    {
+      return path;
+    }
+
+    public String getRequestHeader(String name)
+    {
+      return requestHeaders.get(name.toLowerCase(Locale.US));
+    }
+
+    public byte[] getRequestBody()
+    {
+      return requestBody;
+    }
+
+    public void respond(int code, String body)
+    {
+      respond(code, body.getBytes());
+    }
+
+    public void respond(int code, byte[] body)
+    {
+      this.code = code;
+      this.responseBody = body;
+    }
+
+    public void setResponseHeader(String name, String value)
+    {
+      responseHeaders.put(name, value);
+    }
+
+    public void closeConnection()
+    {
+      this.closeConnection = true;
+    }
+  }
+}
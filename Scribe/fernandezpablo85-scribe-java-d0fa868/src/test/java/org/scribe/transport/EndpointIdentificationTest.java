@@ -0,0 +1,31 @@
+package org.scribe.transport;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class EndpointIdentificationTest
+{
+  @Test
+  public void shouldMatchHostNamesIgnoringCase()
+  {
+    assertTrue(EndpointIdentification.matches("api.example.com", "API.Example.com"));
+    assertTrue(EndpointIdentification.matches("api.example.com.", "api.example.com"));
+    assertFalse(EndpointIdentification.matches("api.example.com", "example.com"));
+  }
+
+  @Test
+  public void shouldMatchWildcardAgainstExactlyOneLabel()
+  {
+    assertTrue(EndpointIdentification.matches("api.example.com", "*.example.com"));
+    assertFalse(EndpointIdentification.matches("example.com", "*.example.com"));
+    assertFalse(EndpointIdentification.matches("v1.api.example.com", "*.example.com"));
+    assertFalse(EndpointIdentification.matches("apiexample.com", "*.example.com"));
+  }
+
+  @Test
+  public void shouldNotMatchWildcardOverTopLevelDomain()
+  {
+    assertFalse(EndpointIdentification.matches("example.com", "*.com"));
+  }
+}
@@ -0,0 +1,153 @@
+package org.scribe.transport;
+
+import static org.junit.Assert.*;
+import static org.scribe.test.helpers.HttpFixtures.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.*;
+import org.scribe.model.*;
+import org.scribe.test.helpers.*;
+
+public class HttpURLConnectionTransportTest
+{
+  private HttpServerStub server;
+
+  @Before
+  public void setup() throws Exception
+  {
+    server = new HttpServerStub(new HttpServerStub.Handler()
+    {
+      public void handle(HttpServerStub.Exchange exchange) throws IOException
+      {
+        exchange.setResponseHeader("X-Echo", exchange.getRequestHeader("X-Header"));
+        exchange.setResponseHeader("Set-Cookie", "first=1\r\nset-cookie: second=2\r\nSet-Cookie: third=3");
+        byte[] requestBody = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeader("Content-Encoding")))
+        {
+          requestBody = gunzip(requestBody);
+        }
+        String body = exchange.getMethod() + " " + exchange.getPath() + " " + new String(requestBody);
+        if ("gzip, deflate".equals(exchange.getRequestHeader("Accept-Encoding")))
+        {
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          GZIPOutputStream gzip = new GZIPOutputStream(out);
+          gzip.write(body.getBytes());
+          gzip.close();
+          exchange.setResponseHeader("Content-Encoding", "gzip");
+          exchange.respond(201, out.toByteArray());
+        }
+        else
+        {
+          exchange.respond(201, body);
+        }
+      }
+    });
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    server.stop();
+  }
+
+  @Test
+  public void shouldSendHeadersAndBody()
+  {
+    Request request = new Request(Verb.POST, server.getUrl("/resource?a=1"));
+    request.addHeader("X-Header", "value");
+    request.addBodyParameter("param", "value with spaces");
+    Response response = request.send();
+    assertEquals(201, response.getCode());
+    assertEquals("POST /resource?a=1 param=value%20with%20spaces", response.getBody());
+    assertEquals("value", header(response, "X-Echo"));
+  }
+
+  @Test
+  public void shouldKeepEveryHeaderValueInOrder()
+  {
+    Response response = new Request(Verb.GET, server.getUrl("/cookies")).send();
+    assertEquals(Arrays.asList("first=1", "second=2", "third=3"), response.getHeaderValues("SET-COOKIE"));
+    assertEquals("first=1", response.getHeader("set-cookie"));
+  }
+
+  @Test
+  public void shouldOpenConnectionOnlyWhenSending()
+  {
+    Request request = new Request(Verb.GET, "not even a url");
+    assertNull(request.getTransport());
+    assertEquals(0, server.getConnectionCount());
+  }
+
+  @Test
+  public void shouldOpenConnectionThroughOverridableHook() throws Exception
+  {
+    final int[] opened = new int[1];
+    Request request = new Request(Verb.GET, server.getUrl("/hook"));
+    request.setTransport(new HttpURLConnectionTransport()
+    {
+      @Override
+      protected java.net.HttpURLConnection openConnection(Request request) throws IOException
+      {
+        opened[0]++;
+        return super.openConnection(request);
+      }
+    });
+    assertEquals("GET /hook ", request.send().getBody());
+    assertEquals("GET /hook ", request.send().getBody());
+    assertEquals(2, opened[0]);
+  }
+
+  @Test
+  public void shouldStreamBodiesOfKnownAndUnknownLength()
+  {
+    Request sized = new Request(Verb.POST, server.getUrl("/sized"));
+    sized.addPayload(new ByteArrayInputStream("streamed body".getBytes()), 8);
+    assertEquals("POST /sized streamed", sized.send().getBody());
+    Request chunked = new Request(Verb.PUT, server.getUrl("/chunked"));
+    chunked.addPayload(new ByteArrayInputStream("streamed body".getBytes()));
+    assertEquals("PUT /chunked streamed body", chunked.send().getBody());
+  }
+
+  @Test
+  public void shouldNegotiateAndDecompressGzip()
+  {
+    Request request = new Request(Verb.GET, server.getUrl("/compressed"));
+    request.acceptCompression();
+    request.acceptCompression();
+    assertEquals(1, request.getHeaders().size());
+    Response response = request.send();
+    assertEquals("gzip", header(response, "Content-Encoding"));
+    assertEquals("GET /compressed ", response.getBody());
+    assertEquals(16, response.getDecompressedByteCount());
+    assertTrue(response.getCompressedByteCount() > 16);
+  }
+
+  @Test
+  public void shouldSendCompressedBody()
+  {
+    Request request = new Request(Verb.POST, server.getUrl("/gzip"));
+    StringBuilder facets = new StringBuilder();
+    for (int i = 0; i < 500; i++)
+    {
+      request.addBodyParameter("facet", "value " + i);
+      facets.append(facets.length() == 0 ? "" : "&").append("facet=value%20").append(i);
+    }
+    request.compressBody();
+    assertEquals("POST /gzip " + facets, request.send().getBody());
+  }
+
+  private static String header(Response response, String name)
+  {
+    for (ParamInfo header : response.getHeaders())
+    {
+      if (name.equals(header.getKey()))
+      {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+}
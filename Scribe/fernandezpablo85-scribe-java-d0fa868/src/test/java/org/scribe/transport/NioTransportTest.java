@@ -0,0 +1,353 @@
+package org.scribe.transport;
+
+import static org.junit.Assert.*;
+import static org.scribe.test.helpers.HttpFixtures.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+import org.junit.*;
+import org.scribe.model.*;
+import org.scribe.test.helpers.*;
+import org.scribe.utils.*;
+
+public class NioTransportTest
+{
+  private final CountDownLatch slow = new CountDownLatch(1);
+  private final AtomicInteger callbacks = new AtomicInteger();
+  private HttpServerStub server;
+  private NioTransport transport;
+
+  @Before
+  public void setup() throws Exception
+  {
+    server = new HttpServerStub(new HttpServerStub.Handler()
+    {
+      public void handle(HttpServerStub.Exchange exchange) throws IOException
+      {
+        String path = exchange.getPath();
+        if (path.startsWith("/chunked/"))
+        {
+          exchange.setResponseHeader("Transfer-Encoding", "chunked");
+          exchange.respond(200, chunked(body(Integer.parseInt(path.substring(9)))));
+        }
+        else if (path.startsWith("/large/"))
+        {
+          exchange.respond(200, body(Integer.parseInt(path.substring(7))));
+        }
+        else if (path.equals("/slow"))
+        {
+          try
+          {
+            slow.await(5, TimeUnit.SECONDS);
+          }
+          catch (InterruptedException e)
+          {
+            throw new InterruptedIOException();
+          }
+          exchange.respond(200, "slow");
+        }
+        else if (path.equals("/gzip"))
+        {
+          InputStream in = new GZIPInputStream(new ByteArrayInputStream(exchange.getRequestBody()));
+          exchange.respond(200, exchange.getRequestHeader("Transfer-Encoding") + " " + StreamUtils.getStreamContents(in));
+        }
+        else if (path.equals("/empty"))
+        {
+          exchange.respond(204, "");
+        }
+        else
+        {
+          exchange.respond(200, exchange.getMethod() + " " + new String(exchange.getRequestBody()));
+        }
+      }
+    });
+    transport = new NioTransport(1, new Executor()
+    {
+      public void execute(Runnable command)
+      {
+        callbacks.incrementAndGet();
+        command.run();
+      }
+    });
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    slow.countDown();
+    transport.shutdown();
+    server.stop();
+  }
+
+  @Test
+  public void shouldSendAsyncAndCompleteOnCallbackExecutor() throws Exception
+  {
+    Response response = request(Verb.GET, "/resource").sendAsync().get(5, TimeUnit.SECONDS);
+    assertEquals(200, response.getCode());
+    assertEquals("GET ", response.getBody());
+    assertEquals(1, callbacks.get());
+  }
+
+  @Test
+  public void shouldSendBody() throws Exception
+  {
+    Request request = request(Verb.POST, "/resource");
+    request.addBodyParameter("param", "value");
+    assertEquals("POST param=value", request.sendAsync().get(5, TimeUnit.SECONDS).getBody());
+  }
+
+  @Test
+  public void shouldSendSynchronously()
+  {
+    assertEquals("GET ", request(Verb.GET, "/resource").send().getBody());
+  }
+
+  @Test
+  public void shouldStreamLargeAndChunkedBodies() throws Exception
+  {
+    SettableFuture<Response> large = request(Verb.GET, "/large/1000000").sendAsync();
+    assertEquals(new String(body(1000000)), large.get(5, TimeUnit.SECONDS).getBody());
+    SettableFuture<Response> chunked = request(Verb.GET, "/chunked/100000").sendAsync();
+    assertEquals(new String(body(100000)), chunked.get(5, TimeUnit.SECONDS).getBody());
+    awaitIdle();
+  }
+
+  @Test
+  public void shouldCloseConnectionOfBodylessResponse() throws Exception
+  {
+    assertEquals(204, request(Verb.GET, "/empty").sendAsync().get(5, TimeUnit.SECONDS).getCode());
+    awaitIdle();
+  }
+
+  @Test
+  public void shouldCompleteAsSoonAsHeadersArrive() throws Exception
+  {
+    final ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+    final CountDownLatch bodyGate = new CountDownLatch(1);
+    Thread peer = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        try
+        {
+          Socket connection = socket.accept();
+          OutputStream out = connection.getOutputStream();
+          out.write("HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\n".getBytes());
+          out.flush();
+          bodyGate.await(5, TimeUnit.SECONDS);
+          out.write("body".getBytes());
+          out.flush();
+          connection.close();
+        }
+        catch (Exception e)
+        {
+          // the test fails on its own
+        }
+      }
+    });
+    peer.setDaemon(true);
+    peer.start();
+    try
+    {
+      Request request = new Request(Verb.GET, "http://127.0.0.1:" + socket.getLocalPort() + "/");
+      request.setTransport(transport);
+      Response response = request.sendAsync().get(5, TimeUnit.SECONDS);
+      assertEquals(200, response.getCode());
+      bodyGate.countDown();
+      assertEquals("body", response.getBody());
+    }
+    finally
+    {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void shouldLimitRequestsInFlightPerHost() throws Exception
+  {
+    List<SettableFuture<Response>> futures = new ArrayList<SettableFuture<Response>>();
+    for (int i = 0; i < 3; i++)
+    {
+      futures.add(request(Verb.GET, "/slow").sendAsync());
+    }
+    awaitRequests(1);
+    Thread.sleep(100);
+    assertEquals(1, transport.getInFlightCount());
+    assertEquals(2, transport.getQueuedCount());
+    assertEquals(1, server.getConnectionCount());
+    slow.countDown();
+    for (SettableFuture<Response> future : futures)
+    {
+      assertEquals("slow", future.get(5, TimeUnit.SECONDS).getBody());
+    }
+    assertEquals(3, server.getConnectionCount());
+  }
+
+  @Test
+  public void shouldAbortCancelledRequest() throws Exception
+  {
+    SettableFuture<Response> cancelled = request(Verb.GET, "/slow").sendAsync();
+    SettableFuture<Response> queued = request(Verb.GET, "/resource").sendAsync();
+    awaitRequests(1);
+    assertTrue(cancelled.cancel(true));
+    assertEquals("GET ", queued.get(5, TimeUnit.SECONDS).getBody());
+    assertTrue(cancelled.isCancelled());
+  }
+
+  @Test
+  public void shouldTimeOutWaitingForResponse() throws Exception
+  {
+    Request request = request(Verb.GET, "/slow");
+    request.setReadTimeout(100, TimeUnit.MILLISECONDS);
+    try
+    {
+      request.sendAsync().get(5, TimeUnit.SECONDS);
+      fail("Expected the read to time out");
+    }
+    catch (ExecutionException e)
+    {
+      assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+    awaitIdle();
+  }
+
+  @Test
+  public void shouldReportConnectionFailure() throws Exception
+  {
+    ServerSocket socket = new ServerSocket(0);
+    int port = socket.getLocalPort();
+    socket.close();
+    Request request = new Request(Verb.GET, "http://127.0.0.1:" + port + "/");
+    request.setTransport(transport);
+    try
+    {
+      request.sendAsync().get(5, TimeUnit.SECONDS);
+      fail("Expected the connection to be refused");
+    }
+    catch (ExecutionException e)
+    {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void shouldRefuseToReadBodyOnSelectorThread() throws Exception
+  {
+    NioTransport direct = new NioTransport(1, SettableFuture.directExecutor());
+    try
+    {
+      Request request = new Request(Verb.GET, server.getUrl("/slow"));
+      request.setTransport(direct);
+      final SettableFuture<Response> future = request.sendAsync();
+      final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+      final CountDownLatch read = new CountDownLatch(1);
+      future.addListener(new Runnable()
+      {
+        public void run()
+        {
+          try
+          {
+            future.get().getStream().read();
+          }
+          catch (Exception e)
+          {
+            failure.set(e);
+          }
+          read.countDown();
+        }
+      }, SettableFuture.directExecutor());
+      slow.countDown();
+      assertTrue(read.await(5, TimeUnit.SECONDS));
+      assertTrue(failure.get() instanceof IOException);
+    }
+    finally
+    {
+      direct.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldSendThroughBlockingTransportsInTheBackground() throws Exception
+  {
+    Request request = new Request(Verb.GET, server.getUrl("/resource"));
+    request.setTransport(HttpURLConnectionTransport.getDefault());
+    assertEquals("GET ", request.sendAsync().get(5, TimeUnit.SECONDS).getBody());
+  }
+
+  @Test
+  public void shouldStreamRequestBodies() throws Exception
+  {
+    Request chunked = request(Verb.POST, "/resource");
+    chunked.addPayload(new ByteArrayInputStream(body(100000)));
+    assertEquals("POST " + new String(body(100000)), chunked.sendAsync().get(5, TimeUnit.SECONDS).getBody());
+    Request sized = request(Verb.PUT, "/resource");
+    sized.addPayload(new ByteArrayInputStream(body(100000)), 70000);
+    assertEquals("PUT " + new String(body(70000)), sized.sendAsync().get(5, TimeUnit.SECONDS).getBody());
+    File file = File.createTempFile("scribe", ".body");
+    file.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(file);
+    out.write(body(50000));
+    out.close();
+    Request fromFile = request(Verb.POST, "/resource");
+    fromFile.addPayload(file);
+    assertEquals("POST " + new String(body(50000)), fromFile.sendAsync().get(5, TimeUnit.SECONDS).getBody());
+  }
+
+  @Test
+  public void shouldSendCompressedBodyChunked() throws Exception
+  {
+    Request request = request(Verb.POST, "/gzip");
+    request.addPayload(ByteBuffer.wrap(body(100000)));
+    request.compressBody();
+    assertEquals("chunked " + new String(body(100000)), request.sendAsync().get(5, TimeUnit.SECONDS).getBody());
+  }
+
+  @Test
+  public void shouldFailWhenBodyStreamEndsEarly() throws Exception
+  {
+    Request request = request(Verb.POST, "/resource");
+    request.addPayload(new ByteArrayInputStream(body(10)), 20);
+    try
+    {
+      request.sendAsync().get(5, TimeUnit.SECONDS);
+      fail();
+    }
+    catch (ExecutionException e)
+    {
+      assertTrue(e.getCause() instanceof EOFException);
+    }
+  }
+
+  private Request request(Verb verb, String path)
+  {
+    Request request = new Request(verb, server.getUrl(path));
+    request.setTransport(transport);
+    return request;
+  }
+
+  private void awaitRequests(int count) throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (server.getRequestCount() < count && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(count, server.getRequestCount());
+  }
+
+  private void awaitIdle() throws InterruptedException
+  {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (transport.getInFlightCount() > 0 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(0, transport.getInFlightCount());
+  }
+}
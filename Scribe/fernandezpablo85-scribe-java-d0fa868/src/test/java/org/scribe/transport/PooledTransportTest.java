@@ -0,0 +1,319 @@
+package org.scribe.transport;
+
+import static org.junit.Assert.*;
+import static org.scribe.test.helpers.HttpFixtures.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.scribe.exceptions.*;
+import org.scribe.model.*;
+import org.scribe.test.helpers.*;
+
+public class PooledTransportTest
+{
+  private HttpServerStub server;
+  private PooledTransport transport;
+
+  @Before
+  public void setup() throws Exception
+  {
+    server = new HttpServerStub(new HttpServerStub.Handler()
+    {
+      public void handle(HttpServerStub.Exchange exchange) throws IOException
+      {
+        String path = exchange.getPath();
+        if (path.startsWith("/chunked/"))
+        {
+          exchange.setResponseHeader("Transfer-Encoding", "chunked");
+          exchange.respond(200, chunked(body(Integer.parseInt(path.substring(9)))));
+        }
+        else if (path.startsWith("/large/"))
+        {
+          exchange.respond(200, body(Integer.parseInt(path.substring(7))));
+        }
+        else if (path.equals("/error"))
+        {
+          exchange.respond(401, "oauth_problem=token_rejected");
+        }
+        else if (path.equals("/chunked-error"))
+        {
+          exchange.setResponseHeader("Transfer-Encoding", "chunked");
+          exchange.respond(500, chunked("internal error".getBytes()));
+        }
+        else if (path.equals("/bad-chunk"))
+        {
+          exchange.setResponseHeader("Transfer-Encoding", "chunked");
+          exchange.respond(200, "-5\r\nabcde\r\n0\r\n\r\n");
+        }
+        else if (path.equals("/bad-length"))
+        {
+          exchange.setResponseHeader("Content-Length", "-1");
+          exchange.respond(200, "");
+        }
+        else if (path.equals("/close"))
+        {
+          exchange.setResponseHeader("Connection", "close");
+          exchange.respond(200, "closing");
+          exchange.closeConnection();
+        }
+        else if (path.equals("/drop"))
+        {
+          exchange.respond(200, "dropped");
+          exchange.closeConnection();
+        }
+        else
+        {
+          exchange.respond(200, exchange.getMethod() + " " + new String(exchange.getRequestBody()));
+        }
+      }
+    });
+    transport = new PooledTransport(2, 30, TimeUnit.SECONDS);
+  }
+
+  @After
+  public void teardown() throws IOException
+  {
+    transport.shutdown();
+    server.stop();
+  }
+
+  @Test
+  public void shouldReuseConnection()
+  {
+    for (int i = 0; i < 5; i++)
+    {
+      assertEquals("GET ", send(Verb.GET, "/resource").getBody());
+    }
+    assertEquals(1, transport.getNewConnectionCount());
+    assertEquals(4, transport.getReusedConnectionCount());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  @Test
+  public void shouldSendBody()
+  {
+    Request request = new Request(Verb.POST, server.getUrl("/resource"));
+    request.addBodyParameter("param", "value");
+    request.setTransport(transport);
+    assertEquals("POST param=value", request.send().getBody());
+  }
+
+  @Test
+  public void shouldReleaseConnectionOfUnreadErrorResponse()
+  {
+    Response response = send(Verb.GET, "/error");
+    assertEquals(401, response.getCode());
+    assertEquals(1, transport.getIdleConnectionCount());
+    send(Verb.GET, "/resource").getBody();
+    assertEquals(1, server.getConnectionCount());
+    assertEquals("oauth_problem=token_rejected", response.getBody());
+  }
+
+  @Test
+  public void shouldReleaseConnectionOfUnreadChunkedErrorResponse()
+  {
+    Response response = send(Verb.GET, "/chunked-error");
+    assertEquals(500, response.getCode());
+    assertEquals(1, transport.getIdleConnectionCount());
+    assertEquals("internal error", response.getBody());
+  }
+
+  @Test
+  public void shouldReclaimConnectionOfAbandonedResponse() throws Exception
+  {
+    PooledTransport single = new PooledTransport(1, 30, TimeUnit.SECONDS);
+    try
+    {
+      sendAndDrop(single, "/large/1000000");
+      sendAndDrop(single, "/chunked/1000000");
+      Request request = new Request(Verb.GET, server.getUrl("/resource"));
+      request.setTransport(single);
+      request.setConnectTimeout(10, TimeUnit.SECONDS);
+      System.gc();
+      assertEquals("GET ", request.send().getBody());
+      assertEquals(2, single.getReclaimedConnectionCount());
+    }
+    finally
+    {
+      single.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldRejectInvalidContentLength()
+  {
+    try
+    {
+      send(Verb.GET, "/bad-length");
+      fail("Expected an invalid Content-Length to be refused");
+    }
+    catch (OAuthException e)
+    {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertEquals(0, transport.getIdleConnectionCount());
+  }
+
+  @Test
+  public void shouldRejectNegativeChunkSizeAndReleaseConnection()
+  {
+    PooledTransport single = new PooledTransport(1, 30, TimeUnit.SECONDS);
+    try
+    {
+      Request request = new Request(Verb.GET, server.getUrl("/bad-chunk"));
+      request.setTransport(single);
+      request.setConnectTimeout(2, TimeUnit.SECONDS);
+      try
+      {
+        request.send().getBody();
+        fail("Expected a negative chunk size to be refused");
+      }
+      catch (OAuthException e)
+      {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+      Request next = new Request(Verb.GET, server.getUrl("/large/10"));
+      next.setTransport(single);
+      next.setConnectTimeout(2, TimeUnit.SECONDS);
+      assertEquals(new String(body(10)), next.send().getBody());
+    }
+    finally
+    {
+      single.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldDecodeChunkedBodyAndReleaseAtTheEnd()
+  {
+    Response response = send(Verb.GET, "/chunked/100000");
+    assertEquals(0, transport.getIdleConnectionCount());
+    assertEquals(new String(body(100000)), response.getBody());
+    assertEquals(1, transport.getIdleConnectionCount());
+    send(Verb.GET, "/resource").getBody();
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  @Test
+  public void shouldDrainOnClose() throws Exception
+  {
+    Response response = send(Verb.GET, "/large/70000");
+    response.getStream().read(new byte[10000]);
+    response.close();
+    assertEquals(1, transport.getIdleConnectionCount());
+    send(Verb.GET, "/resource").getBody();
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  @Test
+  public void shouldCloseInsteadOfDrainingHugeBodies() throws Exception
+  {
+    Response response = send(Verb.GET, "/large/1000000");
+    response.close();
+    assertEquals(0, transport.getIdleConnectionCount());
+    send(Verb.GET, "/resource").getBody();
+    assertEquals(2, server.getConnectionCount());
+  }
+
+  @Test
+  public void shouldNotReuseConnectionClosedByServer()
+  {
+    assertEquals("closing", send(Verb.GET, "/close").getBody());
+    assertEquals(0, transport.getIdleConnectionCount());
+    assertEquals("GET ", send(Verb.GET, "/resource").getBody());
+    assertEquals(2, transport.getNewConnectionCount());
+  }
+
+  @Test
+  public void shouldRetryOnNewConnectionWhenKeptAliveOneIsStale() throws Exception
+  {
+    assertEquals("dropped", send(Verb.GET, "/drop").getBody());
+    Thread.sleep(100);
+    assertEquals("GET ", send(Verb.GET, "/resource").getBody());
+    assertEquals(2, transport.getNewConnectionCount());
+    assertEquals(1, transport.getReusedConnectionCount());
+  }
+
+  @Test
+  public void shouldLimitConnectionsPerHost() throws Exception
+  {
+    Response first = send(Verb.GET, "/large/1000000");
+    Response second = send(Verb.GET, "/large/1000000");
+    Request third = new Request(Verb.GET, server.getUrl("/resource"));
+    third.setTransport(transport);
+    third.setConnectTimeout(200, TimeUnit.MILLISECONDS);
+    try
+    {
+      third.send();
+      fail("Expected to time out waiting for a connection");
+    }
+    catch (OAuthException e)
+    {
+      assertTrue(e.getCause() instanceof java.net.SocketTimeoutException);
+    }
+    first.close();
+    assertEquals("GET ", third.send().getBody());
+    second.close();
+  }
+
+  @Test
+  public void shouldEvictIdleConnections() throws Exception
+  {
+    PooledTransport shortLived = new PooledTransport(2, 50, TimeUnit.MILLISECONDS);
+    try
+    {
+      Request request = new Request(Verb.GET, server.getUrl("/resource"));
+      request.setTransport(shortLived);
+      request.send().getBody();
+      assertEquals(1, shortLived.getIdleConnectionCount());
+      long deadline = System.currentTimeMillis() + 5000;
+      while (shortLived.getIdleConnectionCount() > 0 && System.currentTimeMillis() < deadline)
+      {
+        Thread.sleep(20);
+      }
+      assertEquals(0, shortLived.getIdleConnectionCount());
+      assertEquals(1, shortLived.getEvictedConnectionCount());
+    }
+    finally
+    {
+      shortLived.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldStreamChunkedBodyAndReuseConnection()
+  {
+    Request request = new Request(Verb.POST, server.getUrl("/resource"));
+    request.addPayload(new ByteArrayInputStream(body(100000)));
+    request.setTransport(transport);
+    assertEquals("POST " + new String(body(100000)), request.send().getBody());
+    Request buffer = new Request(Verb.PUT, server.getUrl("/resource"));
+    buffer.addPayload(ByteBuffer.wrap(body(1000)));
+    buffer.setTransport(transport);
+    assertEquals("PUT " + new String(body(1000)), buffer.send().getBody());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  /*
+   * Sends a request and drops its response unread, in a frame of its own so that nothing keeps it reachable
+   */
+  private void sendAndDrop(PooledTransport pooled, String path) throws InterruptedException
+  {
+    Request request = new Request(Verb.GET, server.getUrl(path));
+    request.setTransport(pooled);
+    request.setConnectTimeout(10, TimeUnit.SECONDS);
+    assertEquals(200, request.send().getCode());
+    System.gc();
+  }
+
+  private Response send(Verb verb, String path)
+  {
+    Request request = new Request(verb, server.getUrl(path));
+    request.setTransport(transport);
+    return request.send();
+  }
+}
@@ -0,0 +1,134 @@
+package org.scribe.transport;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+public class ThreadPerRequestTransportTest
+{
+  private static final String URL = "http://example.com/resource";
+
+  private final CountDownLatch gate = new CountDownLatch(1);
+  private final AtomicInteger concurrent = new AtomicInteger();
+  private final AtomicInteger maxConcurrent = new AtomicInteger();
+  private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+  private final Transport blocking = new Transport()
+  {
+    public Response send(Request request) throws IOException
+    {
+      threads.add(Thread.currentThread().getName());
+      int now = concurrent.incrementAndGet();
+      maxConcurrent.set(Math.max(maxConcurrent.get(), now));
+      try
+      {
+        gate.await(5, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        throw new InterruptedIOException();
+      }
+      finally
+      {
+        concurrent.decrementAndGet();
+      }
+      return new Response(200, new ArrayList<ParamInfo>(), new ByteArrayInputStream("ok".getBytes()));
+    }
+  };
+
+  @After
+  public void teardown()
+  {
+    gate.countDown();
+  }
+
+  @Test
+  public void shouldLimitConcurrentSendsPerHost() throws Exception
+  {
+    ThreadPerRequestTransport transport = new ThreadPerRequestTransport(blocking, ExecutionMode.PLATFORM_THREADS, 2);
+    List<SettableFuture<Response>> futures = new ArrayList<SettableFuture<Response>>();
+    for (int i = 0; i < 5; i++)
+    {
+      futures.add(transport.sendAsync(new Request(Verb.GET, URL)));
+    }
+    awaitConcurrent(transport, 2);
+    Thread.sleep(100);
+    assertEquals(2, concurrent.get());
+    gate.countDown();
+    for (SettableFuture<Response> future : futures)
+    {
+      assertEquals("ok", future.get(5, TimeUnit.SECONDS).getBody());
+    }
+    assertEquals(2, maxConcurrent.get());
+    assertEquals(0, transport.getConcurrentRequestCount(URL));
+    assertTrue(threads.get(0).startsWith("scribe-sender"));
+  }
+
+  @Test
+  public void shouldTimeOutWaitingForAFreeSlot() throws Exception
+  {
+    ThreadPerRequestTransport transport = new ThreadPerRequestTransport(blocking, ExecutionMode.PLATFORM_THREADS, 1);
+    transport.sendAsync(new Request(Verb.GET, URL));
+    awaitConcurrent(transport, 1);
+    Request request = new Request(Verb.GET, URL);
+    request.setConnectTimeout(100, TimeUnit.MILLISECONDS);
+    try
+    {
+      transport.send(request);
+      fail("Expected to time out waiting for a slot");
+    }
+    catch (SocketTimeoutException expected)
+    {
+    }
+  }
+
+  @Test
+  public void shouldInterruptCancelledSend() throws Exception
+  {
+    ThreadPerRequestTransport transport = new ThreadPerRequestTransport(blocking, ExecutionMode.PLATFORM_THREADS, 1);
+    SettableFuture<Response> future = transport.sendAsync(new Request(Verb.GET, URL));
+    awaitConcurrent(transport, 1);
+    assertTrue(future.cancel(true));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (transport.getConcurrentRequestCount(URL) > 0 && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(0, transport.getConcurrentRequestCount(URL));
+  }
+
+  @Test
+  public void shouldOnlyOfferVirtualThreadsWhereAvailable()
+  {
+    if (ExecutionMode.VIRTUAL_THREADS.isAvailable())
+    {
+      assertNotNull(new ThreadPerRequestTransport(blocking, ExecutionMode.VIRTUAL_THREADS, 1).getExecutor());
+      return;
+    }
+    try
+    {
+      new ThreadPerRequestTransport(blocking, ExecutionMode.VIRTUAL_THREADS, 1);
+      fail("Expected virtual threads to be unavailable before Java 21");
+    }
+    catch (UnsupportedOperationException expected)
+    {
+    }
+  }
+
+  private void awaitConcurrent(ThreadPerRequestTransport transport, int count) throws Exception
+  {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (concurrent.get() < count && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(count, transport.getConcurrentRequestCount(URL));
+  }
+}
@@ -0,0 +1,33 @@
+package org.scribe.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class BufferPoolTest
+{
+  @Test
+  public void shouldReuseReleasedBuffers()
+  {
+    BufferPool pool = new BufferPool(16, 2);
+    byte[] first = pool.acquire();
+    assertEquals(16, first.length);
+    pool.release(first);
+    assertSame(first, pool.acquire());
+    assertEquals(1, pool.getAllocationCount());
+  }
+
+  @Test
+  public void shouldKeepAtMostMaxPooledBuffers()
+  {
+    BufferPool pool = new BufferPool(16, 2);
+    byte[][] buffers = { pool.acquire(), pool.acquire(), pool.acquire() };
+    for (byte[] buffer : buffers)
+    {
+      pool.release(buffer);
+    }
+    pool.release(new byte[8]);
+    assertEquals(2, pool.getIdleCount());
+    assertEquals(3, pool.getAllocationCount());
+  }
+}
@@ -0,0 +1,81 @@
+package org.scribe.utils;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class LruCacheTest
+{
+
+  private LruCache<String, String> cache;
+
+  @Before
+  public void setup()
+  {
+    cache = new LruCache<String, String>(2);
+  }
+
+  @Test
+  public void shouldReturnCachedValues()
+  {
+    cache.put("a", "first");
+    assertEquals("first", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntry()
+  {
+    LruCache<String, String> single = new LruCache<String, String>(1);
+    single.put("a", "first");
+    single.put("b", "second");
+    assertNull(single.get("a"));
+    assertEquals("second", single.get("b"));
+    assertEquals(1, single.getEvictionCount());
+    assertEquals(1, single.size());
+  }
+
+  @Test
+  public void shouldNeverGrowPastMaxSize()
+  {
+    for (int i = 0; i < 100; i++)
+    {
+      cache.put("key" + i, "value" + i);
+    }
+    assertTrue(cache.size() <= 2);
+    assertEquals(100 - cache.size(), cache.getEvictionCount());
+  }
+
+  @Test
+  public void shouldNeverGrowPastMaxSizeWithUnevenSegments()
+  {
+    LruCache<Integer, String> uneven = new LruCache<Integer, String>(17);
+    for (int i = 0; i < 1000; i++)
+    {
+      uneven.put(i, "value" + i);
+    }
+    assertTrue(uneven.size() <= 17);
+  }
+
+  @Test
+  public void shouldRemoveEntries()
+  {
+    cache.put("a", "first");
+    assertEquals("first", cache.remove("a"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowExceptionForInvalidSize()
+  {
+    new LruCache<String, String>(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowExceptionForNullKeys()
+  {
+    cache.get(null);
+  }
+}
@@ -1,54 +1,110 @@
-/*package org.scribe.utils;
+package org.scribe.utils;
 
 import static org.junit.Assert.*;
 
 import java.util.*;
 
 import org.junit.*;
+import org.scribe.model.*;
 
 public class MapUtilsTest
 {
 
-  private Map<String, String> unsorted;
+  private List<ParamInfo> unsorted;
 
   @Before
   public void setup()
   {
-    unsorted = new LinkedHashMap<String, String>();
-    unsorted.put("d", "fourth");
-    unsorted.put("a", "first");
-    unsorted.put("c", "third");
-    unsorted.put("b", "second");
-  }
-//
-//  @Test
-//  public void shouldSortMap()
-//  {
-   // Map<String, String> sorted = MapUtils.sort(unsorted);
-//    List<String> values = new ArrayList<String>(sorted.values());
-//    assertEquals("first", values.get(0));
-//    assertEquals("second", values.get(1));
-//    assertEquals("third", values.get(2));
-//    assertEquals("fourth", values.get(3));
-  //}
-//
-//  @Test
-//  public void shouldNotModifyTheOriginalMap()
-//  {
-//    Map<String, String> sorted = MapUtils.sort(unsorted);
-//    assertNotSame(sorted, unsorted);
-//
-//    List<String> values = new ArrayList<String>(unsorted.values());
-//    assertEquals("fourth", values.get(0));
-//    assertEquals("first", values.get(1));
-//    assertEquals("third", values.get(2));
-//    assertEquals("second", values.get(3));
-//  }
-//
-//  @Test(expected = IllegalArgumentException.class)
-//  public void shouldThrowExceptionForNullMap()
-//  {
-//    MapUtils.sort(null);
-//  }
-//}
-*/
\ No newline at end of file
+    unsorted = new ArrayList<ParamInfo>();
+    unsorted.add(param("d", "fourth"));
+    unsorted.add(param("a", "first"));
+    unsorted.add(param("c", "third"));
+    unsorted.add(param("b", "second"));
+  }
+
+  @Test
+  public void shouldSortMap()
+  {
+    List<ParamInfo> sorted = MapUtils.sort(unsorted);
+    assertEquals("first", sorted.get(0).getValue());
+    assertEquals("second", sorted.get(1).getValue());
+    assertEquals("third", sorted.get(2).getValue());
+    assertEquals("fourth", sorted.get(3).getValue());
+  }
+
+  @Test
+  public void shouldNotModifyTheOriginalMap()
+  {
+    List<ParamInfo> sorted = MapUtils.sort(unsorted);
+    assertNotSame(sorted, unsorted);
+    assertEquals("fourth", unsorted.get(0).getValue());
+    assertEquals("first", unsorted.get(1).getValue());
+    assertEquals("third", unsorted.get(2).getValue());
+    assertEquals("second", unsorted.get(3).getValue());
+  }
+
+  @Test
+  public void shouldKeepAllParametersWhenSortedTwice()
+  {
+    MapUtils.sort(unsorted);
+    assertEquals(4, MapUtils.sort(unsorted).size());
+  }
+
+  @Test
+  public void shouldSortRepeatedKeysByValue()
+  {
+    List<ParamInfo> params = new ArrayList<ParamInfo>();
+    params.add(param("facet", "z"));
+    params.add(param("facet", "a b"));
+    params.add(param("facet", "a"));
+    List<ParamInfo> sorted = MapUtils.sort(params);
+    assertEquals("a", sorted.get(0).getValue());
+    assertEquals("a b", sorted.get(1).getValue());
+    assertEquals("z", sorted.get(2).getValue());
+  }
+
+  @Test
+  public void shouldSortByEncodedKeys()
+  {
+    List<ParamInfo> params = new ArrayList<ParamInfo>();
+    params.add(param("a-", "dash"));
+    params.add(param("a=", "equals"));
+    List<ParamInfo> sorted = MapUtils.sort(params);
+    assertEquals("equals", sorted.get(0).getValue());
+    assertEquals("dash", sorted.get(1).getValue());
+  }
+
+  @Test
+  public void shouldSortLargeLists()
+  {
+    List<ParamInfo> params = new ArrayList<ParamInfo>();
+    Random random = new Random(7);
+    for (int i = 0; i < 1000; i++)
+    {
+      params.add(param("key" + random.nextInt(50), "value" + random.nextInt(1000)));
+    }
+    List<ParamInfo> sorted = MapUtils.sort(params);
+    assertEquals(params.size(), sorted.size());
+    for (int i = 1; i < sorted.size(); i++)
+    {
+      ParamInfo previous = sorted.get(i - 1);
+      ParamInfo current = sorted.get(i);
+      int byKey = previous.getKey().compareTo(current.getKey());
+      assertTrue(byKey < 0 || (byKey == 0 && previous.getValue().compareTo(current.getValue()) <= 0));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldThrowExceptionForNullMap()
+  {
+    MapUtils.sort(null);
+  }
+
+  private static ParamInfo param(String key, String value)
+  {
+    ParamInfo paramInfo = new ParamInfo();
+    paramInfo.setKey(key);
+    paramInfo.setValue(value);
+    return paramInfo;
+  }
+}
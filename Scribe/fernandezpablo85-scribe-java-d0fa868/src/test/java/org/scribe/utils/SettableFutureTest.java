@@ -0,0 +1,96 @@
+package org.scribe.utils;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class SettableFutureTest
+{
+  private SettableFuture<String> future;
+
+  @Before
+  public void setup()
+  {
+    future = new SettableFuture<String>();
+  }
+
+  @Test
+  public void shouldCompleteOnce() throws Exception
+  {
+    assertFalse(future.isDone());
+    assertTrue(future.set("first"));
+    assertFalse(future.set("second"));
+    assertFalse(future.setException(new RuntimeException()));
+    assertTrue(future.isDone());
+    assertEquals("first", future.get());
+  }
+
+  @Test
+  public void shouldReportFailureAsCause() throws Exception
+  {
+    IllegalStateException failure = new IllegalStateException();
+    future.setException(failure);
+    try
+    {
+      future.get();
+      fail("Expected an ExecutionException");
+    }
+    catch (ExecutionException e)
+    {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void shouldRunListenersOnceDoneOrRightAwayWhenAlreadyDone()
+  {
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable listener = new Runnable()
+    {
+      public void run()
+      {
+        runs.incrementAndGet();
+      }
+    };
+    future.addListener(listener, SettableFuture.directExecutor());
+    assertEquals(0, runs.get());
+    future.set("done");
+    assertEquals(1, runs.get());
+    future.addListener(listener, SettableFuture.directExecutor());
+    assertEquals(2, runs.get());
+  }
+
+  @Test
+  public void shouldRunCancelHandlerOnCancel()
+  {
+    final AtomicInteger aborted = new AtomicInteger();
+    future.setCancelHandler(new Runnable()
+    {
+      public void run()
+      {
+        aborted.incrementAndGet();
+      }
+    });
+    assertTrue(future.cancel(true));
+    assertFalse(future.cancel(true));
+    assertFalse(future.set("late"));
+    assertTrue(future.isCancelled());
+    assertEquals(1, aborted.get());
+  }
+
+  @Test(expected = CancellationException.class)
+  public void shouldThrowCancellationExceptionWhenCancelled() throws Exception
+  {
+    future.cancel(false);
+    future.get();
+  }
+
+  @Test(expected = TimeoutException.class)
+  public void shouldTimeOutWhenNotDone() throws Exception
+  {
+    future.get(10, TimeUnit.MILLISECONDS);
+  }
+}
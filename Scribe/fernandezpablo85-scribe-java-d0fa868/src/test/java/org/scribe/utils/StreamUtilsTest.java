@@ -2,6 +2,7 @@ package org.scribe.utils;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 
 import org.junit.Test;
 
@@ -19,6 +20,42 @@ public class StreamUtilsTest
     assertEquals("expected", decoded);
   }
   
+  @Test
+  public void shouldDecodeStreamsOfAnnouncedLength()
+  {
+    String value = "oauth_token=t\u00e9st&oauth_token_secret=s\u00ebcret";
+    byte[] bytes = utf8(value);
+    assertEquals(value, StreamUtils.getStreamContents(new ByteArrayInputStream(bytes), bytes.length));
+    assertEquals(value, StreamUtils.getStreamContents(new ByteArrayInputStream(bytes), bytes.length - 5));
+    assertEquals(value, StreamUtils.getStreamContents(new ByteArrayInputStream(bytes), bytes.length + 5));
+    assertArrayEquals(bytes, StreamUtils.getStreamBytes(new ByteArrayInputStream(bytes), bytes.length));
+  }
+
+  @Test
+  public void shouldDecodeMultiByteCharactersAcrossScratchBuffers()
+  {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 20000; i++)
+    {
+      value.append(i % 2 == 0 ? 'a' : '\u20ac');
+    }
+    byte[] bytes = utf8(value.toString());
+    assertEquals(value.toString(), StreamUtils.getStreamContents(new ByteArrayInputStream(bytes)));
+    assertArrayEquals(bytes, StreamUtils.getStreamBytes(new ByteArrayInputStream(bytes), StreamUtils.UNKNOWN_LENGTH));
+  }
+
+  private static byte[] utf8(String value)
+  {
+    try
+    {
+      return value.getBytes("UTF-8");
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void shouldFailForNullParameter()
   {
@@ -2,6 +2,8 @@ package org.scribe.utils;
 
 import static org.junit.Assert.*;
 
+import java.net.*;
+import java.nio.*;
 import java.util.*;
 
 import org.junit.*;
@@ -85,4 +87,77 @@ public class URLUtilsTest {
         URLUtils.percentDecode(toDecode);
     }
 
+    @Test
+    public void shouldReturnSameInstanceWhenNothingNeedsEncoding() {
+        String plain = "abcde123456-._~";
+        assertSame(plain, URLUtils.percentEncode(plain));
+    }
+
+    @Test
+    public void shouldEncodeMultiByteCharacters() {
+        String plain = "\u00e9\u20ac\ud83d\ude00";
+        assertEquals("%C3%A9%E2%82%AC%F0%9F%98%80", URLUtils.percentEncode(plain));
+        assertEquals(plain, URLUtils.percentDecode("%C3%A9%E2%82%AC%F0%9F%98%80"));
+    }
+
+    @Test
+    public void shouldEncodeUnpairedSurrogatesAsQuestionMark() {
+        assertEquals("a%3Fb%3F", URLUtils.percentEncode("a\ud83db\ude00"));
+    }
+
+    @Test
+    public void shouldMatchURLEncoderBasedEncoding() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder plain = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                plain.append(random.nextBoolean() ? (char) random.nextInt(128) : (char) random.nextInt(0x10000));
+            }
+            String expected = URLEncoder.encode(plain.toString(), "UTF-8").replace("*", "%2A").replace("+", "%20").replace("%7E", "~");
+            assertEquals(expected, URLUtils.percentEncode(plain.toString()));
+        }
+    }
+
+    @Test
+    public void shouldAppendToStringBuilder() {
+        StringBuilder builder = new StringBuilder("prefix:");
+        assertSame(builder, URLUtils.percentEncode("this is a test &^", builder));
+        assertEquals("prefix:this%20is%20a%20test%20%26%5E", builder.toString());
+    }
+
+    @Test
+    public void shouldEncodeIntoCharArray() {
+        String plain = "a b\u00e9";
+        char[] buffer = new char[2 + URLUtils.percentEncodedLength(plain)];
+        int end = URLUtils.percentEncode(plain, buffer, 2);
+        assertEquals(buffer.length, end);
+        assertEquals("a%20b%C3%A9", new String(buffer, 2, end - 2));
+    }
+
+    @Test
+    public void shouldEncodeIntoByteBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        URLUtils.percentEncode("this is a test &^", buffer);
+        assertEquals("this%20is%20a%20test%20%26%5E", new String(buffer.array(), 0, buffer.position(), "US-ASCII"));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void shouldThrowExceptionIfByteBufferIsTooSmall() {
+        URLUtils.percentEncode("this is a test", ByteBuffer.allocate(8));
+    }
+
+    @Test
+    public void shouldResumeEncodingWithoutSplittingEscapes() throws Exception {
+        String plain = "\u20ac \u20ac";
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        StringBuilder encoded = new StringBuilder();
+        int next = 0;
+        while (next < plain.length()) {
+            next = URLUtils.percentEncode(plain, next, buffer);
+            encoded.append(new String(buffer.array(), 0, buffer.position(), "US-ASCII"));
+            buffer.clear();
+        }
+        assertEquals(URLUtils.percentEncode(plain), encoded.toString());
+    }
 }
@@ -0,0 +1,127 @@
+package org.scribe.benchmarks;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.net.httpserver.*;
+
+import org.scribe.builder.*;
+import org.scribe.builder.api.*;
+import org.scribe.model.*;
+import org.scribe.oauth.*;
+import org.scribe.transport.*;
+import org.scribe.utils.*;
+
+/**
+ * Sends 10k concurrent signed requests to a local stub provider that answers after 50ms, once with sends on platform
+ * threads and once on virtual threads, and prints wall time, throughput and the peak number of platform threads.
+ *
+ * Needs JDK 21 (mvn -Pjava21 test-compile). Arguments: [requests] [max concurrent requests per host] [latency ms].
+ * Both the stub and the client hold a socket per concurrent request, so keep the limit under half of ulimit -n.
+ */
+public class VirtualThreadBenchmark
+{
+  private static volatile String endpoint;
+
+  public static void main(String[] args) throws Exception
+  {
+    int requests = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int maxPerHost = args.length > 1 ? Integer.parseInt(args[1]) : requests;
+    final long latencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 50;
+    System.setProperty("http.keepAlive", "false");
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), requests);
+    server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    server.createContext("/", new HttpHandler()
+    {
+      public void handle(HttpExchange exchange) throws IOException
+      {
+        try
+        {
+          Thread.sleep(latencyMillis);
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+        byte[] body = "ok".getBytes();
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+    server.start();
+    endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+    try
+    {
+      // warm up the class loading, the signing and the connections of both modes
+      run(ExecutionMode.VIRTUAL_THREADS, 2000, maxPerHost, false);
+      run(ExecutionMode.PLATFORM_THREADS, 2000, maxPerHost, false);
+      Thread.sleep(70 * 1000);
+      // virtual first: idle platform threads of the cached pool would otherwise count towards its peak. The pause
+      // above lets the warm-up ones expire.
+      run(ExecutionMode.VIRTUAL_THREADS, requests, maxPerHost, true);
+      run(ExecutionMode.PLATFORM_THREADS, requests, maxPerHost, true);
+    }
+    finally
+    {
+      server.stop(0);
+    }
+  }
+
+  private static void run(ExecutionMode mode, int requests, int maxPerHost, boolean print) throws Exception
+  {
+    OAuth10aService service = (OAuth10aService) new ServiceBuilder().provider(LocalApi.class).apiKey("api key").apiSecret("api secret")
+        .executionMode(mode, maxPerHost).build();
+    Token token = new Token("token", "token secret");
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    threads.resetPeakThreadCount();
+    long start = System.nanoTime();
+    List<SettableFuture<Response>> futures = new ArrayList<SettableFuture<Response>>(requests);
+    for (int i = 0; i < requests; i++)
+    {
+      OAuthRequest request = new OAuthRequest(Verb.GET, endpoint + "/resource?id=" + i);
+      futures.add(service.signAndSendAsync(token, request, SettableFuture.directExecutor()));
+    }
+    int failures = 0;
+    for (SettableFuture<Response> future : futures)
+    {
+      try
+      {
+        if (!"ok".equals(future.get().getBody()))
+        {
+          failures++;
+        }
+      }
+      catch (ExecutionException e)
+      {
+        failures++;
+      }
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    if (print)
+    {
+      System.out.println(String.format("%-18s %,7d requests %8.2f s %,10.0f req/s %,7d peak threads %d failed",
+          mode.name().toLowerCase(Locale.US), requests, seconds, requests / seconds, threads.getPeakThreadCount(),
+          failures));
+    }
+  }
+
+  public static class LocalApi extends DefaultApi10a
+  {
+    @Override
+    public String getRequestTokenEndpoint()
+    {
+      return endpoint + "/request_token";
+    }
+
+    @Override
+    public String getAccessTokenEndpoint()
+    {
+      return endpoint + "/access_token";
+    }
+  }
+}
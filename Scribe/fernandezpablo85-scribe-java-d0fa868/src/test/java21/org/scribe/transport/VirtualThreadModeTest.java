@@ -0,0 +1,53 @@
+package org.scribe.transport;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import org.scribe.model.*;
+import org.scribe.utils.*;
+
+public class VirtualThreadModeTest
+{
+  @Test
+  public void shouldSendOnVirtualThreads() throws Exception
+  {
+    final List<Boolean> virtual = Collections.synchronizedList(new ArrayList<Boolean>());
+    Transport blocking = new Transport()
+    {
+      public Response send(Request request)
+      {
+        virtual.add(Thread.currentThread().isVirtual());
+        return new Response(200, new ArrayList<ParamInfo>(), new ByteArrayInputStream("ok".getBytes()));
+      }
+    };
+    ThreadPerRequestTransport transport = new ThreadPerRequestTransport(blocking, ExecutionMode.VIRTUAL_THREADS, 100);
+    List<SettableFuture<Response>> futures = new ArrayList<SettableFuture<Response>>();
+    for (int i = 0; i < 1000; i++)
+    {
+      futures.add(transport.sendAsync(new Request(Verb.GET, "http://example.com/" + i)));
+    }
+    for (SettableFuture<Response> future : futures)
+    {
+      assertEquals("ok", future.get(5, TimeUnit.SECONDS).getBody());
+    }
+    assertEquals(1000, virtual.size());
+    assertFalse(virtual.contains(Boolean.FALSE));
+  }
+
+  @Test
+  public void shouldNameVirtualThreads() throws Exception
+  {
+    String name = ExecutionMode.VIRTUAL_THREADS.getExecutor().submit(new Callable<String>()
+    {
+      public String call()
+      {
+        return Thread.currentThread().getName();
+      }
+    }).get(5, TimeUnit.SECONDS);
+    assertTrue(name.startsWith("scribe-virtual-"));
+  }
+}